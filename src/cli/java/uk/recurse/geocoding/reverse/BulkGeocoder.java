@@ -0,0 +1,451 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Command line tool that appends country columns to every row of a delimited file of coordinates.
+ *
+ * <p>The input is split into chunks that end on a line break. Each chunk is memory mapped and
+ * handled by a worker, which parses the coordinate columns straight from the mapped bytes, looks
+ * them up as one batch and formats the output rows into a byte array. The main thread writes the
+ * finished chunks in input order and never has more than two chunks per worker in flight, so
+ * memory stays bounded however large the file is.
+ */
+public class BulkGeocoder {
+
+    static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: BulkGeocoder [options] <input> <output>",
+            "  --lat <column>       zero based column of the latitude (default 0)",
+            "  --lon <column>       zero based column of the longitude (default 1)",
+            "  --delimiter <char>   field delimiter, a single character or \"tab\" (default: comma for",
+            "                       .csv files, tab otherwise)",
+            "  --header             the first row is a header and gets the new column names",
+            "  --columns <list>     comma separated country columns to append, from iso, iso3,",
+            "                       numeric and name (default iso)",
+            "  --threads <n>        number of workers (default: available processors)");
+
+    // power of ten for each number of decimal places that is parsed exactly
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private final ReverseGeocoder geocoder;
+    private final int latColumn;
+    private final int lonColumn;
+    private final byte delimiter;
+    private final boolean header;
+    private final int chunkSize;
+    private final byte[] headerSuffix;
+    // appended to each row, indexed by country ordinal + 1
+    private final byte[][] suffixes;
+    private final int maxSuffix;
+
+    BulkGeocoder(ReverseGeocoder geocoder, int latColumn, int lonColumn, char delimiter, boolean header,
+                 List<Column> columns, int chunkSize) {
+        if (delimiter > 0x7f || delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Unsupported delimiter: " + delimiter);
+        }
+        this.geocoder = geocoder;
+        this.latColumn = latColumn;
+        this.lonColumn = lonColumn;
+        this.delimiter = (byte) delimiter;
+        this.header = header;
+        this.chunkSize = chunkSize;
+        headerSuffix = suffix(columns, column -> column.name().toLowerCase());
+        suffixes = new byte[geocoder.countryCount() + 1][];
+        suffixes[0] = suffix(columns, column -> "");
+        int max = headerSuffix.length;
+        for (int ordinal = 0; ordinal < geocoder.countryCount(); ordinal++) {
+            Country country = geocoder.country(ordinal);
+            suffixes[ordinal + 1] = suffix(columns, column -> column.value(country));
+            max = Math.max(max, suffixes[ordinal + 1].length);
+        }
+        maxSuffix = max;
+    }
+
+    /**
+     * Country columns that can be appended.
+     */
+    enum Column {
+        ISO {
+            @Override
+            String value(Country country) {
+                return country.iso();
+            }
+        },
+        ISO3 {
+            @Override
+            String value(Country country) {
+                return country.iso3();
+            }
+        },
+        NUMERIC {
+            @Override
+            String value(Country country) {
+                return Integer.toString(country.isoNumeric());
+            }
+        },
+        NAME {
+            @Override
+            String value(Country country) {
+                return country.name();
+            }
+        };
+
+        abstract String value(Country country);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int latColumn = 0;
+        int lonColumn = 1;
+        Character delimiter = null;
+        boolean header = false;
+        List<Column> columns = Arrays.asList(Column.ISO);
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path input = null;
+        Path output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--lat":
+                        latColumn = Integer.parseInt(args[++i]);
+                        break;
+                    case "--lon":
+                        lonColumn = Integer.parseInt(args[++i]);
+                        break;
+                    case "--delimiter":
+                        String value = args[++i];
+                        if (!value.equals("tab") && value.length() != 1) {
+                            throw new IllegalArgumentException("Delimiter must be one character: " + value);
+                        }
+                        delimiter = value.equals("tab") ? '\t' : value.charAt(0);
+                        break;
+                    case "--header":
+                        header = true;
+                        break;
+                    case "--columns":
+                        columns = new ArrayList<>();
+                        for (String name : args[++i].split(",")) {
+                            columns.add(Column.valueOf(name.trim().toUpperCase()));
+                        }
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        } else if (input == null) {
+                            input = Paths.get(args[i]);
+                        } else if (output == null) {
+                            output = Paths.get(args[i]);
+                        } else {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                }
+            }
+            if (output == null) {
+                throw new IllegalArgumentException("Expected an input and an output file");
+            }
+            if (latColumn < 0 || lonColumn < 0 || latColumn == lonColumn || threads < 1) {
+                throw new IllegalArgumentException("Invalid column or thread count");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            exit("Missing option value");
+            return;
+        } catch (IllegalArgumentException e) {
+            exit(e.getMessage());
+            return;
+        }
+        if (delimiter == null) {
+            delimiter = input.toString().toLowerCase().endsWith(".csv") ? ',' : '\t';
+        }
+        BulkGeocoder bulk = new BulkGeocoder(new ReverseGeocoder(), latColumn, lonColumn, delimiter, header,
+                columns, DEFAULT_CHUNK_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            long rows = bulk.run(input, output, executor, 2 * threads);
+            System.err.printf("Geocoded %d rows in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    /**
+     * Geocodes every row of the input file into the output file.
+     *
+     * @param input     delimited input file
+     * @param output    file to create or overwrite
+     * @param executor  runs the chunk workers
+     * @param maxChunks maximum number of chunks being processed or waiting to be written
+     * @return number of rows written, excluding the header
+     * @throws IOException if either file cannot be read or written
+     */
+    long run(Path input, Path output, ExecutorService executor, int maxChunks) throws IOException {
+        Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        long rows = 0;
+        try (FileChannel in = FileChannel.open(input, READ);
+             FileChannel out = FileChannel.open(output, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            long size = in.size();
+            for (long start = 0; start < size; ) {
+                long end = nextLine(in, Math.min(size, start + chunkSize), size);
+                long from = start;
+                pending.add(executor.submit(() -> process(in, from, end)));
+                if (pending.size() >= maxChunks) {
+                    rows += write(out, pending.remove());
+                }
+                start = end;
+            }
+            while (!pending.isEmpty()) {
+                rows += write(out, pending.remove());
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+        return rows;
+    }
+
+    // returns the offset after the first line break at or after the position
+    private static long nextLine(FileChannel in, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int n = in.read(buffer, position);
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    private static int write(FileChannel out, Future<Chunk> future) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UncheckedIOException(new IOException(cause));
+        }
+        while (chunk.output.hasRemaining()) {
+            out.write(chunk.output);
+        }
+        return chunk.rows;
+    }
+
+    private static class Chunk {
+
+        final ByteBuffer output;
+        final int rows;
+
+        Chunk(ByteBuffer output, int rows) {
+            this.output = output;
+            this.rows = rows;
+        }
+    }
+
+    private Chunk process(FileChannel in, long start, long end) throws IOException {
+        MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int length = buffer.limit();
+        int first = 0;
+        int headerEnd = 0;
+        if (header && start == 0) {
+            while (headerEnd < length && buffer.get(headerEnd) != '\n') {
+                headerEnd++;
+            }
+            first = Math.min(length, headerEnd + 1);
+        }
+        int capacity = Math.max(16, (length - first) / 32);
+        int[] lineStart = new int[capacity];
+        int[] lineEnd = new int[capacity];
+        float[] lat = new float[capacity];
+        float[] lon = new float[capacity];
+        int rows = 0;
+        for (int position = first; position < length; rows++) {
+            if (rows == lineStart.length) {
+                capacity = rows * 2;
+                lineStart = Arrays.copyOf(lineStart, capacity);
+                lineEnd = Arrays.copyOf(lineEnd, capacity);
+                lat = Arrays.copyOf(lat, capacity);
+                lon = Arrays.copyOf(lon, capacity);
+            }
+            float y = Float.NaN;
+            float x = Float.NaN;
+            int column = 0;
+            int fieldStart = position;
+            boolean quoted = false;
+            int i = position;
+            for (; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    break;
+                } else if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == delimiter && !quoted) {
+                    if (column == latColumn) {
+                        y = parseCoordinate(buffer, fieldStart, i);
+                    } else if (column == lonColumn) {
+                        x = parseCoordinate(buffer, fieldStart, i);
+                    }
+                    column++;
+                    fieldStart = i + 1;
+                }
+            }
+            int rowEnd = i > position && buffer.get(i - 1) == '\r' ? i - 1 : i;
+            if (column == latColumn) {
+                y = parseCoordinate(buffer, fieldStart, rowEnd);
+            } else if (column == lonColumn) {
+                x = parseCoordinate(buffer, fieldStart, rowEnd);
+            }
+            lineStart[rows] = position;
+            lineEnd[rows] = rowEnd;
+            lat[rows] = y;
+            lon[rows] = x;
+            position = i + 1;
+        }
+        short[] ordinals = new short[rows];
+        geocoder.getCountryOrdinals(lat, lon, 0, rows, ordinals, Runnable::run);
+
+        byte[] output = new byte[length + (rows + 1) * (maxSuffix + 1)];
+        ByteBuffer source = buffer.duplicate();
+        int n = 0;
+        if (header && start == 0) {
+            int headerLength = headerEnd > 0 && buffer.get(headerEnd - 1) == '\r' ? headerEnd - 1 : headerEnd;
+            source.position(0);
+            source.get(output, n, headerLength);
+            n = append(output, n + headerLength, headerSuffix);
+        }
+        for (int row = 0; row < rows; row++) {
+            int rowLength = lineEnd[row] - lineStart[row];
+            source.position(lineStart[row]);
+            source.get(output, n, rowLength);
+            n = append(output, n + rowLength, suffixes[ordinals[row] + 1]);
+        }
+        return new Chunk(ByteBuffer.wrap(output, 0, n), rows);
+    }
+
+    private static int append(byte[] output, int n, byte[] suffix) {
+        System.arraycopy(suffix, 0, output, n, suffix.length);
+        output[n + suffix.length] = '\n';
+        return n + suffix.length + 1;
+    }
+
+    /**
+     * Parses a plain decimal such as {@code -12.3456} without creating a string. Other number
+     * formats take a slower path, and fields that are not numbers are NaN, which is not in any
+     * country.
+     */
+    static float parseCoordinate(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (digits < POWERS_OF_TEN.length - 1) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (point) {
+                        decimals++;
+                    }
+                } else if (!point) {
+                    return parseSlowly(buffer, start, end);
+                }
+                // further decimal places are below float precision
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                return parseSlowly(buffer, start, end);
+            }
+        }
+        if (digits == 0) {
+            return parseSlowly(buffer, start, end);
+        }
+        double value = mantissa / POWERS_OF_TEN[decimals];
+        return (float) (negative ? -value : value);
+    }
+
+    // handles quotes, whitespace and exponents
+    private static float parseSlowly(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bytes[i - start] = buffer.get(i);
+        }
+        String field = new String(bytes, ISO_8859_1).trim();
+        if (field.length() >= 2 && field.startsWith("\"") && field.endsWith("\"")) {
+            field = field.substring(1, field.length() - 1).trim();
+        }
+        try {
+            return Float.parseFloat(field);
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    private byte[] suffix(List<Column> columns, Function<Column, String> value) {
+        StringBuilder suffix = new StringBuilder();
+        for (Column column : columns) {
+            suffix.append((char) delimiter).append(quote(value.apply(column)));
+        }
+        return suffix.toString().getBytes(UTF_8);
+    }
+
+    private String quote(String value) {
+        if (value.indexOf(delimiter) < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,48 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Command line tool that writes the geohash prefix table of the bundled shapes as CSV, for loading
+ * into a database and joining geohash keyed data to countries.
+ *
+ * @see ReverseGeocoder#writeGeohashTable(Appendable)
+ */
+public class GeohashTable {
+
+    private static final String USAGE = "Usage: GeohashTable <precision> <output>\n"
+            + "  precision   number of geohash characters of the cells that a border crosses, from 1 to "
+            + GeohashIndex.MAX_PRECISION;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            exit("Expected a precision and an output file");
+            return;
+        }
+        long start = System.nanoTime();
+        ReverseGeocoder geocoder;
+        try {
+            geocoder = ReverseGeocoder.builder().geohash(Integer.parseInt(args[0])).build();
+        } catch (IllegalArgumentException e) {
+            exit(e.getMessage());
+            return;
+        }
+        Path output = Paths.get(args[1]);
+        try (Writer out = Files.newBufferedWriter(output, UTF_8)) {
+            geocoder.writeGeohashTable(out);
+        }
+        System.err.printf("Wrote %s in %.1f s%n", output, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
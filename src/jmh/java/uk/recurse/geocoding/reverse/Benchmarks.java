@@ -4,65 +4,51 @@ import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.infra.Blackhole;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.PrimitiveIterator;
-import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.stream.Collectors.toList;
-
 @BenchmarkMode(Mode.SingleShotTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 @State(Scope.Benchmark)
 public class Benchmarks {
 
+    // quadtree depth of the precomputed grid, 0 disables it
+    @Param({"0", "10"})
+    public int grid;
+
+    // fixed point vertex resolution in degrees, 0 stores floats
+    @Param({"0", "0.001"})
+    public double resolution;
+
     private ReverseGeocoder geocoder;
     private List<Point> cities;
     private List<Point> random;
+    private float[][] citiesBatch;
+    private float[][] randomBatch;
+    private Country[] results;
 
     @Setup
     public void prepare() throws IOException {
-        geocoder = new ReverseGeocoder();
-        cities = cityPoints();
-        Collections.shuffle(cities, new Random(0));
-        random = randomPoints();
-    }
-
-    private List<Point> cityPoints() throws IOException {
-        try (InputStream in = Benchmarks.class.getResourceAsStream("/cities.tsv")) {
-            return new BufferedReader(new InputStreamReader(in, UTF_8)).lines()
-                    .map(line -> line.split("\t"))
-                    .map(row -> {
-                        float lat = Float.parseFloat(row[0]);
-                        float lon = Float.parseFloat(row[1]);
-                        return new Point(lat, lon);
-                    })
-                    .collect(toList());
+        ReverseGeocoder.Builder builder = ReverseGeocoder.builder();
+        if (grid > 0) {
+            builder.grid(grid);
         }
-    }
-
-    private List<Point> randomPoints() {
-        List<Point> points = new ArrayList<>(cities.size());
-        PrimitiveIterator.OfDouble lats = new Random(0).doubles(-90, 90).iterator();
-        PrimitiveIterator.OfDouble lons = new Random(0).doubles(-180, 180).iterator();
-        for (int i = 0; i < cities.size(); i++) {
-            float lat = (float) lats.nextDouble();
-            float lon = (float) lons.nextDouble();
-            points.add(new Point(lat, lon));
+        if (resolution > 0) {
+            builder.fixedPointVertices(resolution);
         }
-        return points;
+        geocoder = builder.build();
+        cities = Locations.cities();
+        random = Locations.random(cities.size());
+        citiesBatch = Locations.toArrays(cities);
+        randomBatch = Locations.toArrays(random);
+        results = new Country[cities.size()];
     }
 
     @Benchmark
@@ -72,10 +58,41 @@ public class Benchmarks {
         }
     }
 
+    @Benchmark
+    public void citiesMatch(Blackhole bh) {
+        for (Point point : cities) {
+            bh.consume(geocoder.getCountryMatch(point.latitude(), point.longitude(), 10));
+        }
+    }
+
     @Benchmark
     public void randomLocations(Blackhole bh) {
         for (Point point : random) {
             bh.consume(geocoder.getCountry(point.latitude(), point.longitude()));
         }
     }
+
+    @Benchmark
+    public Country[] citiesBatch() {
+        geocoder.getCountries(citiesBatch[0], citiesBatch[1], 0, results.length, results);
+        return results;
+    }
+
+    @Benchmark
+    public Country[] randomLocationsBatch() {
+        geocoder.getCountries(randomBatch[0], randomBatch[1], 0, results.length, results);
+        return results;
+    }
+
+    @Benchmark
+    public Country[] citiesGrouped() {
+        geocoder.getCountries(citiesBatch[0], citiesBatch[1], 0, results.length, results, Runnable::run);
+        return results;
+    }
+
+    @Benchmark
+    public Country[] randomLocationsGrouped() {
+        geocoder.getCountries(randomBatch[0], randomBatch[1], 0, results.length, results, Runnable::run);
+        return results;
+    }
 }
@@ -0,0 +1,59 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event stream that keeps revisiting the same places: 100,000 lookups within about 10 metres of
+ * one of 1,000 cities, with and without the result cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CacheBenchmarks {
+
+    private ReverseGeocoder uncached;
+    private ReverseGeocoder cached;
+    private float[] lat;
+    private float[] lon;
+
+    @Setup
+    public void prepare() throws IOException {
+        uncached = new ReverseGeocoder();
+        cached = ReverseGeocoder.builder().cache(1 << 14, 1e-3).build();
+        List<Point> cities = Locations.cities().subList(0, 1000);
+        Random random = new Random(0);
+        lat = new float[100_000];
+        lon = new float[lat.length];
+        for (int i = 0; i < lat.length; i++) {
+            Point city = cities.get(random.nextInt(cities.size()));
+            lat[i] = city.latitude() + (random.nextFloat() - 0.5f) * 1e-4f;
+            lon[i] = city.longitude() + (random.nextFloat() - 0.5f) * 1e-4f;
+        }
+    }
+
+    @Benchmark
+    public void uncached(Blackhole bh) {
+        for (int i = 0; i < lat.length; i++) {
+            bh.consume(uncached.getCountryOrdinal(lat[i], lon[i]));
+        }
+    }
+
+    @Benchmark
+    public void cached(Blackhole bh) {
+        for (int i = 0; i < lat.length; i++) {
+            bh.consume(cached.getCountryOrdinal(lat[i], lon[i]));
+        }
+    }
+}
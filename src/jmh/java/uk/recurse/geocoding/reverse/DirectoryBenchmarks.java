@@ -0,0 +1,55 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1,000 alpha-3 codes of random countries, held in a reused buffer as an enrichment job parsing
+ * records would, resolved through the directory and by scanning the country stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DirectoryBenchmarks {
+
+    private ReverseGeocoder geocoder;
+    private char[] codes;
+    private final StringBuilder buffer = new StringBuilder(3);
+
+    @Setup
+    public void prepare() {
+        geocoder = new ReverseGeocoder();
+        Random random = new Random(0);
+        codes = new char[3 * 1000];
+        for (int i = 0; i < codes.length; i += 3) {
+            geocoder.country(random.nextInt(geocoder.countryCount())).iso3().getChars(0, 3, codes, i);
+        }
+    }
+
+    @Benchmark
+    public void directory(Blackhole bh) {
+        CountryDirectory directory = geocoder.directory();
+        for (int i = 0; i < codes.length; i += 3) {
+            buffer.setLength(0);
+            buffer.append(codes, i, 3);
+            bh.consume(directory.byAlpha3(buffer));
+        }
+    }
+
+    @Benchmark
+    public void scan(Blackhole bh) {
+        for (int i = 0; i < codes.length; i += 3) {
+            String code = new String(codes, i, 3);
+            bh.consume(geocoder.countries().filter(country -> country.iso3().equals(code)).findFirst().orElse(null));
+        }
+    }
+}
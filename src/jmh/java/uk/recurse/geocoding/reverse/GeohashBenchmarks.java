@@ -0,0 +1,85 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seven character geohashes (cells of about 150 metres) of 10,000 cities, packed and as strings,
+ * with and without the precision 5 prefix table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class GeohashBenchmarks {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private ReverseGeocoder plain;
+    private ReverseGeocoder table;
+    private long[] packed;
+    private String[] strings;
+
+    @Setup
+    public void prepare() throws IOException {
+        plain = new ReverseGeocoder();
+        table = ReverseGeocoder.builder().geohash(5).build();
+        List<Point> cities = Locations.cities().subList(0, 10_000);
+        packed = new long[cities.size()];
+        strings = new String[cities.size()];
+        for (int i = 0; i < packed.length; i++) {
+            strings[i] = encode(cities.get(i).latitude(), cities.get(i).longitude(), 7);
+            packed[i] = GeohashIndex.parse(strings[i]);
+        }
+    }
+
+    @Benchmark
+    public void packed(Blackhole bh) {
+        for (long geohash : packed) {
+            bh.consume(plain.getCountryOrdinalByGeohash(geohash));
+        }
+    }
+
+    @Benchmark
+    public void packedTable(Blackhole bh) {
+        for (long geohash : packed) {
+            bh.consume(table.getCountryOrdinalByGeohash(geohash));
+        }
+    }
+
+    @Benchmark
+    public void stringTable(Blackhole bh) {
+        for (String geohash : strings) {
+            bh.consume(table.getCountryOrdinalByGeohash(geohash));
+        }
+    }
+
+    private static String encode(double lat, double lon, int length) {
+        double[] latRange = {-90, 90};
+        double[] lonRange = {-180, 180};
+        StringBuilder geohash = new StringBuilder();
+        int digit = 0;
+        for (int i = 0; i < 5 * length; i++) {
+            double[] range = (i & 1) == 0 ? lonRange : latRange;
+            double value = (i & 1) == 0 ? lon : lat;
+            double mid = (range[0] + range[1]) / 2;
+            int bit = value >= mid ? 1 : 0;
+            range[bit == 1 ? 0 : 1] = mid;
+            digit = digit << 1 | bit;
+            if (i % 5 == 4) {
+                geohash.append(BASE32.charAt(digit));
+                digit = 0;
+            }
+        }
+        return geohash.toString();
+    }
+}
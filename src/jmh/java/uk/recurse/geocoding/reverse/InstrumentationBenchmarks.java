@@ -0,0 +1,53 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of lookup statistics: looks up every city with instrumentation off, which should match
+ * the plain lookup benchmark, and on, with a slow lookup threshold that no lookup reaches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class InstrumentationBenchmarks {
+
+    @Param({"false", "true"})
+    private boolean instrumented;
+
+    private ReverseGeocoder geocoder;
+    private float[] lat;
+    private float[] lon;
+
+    @Setup
+    public void prepare() throws IOException {
+        geocoder = instrumented
+                ? ReverseGeocoder.builder().instrument("benchmark", TimeUnit.SECONDS.toNanos(1)).build()
+                : new ReverseGeocoder();
+        List<Point> cities = Locations.cities();
+        lat = new float[cities.size()];
+        lon = new float[cities.size()];
+        for (int i = 0; i < cities.size(); i++) {
+            lat[i] = cities.get(i).latitude();
+            lon[i] = cities.get(i).longitude();
+        }
+    }
+
+    @Benchmark
+    public void cities(Blackhole bh) {
+        for (int i = 0; i < lat.length; i++) {
+            bh.consume(geocoder.getCountryOrdinal(lat[i], lon[i]));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class LoadBenchmarks {
+
+    private Map<String, Country> countries;
+
+    @Setup
+    public void prepare() throws IOException {
+        countries = ReverseGeocoder.loadCountries();
+    }
+
+    @Benchmark
+    public FeatureCollection json() throws IOException {
+        return ReverseGeocoder.loadShapes(countries);
+    }
+
+    @Benchmark
+    public FeatureCollection jsonDatabind() throws IOException {
+        try (InputStream in = LoadBenchmarks.class.getResourceAsStream("/shapes_simplified_low.json")) {
+            return ReverseGeocoder.bindShapes(countries, in);
+        }
+    }
+
+    @Benchmark
+    public FeatureCollection snapshot() throws IOException {
+        try (InputStream in = LoadBenchmarks.class.getResourceAsStream("/shapes_simplified_low.bin")) {
+            return Snapshot.read(in, countries);
+        }
+    }
+}
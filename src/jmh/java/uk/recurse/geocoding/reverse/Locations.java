@@ -0,0 +1,56 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+class Locations {
+
+    private Locations() {
+    }
+
+    static List<Point> cities() throws IOException {
+        try (InputStream in = Locations.class.getResourceAsStream("/cities.tsv")) {
+            List<Point> cities = new BufferedReader(new InputStreamReader(in, UTF_8)).lines()
+                    .map(line -> line.split("\t"))
+                    .map(row -> {
+                        float lat = Float.parseFloat(row[0]);
+                        float lon = Float.parseFloat(row[1]);
+                        return new Point(lat, lon);
+                    })
+                    .collect(toList());
+            Collections.shuffle(cities, new Random(0));
+            return cities;
+        }
+    }
+
+    static List<Point> random(int n) {
+        List<Point> points = new ArrayList<>(n);
+        PrimitiveIterator.OfDouble lats = new Random(0).doubles(-90, 90).iterator();
+        PrimitiveIterator.OfDouble lons = new Random(0).doubles(-180, 180).iterator();
+        for (int i = 0; i < n; i++) {
+            float lat = (float) lats.nextDouble();
+            float lon = (float) lons.nextDouble();
+            points.add(new Point(lat, lon));
+        }
+        return points;
+    }
+
+    static float[][] toArrays(List<Point> points) {
+        float[][] arrays = new float[2][points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            arrays[0][i] = points.get(i).latitude();
+            arrays[1][i] = points.get(i).longitude();
+        }
+        return arrays;
+    }
+}
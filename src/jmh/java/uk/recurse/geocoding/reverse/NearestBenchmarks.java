@@ -0,0 +1,65 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Points in the sea within about 30 kilometres of a city, as reported by ships and by phones on
+ * the beach, looked up with and without falling back to the nearest country.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class NearestBenchmarks {
+
+    @Param({"10", "100"})
+    public double maxDistanceKm;
+
+    private ReverseGeocoder geocoder;
+    private float[] lat;
+    private float[] lon;
+
+    @Setup
+    public void prepare() throws IOException {
+        geocoder = new ReverseGeocoder();
+        List<Point> cities = Locations.cities();
+        Random random = new Random(0);
+        lat = new float[1000];
+        lon = new float[lat.length];
+        for (int i = 0; i < lat.length; ) {
+            Point city = cities.get(random.nextInt(cities.size()));
+            float y = city.latitude() + (random.nextFloat() - 0.5f) * 0.5f;
+            float x = city.longitude() + (random.nextFloat() - 0.5f) * 0.5f;
+            if (!geocoder.getCountry(y, x).isPresent()) {
+                lat[i] = y;
+                lon[i++] = x;
+            }
+        }
+    }
+
+    @Benchmark
+    public void contains(Blackhole bh) {
+        for (int i = 0; i < lat.length; i++) {
+            bh.consume(geocoder.getCountry(lat[i], lon[i]));
+        }
+    }
+
+    @Benchmark
+    public void nearest(Blackhole bh) {
+        for (int i = 0; i < lat.length; i++) {
+            bh.consume(geocoder.getNearestCountry(lat[i], lon[i], maxDistanceKm));
+        }
+    }
+}
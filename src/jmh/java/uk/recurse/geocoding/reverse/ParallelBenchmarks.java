@@ -0,0 +1,57 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the parallel batch API with the number of pool threads, against the sequential batch
+ * on the same million random locations. Threads beyond the number of cores only add overhead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ParallelBenchmarks {
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int threads;
+
+    private ReverseGeocoder geocoder;
+    private ForkJoinPool pool;
+    private float[][] locations;
+    private short[] results;
+
+    @Setup
+    public void prepare() {
+        geocoder = new ReverseGeocoder();
+        pool = new ForkJoinPool(threads);
+        locations = Locations.toArrays(Locations.random(1_000_000));
+        results = new short[locations[0].length];
+    }
+
+    @TearDown
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public short[] sequential() {
+        geocoder.getCountryOrdinals(locations[0], locations[1], 0, results.length, results);
+        return results;
+    }
+
+    @Benchmark
+    public short[] parallel() {
+        geocoder.getCountryOrdinals(locations[0], locations[1], 0, results.length, results, pool);
+        return results;
+    }
+}
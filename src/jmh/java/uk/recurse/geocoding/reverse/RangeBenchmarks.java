@@ -0,0 +1,63 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map viewports and delivery radiuses centred on 100 cities, from street level to most of a
+ * continent: square viewports with sides of the given size in degrees, and radiuses of 111
+ * kilometres per degree of that size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RangeBenchmarks {
+
+    @Param({"0.1", "1", "10", "40"})
+    public double degrees;
+
+    private ReverseGeocoder geocoder;
+    private float[] lat;
+    private float[] lon;
+
+    @Setup
+    public void prepare() throws IOException {
+        geocoder = new ReverseGeocoder();
+        List<Point> cities = Locations.cities().subList(0, 100);
+        float[][] arrays = Locations.toArrays(cities);
+        lat = arrays[0];
+        lon = arrays[1];
+    }
+
+    @Benchmark
+    public void viewport(Blackhole bh) {
+        double half = degrees / 2;
+        for (int i = 0; i < lat.length; i++) {
+            double west = lon[i] - half;
+            double east = lon[i] + half;
+            bh.consume(geocoder.getCountriesInBox(
+                    Math.max(-90, lat[i] - half),
+                    west < -180 ? west + 360 : west,
+                    Math.min(90, lat[i] + half),
+                    east > 180 ? east - 360 : east));
+        }
+    }
+
+    @Benchmark
+    public void radius(Blackhole bh) {
+        for (int i = 0; i < lat.length; i++) {
+            bh.consume(geocoder.getCountriesWithin(lat[i], lon[i], degrees * 111));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-polygon latency for a jagged star shaped ring with the given number of vertices,
+ * queried at random points inside its bounding box. The quantized ring goes through
+ * {@link FixedPointKernel}, which is only vectorised on Java 17+ with
+ * {@code --add-modules jdk.incubator.vector} in the benchmark JVM arguments; compare with
+ * {@code -Duk.recurse.geocoding.reverse.vector=false} for the scalar loop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class RingBenchmarks {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"16", "64", "256", "1024", "4096"})
+    public int vertices;
+
+    private float[] latitude;
+    private float[] longitude;
+    private Ring ring;
+    private Ring quantized;
+    private EdgeIndex edgeIndex;
+    private float[] queryLat;
+    private float[] queryLon;
+    private int next;
+
+    @Setup
+    public void prepare() {
+        Random random = new Random(0);
+        latitude = new float[vertices];
+        longitude = new float[vertices];
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = 5 + 5 * random.nextDouble();
+            latitude[i] = (float) (radius * Math.sin(angle));
+            longitude[i] = (float) (radius * Math.cos(angle));
+        }
+        ring = new Ring(latitude, longitude);
+        quantized = ring.quantize(0.001);
+        edgeIndex = new EdgeIndex(latitude, longitude);
+        queryLat = new float[QUERIES];
+        queryLon = new float[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queryLat[i] = random.nextFloat() * 20 - 10;
+            queryLon[i] = random.nextFloat() * 20 - 10;
+        }
+    }
+
+    private int next() {
+        return next = (next + 1) & (QUERIES - 1);
+    }
+
+    @Benchmark
+    public boolean loop() {
+        int i = next();
+        return FloatVertices.pnpoly(latitude, longitude, queryLat[i], queryLon[i]);
+    }
+
+    @Benchmark
+    public boolean slabs() {
+        int i = next();
+        return edgeIndex.contains(queryLat[i], queryLon[i]);
+    }
+
+    @Benchmark
+    public boolean ring() {
+        int i = next();
+        return ring.contains(queryLat[i], queryLon[i]);
+    }
+
+    @Benchmark
+    public boolean quantized() {
+        int i = next();
+        return quantized.contains(queryLat[i], queryLon[i]);
+    }
+}
@@ -0,0 +1,109 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * One benchmark per stage of loading and lookup, so that a regression in the end to end
+ * benchmarks can be traced to the stage that caused it. Loading the GeoJSON and the snapshot is
+ * covered by {@link LoadBenchmarks} and point-in-polygon tests at several ring sizes by
+ * {@link RingBenchmarks}. Run with the GC profiler, as the Gradle jmh task does, to see the bytes
+ * allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class StageBenchmarks {
+
+    private static final int MASK = 1023;
+
+    private byte[] countryInfo;
+    private List<Geometry> polygons;
+    private BoundingBox[] boxes;
+    private ReverseGeocoder geocoder;
+    private FlatRTree index;
+    private float[] lat;
+    private float[] lon;
+    private int next;
+
+    @Setup
+    public void prepare() throws IOException {
+        try (InputStream in = StageBenchmarks.class.getResourceAsStream("/countryInfo.txt")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, n);
+            }
+            countryInfo = bytes.toByteArray();
+        }
+        geocoder = new ReverseGeocoder();
+        Map<String, Country> countries = ReverseGeocoder.loadCountries();
+        index = ReverseGeocoder.loadShapes(countries).index();
+        polygons = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            if (index.polygon(i) != null) {
+                polygons.add(index.polygon(i));
+            }
+        }
+        List<Point> cities = Locations.cities();
+        Random random = new Random(0);
+        boxes = new BoundingBox[MASK + 1];
+        lat = new float[MASK + 1];
+        lon = new float[MASK + 1];
+        for (int i = 0; i <= MASK; i++) {
+            boxes[i] = polygons.get(random.nextInt(polygons.size())).boundingBox();
+            Point city = cities.get(random.nextInt(cities.size()));
+            lat[i] = city.latitude();
+            lon[i] = city.longitude();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<String, Country> countryInfo() {
+        return Country.load(new InputStreamReader(new ByteArrayInputStream(countryInfo), UTF_8));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public MultiPolygon pack() {
+        return SortTileRecursive.pack(polygons.stream());
+    }
+
+    @Benchmark
+    public boolean boundingBoxContains() {
+        int i = next++ & MASK;
+        return boxes[i].contains(lat[i], lon[i]);
+    }
+
+    @Benchmark
+    public int treeLookup() {
+        int i = next++ & MASK;
+        return index.getCountryOrdinal(lat[i], lon[i]);
+    }
+
+    @Benchmark
+    public int singleLookup() {
+        int i = next++ & MASK;
+        return geocoder.getCountryOrdinal(lat[i], lon[i]);
+    }
+}
@@ -0,0 +1,78 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays 100 vehicle traces of 1,000 fixes each, random walks with steps of up to about 250
+ * metres starting from cities, with independent lookups and with one session per trace, and the
+ * time to build the polygon graph that the first session pays for.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TraceBenchmarks {
+
+    private ReverseGeocoder geocoder;
+    private FlatRTree index;
+    private float[][] lat;
+    private float[][] lon;
+
+    @Setup
+    public void prepare() throws IOException {
+        geocoder = new ReverseGeocoder();
+        geocoder.newSession();
+        index = ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries()).index();
+        List<Point> cities = Locations.cities();
+        Random random = new Random(0);
+        lat = new float[100][1000];
+        lon = new float[100][1000];
+        for (int trace = 0; trace < lat.length; trace++) {
+            Point start = cities.get(random.nextInt(cities.size()));
+            float y = start.latitude();
+            float x = start.longitude();
+            for (int i = 0; i < lat[trace].length; i++) {
+                y += (random.nextFloat() - 0.5f) * 0.005f;
+                x += (random.nextFloat() - 0.5f) * 0.005f;
+                lat[trace][i] = y;
+                lon[trace][i] = x;
+            }
+        }
+    }
+
+    @Benchmark
+    public void independent(Blackhole bh) {
+        for (int trace = 0; trace < lat.length; trace++) {
+            for (int i = 0; i < lat[trace].length; i++) {
+                bh.consume(geocoder.getCountryOrdinal(lat[trace][i], lon[trace][i]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void session(Blackhole bh) {
+        for (int trace = 0; trace < lat.length; trace++) {
+            TrajectorySession session = geocoder.newSession();
+            for (int i = 0; i < lat[trace].length; i++) {
+                bh.consume(session.getCountryOrdinal(lat[trace][i], lon[trace][i]));
+            }
+        }
+    }
+
+    // one-off cost of the first session
+    @Benchmark
+    public PolygonGraph graph() {
+        return new PolygonGraph(index);
+    }
+}
@@ -0,0 +1,62 @@
+package uk.recurse.geocoding.reverse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TreeBenchmarks {
+
+    private Geometry world;
+    private FlatRTree flat;
+    private List<Point> cities;
+    private List<Point> random;
+
+    @Setup
+    public void prepare() throws IOException {
+        FeatureCollection collection = ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries());
+        world = collection.world();
+        flat = collection.index();
+        cities = Locations.cities();
+        random = Locations.random(cities.size());
+    }
+
+    @Benchmark
+    public void recursiveCities(Blackhole bh) {
+        for (Point point : cities) {
+            bh.consume(world.getCountryOrdinal(point.latitude(), point.longitude()));
+        }
+    }
+
+    @Benchmark
+    public void flatCities(Blackhole bh) {
+        for (Point point : cities) {
+            bh.consume(flat.getCountryOrdinal(point.latitude(), point.longitude()));
+        }
+    }
+
+    @Benchmark
+    public void recursiveRandomLocations(Blackhole bh) {
+        for (Point point : random) {
+            bh.consume(world.getCountryOrdinal(point.latitude(), point.longitude()));
+        }
+    }
+
+    @Benchmark
+    public void flatRandomLocations(Blackhole bh) {
+        for (Point point : random) {
+            bh.consume(flat.getCountryOrdinal(point.latitude(), point.longitude()));
+        }
+    }
+}
@@ -1,26 +1,44 @@
 package uk.recurse.geocoding.reverse;
 
-import java.util.DoubleSummaryStatistics;
-import java.util.stream.Stream;
-
 class BoundingBox {
 
     private final Point max;
     private final Point min;
 
     BoundingBox(Geometry[] geometries) {
-        this(Stream.of(geometries).map(Geometry::boundingBox).flatMap(BoundingBox::points));
+        float minLat = Float.POSITIVE_INFINITY;
+        float minLon = Float.POSITIVE_INFINITY;
+        float maxLat = Float.NEGATIVE_INFINITY;
+        float maxLon = Float.NEGATIVE_INFINITY;
+        for (Geometry geometry : geometries) {
+            BoundingBox box = geometry.boundingBox();
+            minLat = Math.min(minLat, box.minLatitude());
+            minLon = Math.min(minLon, box.minLongitude());
+            maxLat = Math.max(maxLat, box.maxLatitude());
+            maxLon = Math.max(maxLon, box.maxLongitude());
+        }
+        max = new Point(maxLat, maxLon);
+        min = new Point(minLat, minLon);
+    }
+
+    BoundingBox(float minLat, float minLon, float maxLat, float maxLon) {
+        max = new Point(maxLat, maxLon);
+        min = new Point(minLat, minLon);
     }
 
-    BoundingBox(Stream<Point> points) {
-        DoubleSummaryStatistics lat = new DoubleSummaryStatistics();
-        DoubleSummaryStatistics lon = new DoubleSummaryStatistics();
-        points.forEach(point -> {
-            lat.accept(point.latitude());
-            lon.accept(point.longitude());
-        });
-        max = new Point((float) lat.getMax(), (float) lon.getMax());
-        min = new Point((float) lat.getMin(), (float) lon.getMin());
+    BoundingBox(float[] latitude, float[] longitude) {
+        float minLat = Float.POSITIVE_INFINITY;
+        float minLon = Float.POSITIVE_INFINITY;
+        float maxLat = Float.NEGATIVE_INFINITY;
+        float maxLon = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < latitude.length; i++) {
+            minLat = Math.min(minLat, latitude[i]);
+            minLon = Math.min(minLon, longitude[i]);
+            maxLat = Math.max(maxLat, latitude[i]);
+            maxLon = Math.max(maxLon, longitude[i]);
+        }
+        max = new Point(maxLat, maxLon);
+        min = new Point(minLat, minLon);
     }
 
     boolean contains(float lat, float lon) {
@@ -28,6 +46,26 @@ class BoundingBox {
                 && lat >= min.latitude() && lon >= min.longitude();
     }
 
+    float minLatitude() {
+        return min.latitude();
+    }
+
+    float minLongitude() {
+        return min.longitude();
+    }
+
+    float maxLatitude() {
+        return max.latitude();
+    }
+
+    float maxLongitude() {
+        return max.longitude();
+    }
+
+    long footprint() {
+        return Footprint.object(2) + 2 * Footprint.object(2);
+    }
+
     float centroidLatitude() {
         return (max.latitude() + min.latitude()) / 2;
     }
@@ -35,8 +73,4 @@ class BoundingBox {
     float centroidLongitude() {
         return (max.longitude() + min.longitude()) / 2;
     }
-
-    private Stream<Point> points() {
-        return Stream.of(max, min);
-    }
 }
@@ -2,13 +2,16 @@ package uk.recurse.geocoding.reverse;
 
 import java.io.BufferedReader;
 import java.io.Reader;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
@@ -26,8 +29,9 @@ public class Country {
     private final int population;
     private final String continent;
     private final List<Locale> locales;
+    private final int ordinal;
 
-    private Country(String[] row) {
+    private Country(String[] row, int ordinal) {
         iso = row[0];
         iso3 = row[1];
         isoNumeric = Integer.parseInt(row[2]);
@@ -38,13 +42,25 @@ public class Country {
         locales = Stream.of(row[15].split(","))
                 .map(Locale::forLanguageTag)
                 .collect(collectingAndThen(toList(), Collections::unmodifiableList));
+        this.ordinal = ordinal;
     }
 
     static Map<String, Country> load(Reader reader) {
-        return new BufferedReader(reader).lines()
+        List<String[]> rows = new BufferedReader(reader).lines()
                 .filter(line -> !line.startsWith("#"))
                 .map(line -> line.split("\t"))
-                .collect(toMap(row -> row[16], Country::new));
+                .collect(toList());
+        return IntStream.range(0, rows.size())
+                .mapToObj(i -> new Country(rows.get(i), i))
+                .collect(toMap(country -> rows.get(country.ordinal)[16], identity()));
+    }
+
+    static Country[] byOrdinal(Collection<Country> countries) {
+        Country[] table = new Country[countries.size()];
+        for (Country country : countries) {
+            table[country.ordinal] = country;
+        }
+        return table;
     }
 
     /**
@@ -119,6 +135,16 @@ public class Country {
         return locales;
     }
 
+    /**
+     * Returns a dense index for the country. Ordinals run from zero to one less than the number of
+     * countries in the data set, so they can be used to index arrays when bucketing results.
+     *
+     * @return ordinal of the country in the country information file
+     */
+    public int ordinal() {
+        return ordinal;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
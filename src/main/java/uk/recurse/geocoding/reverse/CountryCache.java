@@ -0,0 +1,85 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of lookup results keyed on coordinates snapped to a grid of cells. The table is
+ * direct mapped: each cell hashes to one slot holding the cell and its country ordinal packed into
+ * a single long, so reads and writes are lock free and a colliding cell simply evicts the previous
+ * one. Results outside every country are cached too.
+ *
+ * <p>The first coordinate looked up in a cell decides the answer for the whole cell while it stays
+ * cached, so answers are exact for cells that lie entirely inside one country or entirely outside
+ * all of them, and may differ from the uncached lookup only within one cell of a border.
+ */
+class CountryCache implements CountryLookup {
+
+    // cell coordinates take 24 bits each, so cells can be no smaller than this
+    static final double MIN_PRECISION = 360.0 / (1 << 24);
+
+    private static final long VALID = 1L << 63;
+    private static final int CELL_BITS = 24;
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+    private static final int ORDINAL_BITS = 15;
+    private static final long ORDINAL_MASK = (1L << ORDINAL_BITS) - 1;
+
+    private final CountryLookup lookup;
+    private final double scale;
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param lookup    lookup to cache
+     * @param capacity  number of cached cells, rounded up to a power of two
+     * @param precision cell size in degrees, at least {@link #MIN_PRECISION}
+     */
+    CountryCache(CountryLookup lookup, int capacity, double precision) {
+        this.lookup = lookup;
+        this.scale = 1 / precision;
+        int size = Integer.bitCount(capacity) == 1 ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public int getCountryOrdinal(float lat, float lon) {
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            return lookup.getCountryOrdinal(lat, lon);
+        }
+        long y = (long) ((lat + 90.0) * scale);
+        long x = Math.min((long) ((lon + 180.0) * scale), CELL_MASK);
+        long cell = y << CELL_BITS | x;
+        long key = VALID | cell << ORDINAL_BITS;
+        int slot = hash(cell) & mask;
+        long entry = slots.get(slot);
+        if ((entry & ~ORDINAL_MASK) == key) {
+            hits.increment();
+            return (int) (entry & ORDINAL_MASK) - 1;
+        }
+        misses.increment();
+        int ordinal = lookup.getCountryOrdinal(lat, lon);
+        slots.lazySet(slot, key | ordinal + 1);
+        return ordinal;
+    }
+
+    private static int hash(long cell) {
+        long h = cell * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32 ^ h);
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long footprint() {
+        return Footprint.object(7) + Footprint.object(1) + Footprint.array(slots.length(), Long.BYTES)
+                + 2 * Footprint.object(4);
+    }
+}
@@ -0,0 +1,146 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.Arrays;
+
+/**
+ * Finds countries by their ISO 3166-1 codes in constant time without allocating. Letter codes are
+ * read straight from a {@link CharSequence}, or from separate chars when they have been unpacked
+ * from some other format, and index dense tables of every possible code; numeric codes index an
+ * array of all three digit numbers. The countries are the same instances the reverse geocoder
+ * returns.
+ *
+ * <p>Letter codes are matched in either case. Unknown codes, codes of the wrong length and the
+ * numeric code 0, which GeoNames gives to countries without one, find no country. If two
+ * countries share a code, the one with the lower ordinal is found. A country whose code in the
+ * country information has the wrong length or is not all letters cannot be found by that code.
+ */
+public class CountryDirectory {
+
+    private static final int LETTERS = 26;
+    private static final int NUMERIC_CODES = 1000;
+
+    private final Country[] countries;
+    // country ordinal by code index, or -1
+    private final short[] alpha2 = new short[LETTERS * LETTERS];
+    private final short[] alpha3 = new short[LETTERS * LETTERS * LETTERS];
+    private final short[] numeric = new short[NUMERIC_CODES];
+
+    CountryDirectory(FeatureCollection featureCollection) {
+        countries = new Country[featureCollection.countryCount()];
+        Arrays.fill(alpha2, (short) -1);
+        Arrays.fill(alpha3, (short) -1);
+        Arrays.fill(numeric, (short) -1);
+        for (int ordinal = countries.length - 1; ordinal >= 0; ordinal--) {
+            Country country = featureCollection.country(ordinal);
+            countries[ordinal] = country;
+            int index = index(country.iso(), 2);
+            if (index >= 0) {
+                alpha2[index] = (short) ordinal;
+            }
+            index = index(country.iso3(), 3);
+            if (index >= 0) {
+                alpha3[index] = (short) ordinal;
+            }
+            if (country.isoNumeric() > 0 && country.isoNumeric() < NUMERIC_CODES) {
+                numeric[country.isoNumeric()] = (short) ordinal;
+            }
+        }
+    }
+
+    /**
+     * Returns the country with an ISO 3166-1 alpha-2 code, such as {@code GB}.
+     *
+     * @param code two letters
+     * @return the country, or null if no country has the code
+     */
+    public Country byAlpha2(CharSequence code) {
+        return code.length() == 2 ? byAlpha2(code.charAt(0), code.charAt(1)) : null;
+    }
+
+    /**
+     * Returns the country with the ISO 3166-1 alpha-2 code made of two letters.
+     *
+     * @param first  first letter
+     * @param second second letter
+     * @return the country, or null if no country has the code
+     */
+    public Country byAlpha2(char first, char second) {
+        int a = letter(first);
+        int b = letter(second);
+        return (a | b) < 0 ? null : country(alpha2[a * LETTERS + b]);
+    }
+
+    /**
+     * Returns the country with an ISO 3166-1 alpha-3 code, such as {@code GBR}.
+     *
+     * @param code three letters
+     * @return the country, or null if no country has the code
+     */
+    public Country byAlpha3(CharSequence code) {
+        return code.length() == 3 ? byAlpha3(code.charAt(0), code.charAt(1), code.charAt(2)) : null;
+    }
+
+    /**
+     * Returns the country with the ISO 3166-1 alpha-3 code made of three letters.
+     *
+     * @param first  first letter
+     * @param second second letter
+     * @param third  third letter
+     * @return the country, or null if no country has the code
+     */
+    public Country byAlpha3(char first, char second, char third) {
+        int a = letter(first);
+        int b = letter(second);
+        int c = letter(third);
+        return (a | b | c) < 0 ? null : country(alpha3[(a * LETTERS + b) * LETTERS + c]);
+    }
+
+    /**
+     * Returns the country with an ISO 3166-1 numeric code, such as 826.
+     *
+     * @param code number from 1 to 999
+     * @return the country, or null if no country has the code
+     */
+    public Country byNumeric(int code) {
+        return code > 0 && code < NUMERIC_CODES ? country(numeric[code]) : null;
+    }
+
+    /**
+     * Returns the heap used by the code tables.
+     *
+     * @return size in bytes
+     */
+    long footprint() {
+        return Footprint.object(4) + Footprint.array(countries.length, (int) Footprint.REFERENCE)
+                + Footprint.array(alpha2.length, Short.BYTES) + Footprint.array(alpha3.length, Short.BYTES)
+                + Footprint.array(numeric.length, Short.BYTES);
+    }
+
+    private Country country(short ordinal) {
+        return ordinal < 0 ? null : countries[ordinal];
+    }
+
+    // index of the code in the table of all codes of the given length, or -1 if it has another
+    // length or is not all letters
+    private static int index(String code, int length) {
+        if (code.length() != length) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < code.length(); i++) {
+            int letter = letter(code.charAt(i));
+            if (letter < 0) {
+                return -1;
+            }
+            index = index * LETTERS + letter;
+        }
+        return index;
+    }
+
+    private static int letter(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        return c >= 'a' && c <= 'z' ? c - 'a' : -1;
+    }
+}
@@ -0,0 +1,29 @@
+package uk.recurse.geocoding.reverse;
+
+interface CountryLookup {
+
+    /**
+     * Returns the ordinal of the country containing a coordinate.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return country ordinal, or -1 if the coordinate is not in a country
+     */
+    int getCountryOrdinal(float lat, float lon);
+
+    /**
+     * Returns the ordinals of the countries containing a group of coordinates. Implementations
+     * may share work between the coordinates, which pays off when the group is spatially compact.
+     *
+     * @param lat      degrees latitude
+     * @param lon      degrees longitude
+     * @param length   number of coordinates in the group
+     * @param ordinals output array for the country ordinals, or -1 where the coordinate is not in
+     *                 a country
+     */
+    default void getCountryOrdinals(float[] lat, float[] lon, int length, int[] ordinals) {
+        for (int i = 0; i < length; i++) {
+            ordinals[i] = getCountryOrdinal(lat[i], lon[i]);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package uk.recurse.geocoding.reverse;
+
+/**
+ * A country together with how far the looked up coordinate is from the border of the shape that
+ * matched. The shapes are simplified, so only coordinates close to a border or coastline can be
+ * in the wrong country; callers can send matches below a threshold distance to a more precise
+ * service.
+ */
+public class CountryMatch {
+
+    private final Country country;
+    private final double borderDistanceKm;
+
+    CountryMatch(Country country, double borderDistanceKm) {
+        this.country = country;
+        this.borderDistanceKm = borderDistanceKm;
+    }
+
+    /**
+     * Returns the matched country.
+     *
+     * @return country containing the coordinate
+     */
+    public Country country() {
+        return country;
+    }
+
+    /**
+     * Returns the approximate great-circle distance from the coordinate to the nearest edge of the
+     * matched shape, including coastlines and the edges of holes such as enclaves.
+     *
+     * @return distance in kilometres, or positive infinity if it is further than the maximum
+     * distance of the lookup
+     */
+    public double borderDistanceKm() {
+        return borderDistanceKm;
+    }
+
+    @Override
+    public String toString() {
+        return country + (Double.isInfinite(borderDistanceKm) ? " far from border"
+                : String.format(" %.3f km from border", borderDistanceKm));
+    }
+}
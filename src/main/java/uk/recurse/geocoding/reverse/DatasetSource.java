@@ -0,0 +1,179 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Where the country information or the shapes of a reverse geocoder are read from: a classpath
+ * resource, a file or a channel. Files, and channels that are files, are memory mapped, so the
+ * parsers read them straight from the page cache instead of through a copy of the whole file on
+ * the heap.
+ *
+ * <p>Shapes may be a binary {@link Snapshot}, a GeoJSON feature collection like the bundled
+ * {@code shapes_simplified_low.json}, or the GeoNames {@code shapes_all_low.txt} table of one
+ * geometry per line; the format is recognised from the first bytes.
+ */
+abstract class DatasetSource {
+
+    private static final int SNAPSHOT_MAGIC_BYTE = 'R';
+
+    private final String name;
+
+    private DatasetSource(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the shapes bundled with the library: the precompiled snapshot when it is on the
+     * classpath, otherwise the GeoJSON it was compiled from.
+     *
+     * @return bundled shapes
+     */
+    static DatasetSource bundledShapes() {
+        String snapshot = "/shapes_simplified_low.bin";
+        return resource(ReverseGeocoder.class.getResource(snapshot) == null ? "/shapes_simplified_low.json" : snapshot);
+    }
+
+    static DatasetSource resource(String name) {
+        return new DatasetSource("classpath:" + name) {
+            @Override
+            InputStream open() throws IOException {
+                InputStream in = ReverseGeocoder.class.getResourceAsStream(name);
+                if (in == null) {
+                    throw new IOException("Resource not found: " + name);
+                }
+                return in;
+            }
+        };
+    }
+
+    static DatasetSource path(Path path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path must not be null");
+        }
+        return new DatasetSource(path.toString()) {
+            @Override
+            InputStream open() throws IOException {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    return map(channel);
+                }
+            }
+        };
+    }
+
+    static DatasetSource channel(ReadableByteChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel must not be null");
+        }
+        return new DatasetSource(channel.toString()) {
+            @Override
+            InputStream open() throws IOException {
+                if (channel instanceof FileChannel) {
+                    return map((FileChannel) channel);
+                }
+                // the caller owns the channel, so closing the stream must not close it
+                return new FilterInputStream(Channels.newInputStream(channel)) {
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Opens the source. Channels are read from their current position and can only be read once.
+     *
+     * @return stream over the data, which the caller must close
+     * @throws IOException if the source cannot be opened
+     */
+    abstract InputStream open() throws IOException;
+
+    Map<String, Country> readCountries() throws IOException {
+        try (InputStream in = open()) {
+            return Country.load(new InputStreamReader(in, UTF_8));
+        }
+    }
+
+    FeatureCollection readShapes(Map<String, Country> countries) throws IOException {
+        return readShapes(countries, true);
+    }
+
+    FeatureCollection readShapes(Map<String, Country> countries, boolean indexEdges) throws IOException {
+        try (InputStream in = new BufferedInputStream(open(), 1 << 16)) {
+            in.mark(1);
+            int first = in.read();
+            in.reset();
+            if (first == SNAPSHOT_MAGIC_BYTE) {
+                return Snapshot.read(in, countries, indexEdges);
+            }
+            if (Character.isLetter(first)) {
+                // the column header line of the GeoNames table
+                for (int b = in.read(); b != '\n' && b != -1; b = in.read()) {
+                }
+            }
+            return GeoJsonReader.read(in, countries, indexEdges);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static InputStream map(FileChannel channel) throws IOException {
+        long position = channel.position();
+        long size = channel.size() - position;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Dataset too large to map: " + size + " bytes");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        channel.position(position + size);
+        return new ByteBufferInputStream(buffer);
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification of closed rings. The ring is split at the vertex furthest from
+ * its first vertex and each half is simplified as a polyline, keeping the vertices that are
+ * further than the tolerance from the chord of the section they are in. Distances are measured in
+ * degrees on the plane of latitude and longitude, like the point in polygon test.
+ *
+ * <p>Every kept vertex is an original vertex and every dropped vertex is within the tolerance of
+ * the simplified border, so borders move by at most the tolerance. A ring keeps at least three
+ * distinct vertices, so islands smaller than the tolerance shrink to triangles rather than
+ * disappearing, and holes are simplified like any other ring. A simplified ring that would cross
+ * or touch itself is rejected, found with a sweep over the edges in order of latitude, and the
+ * original ring is kept. Rings are simplified independently, so intersections with other rings
+ * are not checked.
+ */
+class DouglasPeucker {
+
+    private DouglasPeucker() {
+    }
+
+    /**
+     * Simplifies a closed ring, whose last vertex repeats its first.
+     *
+     * @param lat       vertex latitudes
+     * @param lon       vertex longitudes
+     * @param tolerance maximum distance in degrees of a dropped vertex from the simplified ring
+     * @return indexes of the kept vertices in ascending order, ending with the closing vertex, or
+     * null if no vertex can be dropped or the simplified ring would not be simple
+     */
+    static int[] simplify(float[] lat, float[] lon, double tolerance) {
+        int last = lat.length - 1;
+        if (last < 4) {
+            return null;
+        }
+        int split = furthest(lat, lon, 0, 1, last);
+        boolean[] keep = new boolean[lat.length];
+        keep[0] = true;
+        keep[split] = true;
+        keep[last] = true;
+        int kept = 3 + simplify(lat, lon, 0, split, tolerance, keep) + simplify(lat, lon, split, last, tolerance, keep);
+        if (kept == 3) {
+            // a sliver within the tolerance of a line still needs a third distinct vertex
+            int apex = furthestFromChord(lat, lon, 0, last, split);
+            if (apex < 0) {
+                return null;
+            }
+            keep[apex] = true;
+            kept++;
+        }
+        if (kept == lat.length) {
+            return null;
+        }
+        int[] indexes = new int[kept];
+        for (int i = 0, j = 0; i <= last; i++) {
+            if (keep[i]) {
+                indexes[j++] = i;
+            }
+        }
+        return kept >= 4 && isSimple(lat, lon, indexes) ? indexes : null;
+    }
+
+    /**
+     * Tests that the closed ring through the given vertices does not cross or touch itself, other
+     * than consecutive edges sharing their vertex. Edges are swept in order of their lowest
+     * latitude and each is only tested against the earlier edges that reach its latitude.
+     *
+     * @param lat     vertex latitudes
+     * @param lon     vertex longitudes
+     * @param indexes vertices of the ring, ending with the closing vertex
+     * @return true if the ring is simple
+     */
+    static boolean isSimple(float[] lat, float[] lon, int[] indexes) {
+        int edges = indexes.length - 1;
+        long[] order = new long[edges];
+        for (int k = 0; k < edges; k++) {
+            float low = Math.min(lat[indexes[k]], lat[indexes[k + 1]]);
+            order[k] = (long) sortable(low) << 32 | k;
+        }
+        Arrays.sort(order);
+        int[] active = new int[edges];
+        int size = 0;
+        for (long key : order) {
+            int k = (int) key;
+            int a = indexes[k];
+            int b = indexes[k + 1];
+            float low = Math.min(lat[a], lat[b]);
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int other = active[i];
+                int c = indexes[other];
+                int d = indexes[other + 1];
+                if (Math.max(lat[c], lat[d]) < low) {
+                    continue;
+                }
+                active[kept++] = other;
+                boolean crossing;
+                if (other == k + 1 || k == 0 && other == edges - 1) {
+                    // b follows a into c, or a is the closing vertex d
+                    crossing = other == k + 1 ? overlaps(lat, lon, b, a, d) : overlaps(lat, lon, a, b, c);
+                } else if (k == other + 1 || other == 0 && k == edges - 1) {
+                    crossing = k == other + 1 ? overlaps(lat, lon, a, b, c) : overlaps(lat, lon, b, a, d);
+                } else {
+                    crossing = intersects(lat, lon, a, b, c, d);
+                }
+                if (crossing) {
+                    return false;
+                }
+            }
+            size = kept;
+            active[size++] = k;
+        }
+        return true;
+    }
+
+    // segments ab and cd have a point in common
+    private static boolean intersects(float[] lat, float[] lon, int a, int b, int c, int d) {
+        int abc = orientation(lat, lon, a, b, c);
+        int abd = orientation(lat, lon, a, b, d);
+        int cda = orientation(lat, lon, c, d, a);
+        int cdb = orientation(lat, lon, c, d, b);
+        if (abc != abd && cda != cdb) {
+            return true;
+        }
+        return abc == 0 && within(lat, lon, a, b, c) || abd == 0 && within(lat, lon, a, b, d)
+                || cda == 0 && within(lat, lon, c, d, a) || cdb == 0 && within(lat, lon, c, d, b);
+    }
+
+    // segments sp and sq, which meet at s, have more than s in common
+    private static boolean overlaps(float[] lat, float[] lon, int s, int p, int q) {
+        return orientation(lat, lon, s, p, q) == 0 && (within(lat, lon, s, p, q) || within(lat, lon, s, q, p));
+    }
+
+    // sign of the turn from ab to ac
+    private static int orientation(float[] lat, float[] lon, int a, int b, int c) {
+        double cross = ((double) lon[b] - lon[a]) * ((double) lat[c] - lat[a])
+                - ((double) lat[b] - lat[a]) * ((double) lon[c] - lon[a]);
+        return cross > 0 ? 1 : cross < 0 ? -1 : 0;
+    }
+
+    // c, which is on the line through a and b, is within their bounding box
+    private static boolean within(float[] lat, float[] lon, int a, int b, int c) {
+        return lat[c] >= Math.min(lat[a], lat[b]) && lat[c] <= Math.max(lat[a], lat[b])
+                && lon[c] >= Math.min(lon[a], lon[b]) && lon[c] <= Math.max(lon[a], lon[b]);
+    }
+
+    // an int that orders like the float
+    private static int sortable(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ (bits >> 31 & Integer.MAX_VALUE);
+    }
+
+    // marks the vertices to keep strictly between from and to, without recursion as rings can
+    // have many thousand vertices, and returns how many were marked
+    private static int simplify(float[] lat, float[] lon, int from, int to, double tolerance, boolean[] keep) {
+        int kept = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = to;
+        double squared = tolerance * tolerance;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            int index = -1;
+            double max = squared;
+            for (int i = start + 1; i < end; i++) {
+                double distance = squaredSegmentDistance(lat, lon, i, start, end);
+                if (distance > max) {
+                    max = distance;
+                    index = i;
+                }
+            }
+            if (index >= 0) {
+                keep[index] = true;
+                kept++;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                stack[top++] = start;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = end;
+            }
+        }
+        return kept;
+    }
+
+    // the vertex in [from, to) furthest from the vertex at origin
+    private static int furthest(float[] lat, float[] lon, int origin, int from, int to) {
+        int index = from;
+        double max = -1;
+        for (int i = from; i < to; i++) {
+            double dLat = lat[i] - lat[origin];
+            double dLon = lon[i] - lon[origin];
+            double distance = dLat * dLat + dLon * dLon;
+            if (distance > max) {
+                max = distance;
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    // the vertex furthest from the line through the first vertex and the split, or -1 if all the
+    // vertices are on it
+    private static int furthestFromChord(float[] lat, float[] lon, int from, int to, int split) {
+        int index = -1;
+        double max = 0;
+        for (int i = from + 1; i < to; i++) {
+            if (i != split) {
+                double distance = squaredSegmentDistance(lat, lon, i, from, split);
+                if (distance > max) {
+                    max = distance;
+                    index = i;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static double squaredSegmentDistance(float[] lat, float[] lon, int i, int a, int b) {
+        double x = lon[i] - lon[a];
+        double y = lat[i] - lat[a];
+        double dx = lon[b] - lon[a];
+        double dy = lat[b] - lat[a];
+        double length = dx * dx + dy * dy;
+        double t = length == 0 ? 0 : Math.max(0, Math.min(1, (x * dx + y * dy) / length));
+        double ex = x - t * dx;
+        double ey = y - t * dy;
+        return ex * ex + ey * ey;
+    }
+}
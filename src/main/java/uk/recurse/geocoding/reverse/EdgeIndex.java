@@ -0,0 +1,121 @@
+package uk.recurse.geocoding.reverse;
+
+/**
+ * Latitude slab index over the edges of a ring. The latitude range of the ring is split into
+ * equal height slabs and each slab lists the edges whose latitude span overlaps it, so a
+ * point-in-polygon test only visits the edges that can cross the horizontal ray through the point.
+ * The edges of a slab are stored contiguously with their slope precomputed, which removes the
+ * division from the crossing test.
+ *
+ * <p>The slabs also bound the distance to the nearest edge: every edge of a slab is at least the
+ * latitude gap to the slab away, so a distance search visits slabs outwards from the point and
+ * stops as soon as that gap exceeds the nearest edge found.
+ */
+class EdgeIndex {
+
+    // rings with fewer vertices are faster to test with the plain pnpoly loop
+    static final int MIN_VERTICES = 16;
+    private static final int VERTICES_PER_SLAB = 2;
+
+    private final float minLat;
+    private final float scale;
+    private final int[] slabStart;
+    private final float[] lat1;
+    private final float[] lat2;
+    private final float[] lon1;
+    private final float[] lon2;
+    private final float[] slope;
+
+    EdgeIndex(float[] latitude, float[] longitude) {
+        int n = latitude.length;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (float lat : latitude) {
+            min = Math.min(min, lat);
+            max = Math.max(max, lat);
+        }
+        int slabs = Math.max(1, n / VERTICES_PER_SLAB);
+        minLat = min;
+        scale = max > min ? slabs / (max - min) : 0;
+        slabStart = new int[slabs + 1];
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            int last = slab(Math.max(latitude[i], latitude[j]));
+            for (int k = slab(Math.min(latitude[i], latitude[j])); k <= last; k++) {
+                slabStart[k + 1]++;
+            }
+        }
+        for (int k = 0; k < slabs; k++) {
+            slabStart[k + 1] += slabStart[k];
+        }
+        int entries = slabStart[slabs];
+        lat1 = new float[entries];
+        lat2 = new float[entries];
+        lon1 = new float[entries];
+        lon2 = new float[entries];
+        slope = new float[entries];
+        int[] next = slabStart.clone();
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            float edgeSlope = (longitude[j] - longitude[i]) / (latitude[j] - latitude[i]);
+            int last = slab(Math.max(latitude[i], latitude[j]));
+            for (int k = slab(Math.min(latitude[i], latitude[j])); k <= last; k++) {
+                int e = next[k]++;
+                lat1[e] = latitude[i];
+                lat2[e] = latitude[j];
+                lon1[e] = longitude[i];
+                lon2[e] = longitude[j];
+                slope[e] = edgeSlope;
+            }
+        }
+    }
+
+    private int slab(float lat) {
+        int slab = (int) ((lat - minLat) * scale);
+        return Math.max(0, Math.min(slab, slabStart.length - 2));
+    }
+
+    long footprint() {
+        return Footprint.object(8) + Footprint.array(slabStart.length, Integer.BYTES)
+                + 5 * Footprint.array(slope.length, Float.BYTES);
+    }
+
+    // number of edges contains tests for a point at this latitude
+    int edges(float lat) {
+        int slab = slab(lat);
+        return slabStart[slab + 1] - slabStart[slab];
+    }
+
+    boolean contains(float lat, float lon) {
+        int slab = slab(lat);
+        boolean contains = false;
+        for (int e = slabStart[slab], end = slabStart[slab + 1]; e < end; e++) {
+            if (((lat1[e] > lat) != (lat2[e] > lat)) && (lon < slope[e] * (lat - lat1[e]) + lon1[e])) {
+                contains = !contains;
+            }
+        }
+        return contains;
+    }
+
+    /**
+     * Returns the great-circle distance in radians from a coordinate to the nearest edge, or
+     * {@code bound} if no edge is nearer than that.
+     */
+    double distance(double lat, double lon, double bound) {
+        GreatCircle.Nearest nearest = new GreatCircle.Nearest(lat, lon, bound);
+        int slabs = slabStart.length - 1;
+        double height = scale == 0 ? 0 : 1 / scale;
+        int below = slab((float) lat);
+        int above = below + 1;
+        while (below >= 0 || above < slabs) {
+            double belowGap = below >= 0 ? lat - (minLat + (below + 1) * height) : Double.POSITIVE_INFINITY;
+            double aboveGap = above < slabs ? minLat + above * height - lat : Double.POSITIVE_INFINITY;
+            if (Math.toRadians(Math.min(belowGap, aboveGap)) >= nearest.bound()) {
+                break;
+            }
+            int slab = belowGap <= aboveGap ? below-- : above++;
+            for (int e = slabStart[slab], end = slabStart[slab + 1]; e < end; e++) {
+                nearest.add(lat1[e], lon1[e], lat2[e], lon2[e]);
+            }
+        }
+        return nearest.distance();
+    }
+}
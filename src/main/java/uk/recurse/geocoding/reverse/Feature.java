@@ -30,6 +30,6 @@ class Feature {
     }
 
     Stream<Geometry> geometries() {
-        return geometry.flatten(country);
+        return geometry.flatten(country == null ? -1 : country.ordinal());
     }
 }
@@ -1,27 +1,170 @@
 package uk.recurse.geocoding.reverse;
 
+import com.fasterxml.jackson.annotation.JacksonInject;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
-class FeatureCollection {
+class FeatureCollection implements CountryLookup {
 
     private final Geometry world;
+    private final FlatRTree index;
     private final Country[] countries;
+    private final Country[] ordinals;
 
     @JsonCreator
-    FeatureCollection(@JsonProperty("features") Feature[] features) {
-        world = SortTileRecursive.pack(Stream.of(features).flatMap(Feature::geometries));
-        countries = Stream.of(features)
-                .map(Feature::country)
-                .toArray(Country[]::new);
+    FeatureCollection(
+            @JacksonInject Map<String, Country> countries,
+            @JsonProperty("features") Feature[] features
+    ) {
+        this(
+                SortTileRecursive.pack(Stream.of(features).flatMap(Feature::geometries)),
+                Stream.of(features).map(Feature::country).toArray(Country[]::new),
+                Country.byOrdinal(countries.values())
+        );
+    }
+
+    FeatureCollection(Geometry world, Country[] countries, Country[] ordinals) {
+        this.world = world;
+        this.index = new FlatRTree(world);
+        this.countries = countries;
+        this.ordinals = ordinals;
     }
 
     Country getCountry(float lat, float lon) {
-        return world.getCountry(lat, lon);
+        int ordinal = index.getCountryOrdinal(lat, lon);
+        return ordinal < 0 ? null : ordinals[ordinal];
+    }
+
+    @Override
+    public int getCountryOrdinal(float lat, float lon) {
+        return index.getCountryOrdinal(lat, lon);
+    }
+
+    @Override
+    public void getCountryOrdinals(float[] lat, float[] lon, int length, int[] ordinals) {
+        index.getCountryOrdinals(lat, lon, length, ordinals);
+    }
+
+    Country country(int ordinal) {
+        return ordinals[ordinal];
+    }
+
+    int countryCount() {
+        return ordinals.length;
+    }
+
+    FeatureCollection mapRings(UnaryOperator<Ring> mapper) {
+        return new FeatureCollection(world.mapRings(mapper), countries, ordinals);
+    }
+
+    /**
+     * Prunes the polygons of all but the selected countries, and those that belong to no
+     * country, from the tree. The remaining polygons keep their order, so overlapping shapes are
+     * resolved as before, and nodes are rebuilt with bounding boxes of what is left in them.
+     * Ordinals are unchanged.
+     *
+     * <p>Polygons of other countries that come before a selected polygon in tree order and may
+     * overlap it are kept as {@link Polygon#OUTSIDE} polygons. Without them a selected polygon
+     * would claim what the full tree gives to an earlier country, such as an enclave drawn on
+     * top of the country around it.
+     *
+     * @param selected countries to keep
+     * @return feature collection of the selected countries
+     */
+    FeatureCollection retain(Predicate<Country> selected) {
+        List<Polygon> polygons = new ArrayList<>();
+        collect(world, polygons);
+        Set<Polygon> outside = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<BoundingBox> later = new ArrayList<>();
+        for (int i = polygons.size() - 1; i >= 0; i--) {
+            Polygon polygon = polygons.get(i);
+            if (polygon.country() < 0) {
+                continue;
+            }
+            if (selected.test(ordinals[polygon.country()])) {
+                later.add(polygon.boundingBox());
+            } else if (later.stream().anyMatch(box -> overlaps(polygon, box))) {
+                outside.add(polygon);
+            }
+        }
+        Geometry pruned = prune(world, selected, outside);
+        Country[] features = Stream.of(countries)
+                .filter(country -> country != null && selected.test(country))
+                .toArray(Country[]::new);
+        return new FeatureCollection(pruned == null ? new MultiPolygon(new Geometry[0]) : pruned, features, ordinals);
+    }
+
+    private static void collect(Geometry geometry, List<Polygon> polygons) {
+        if (geometry instanceof Polygon) {
+            polygons.add((Polygon) geometry);
+        } else {
+            for (Geometry child : ((MultiPolygon) geometry).geometries()) {
+                collect(child, polygons);
+            }
+        }
+    }
+
+    private static boolean overlaps(Polygon polygon, BoundingBox box) {
+        BoundingBox own = polygon.boundingBox();
+        return own.minLatitude() <= box.maxLatitude() && own.maxLatitude() >= box.minLatitude()
+                && own.minLongitude() <= box.maxLongitude() && own.maxLongitude() >= box.minLongitude()
+                && polygon.intersects(box.minLatitude(), box.minLongitude(), box.maxLatitude(), box.maxLongitude());
+    }
+
+    // returns null if nothing is left, and a node's only remaining child in place of the node
+    private Geometry prune(Geometry geometry, Predicate<Country> selected, Set<Polygon> outside) {
+        if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            if (outside.contains(polygon)) {
+                return new Polygon(polygon.ring(), polygon.holes(), Polygon.OUTSIDE);
+            }
+            int country = polygon.country();
+            return country >= 0 && selected.test(ordinals[country]) ? geometry : null;
+        }
+        List<Geometry> children = new ArrayList<>();
+        for (Geometry child : ((MultiPolygon) geometry).geometries()) {
+            Geometry kept = prune(child, selected, outside);
+            if (kept != null) {
+                children.add(kept);
+            }
+        }
+        if (children.size() <= 1) {
+            return children.isEmpty() ? null : children.get(0);
+        }
+        return new MultiPolygon(children.toArray(new Geometry[0]));
+    }
+
+    long vertexCount() {
+        return world.rings().mapToLong(Ring::size).sum();
+    }
+
+    /**
+     * Returns an estimate of the heap retained by the boundary data and the lookup index.
+     *
+     * @return size in bytes
+     */
+    long footprint() {
+        return world.footprint() + index.footprint();
+    }
+
+    Geometry world() {
+        return world;
+    }
+
+    FlatRTree index() {
+        return index;
     }
 
     Stream<Country> countries() {
@@ -0,0 +1,45 @@
+package uk.recurse.geocoding.reverse;
+
+/**
+ * Point-in-polygon test over the integer offsets of a {@link FixedPointVertices} ring, with the
+ * query point already converted into the ring's frame. The scalar kernel is the PNPOLY loop. A
+ * vectorised kernel is shipped in the Java 17 layer of the multi-release jar and is selected
+ * automatically when the {@code jdk.incubator.vector} module is available, unless the
+ * {@code uk.recurse.geocoding.reverse.vector} system property is set to {@code false}. Both
+ * kernels return exactly the same results.
+ */
+interface FixedPointKernel {
+
+    FixedPointKernel SCALAR = new FixedPointKernel() {
+
+        @Override
+        public boolean contains(char[] latitude, char[] longitude, double y, double x) {
+            return FixedPointVertices.pnpoly(latitude, longitude, y, x);
+        }
+
+        @Override
+        public boolean contains(int[] latitude, int[] longitude, double y, double x) {
+            return FixedPointVertices.pnpoly(latitude, longitude, y, x);
+        }
+    };
+
+    FixedPointKernel DEFAULT = load();
+
+    boolean contains(char[] latitude, char[] longitude, double y, double x);
+
+    boolean contains(int[] latitude, int[] longitude, double y, double x);
+
+    static FixedPointKernel load() {
+        if (!Boolean.parseBoolean(System.getProperty("uk.recurse.geocoding.reverse.vector", "true"))) {
+            return SCALAR;
+        }
+        try {
+            Class<?> vector = Class.forName("uk.recurse.geocoding.reverse.VectorFixedPointKernel");
+            return (FixedPointKernel) vector.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // running on Java 8-16, the incubator module has not been added, or the preferred
+            // vector shape is too narrow to split into the lanes the kernel needs
+            return SCALAR;
+        }
+    }
+}
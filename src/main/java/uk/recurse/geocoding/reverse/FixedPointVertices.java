@@ -0,0 +1,140 @@
+package uk.recurse.geocoding.reverse;
+
+/**
+ * Vertices stored as integer multiples of a fixed resolution, offset from the minimum corner of
+ * the ring's bounding box. Offsets are held in 16 bits when the ring spans no more than 65535
+ * steps in both directions, which covers nearly every ring at 0.001 degree resolution, and in 32
+ * bits otherwise. The point-in-polygon test runs on the integer offsets directly after converting
+ * the query point into the same frame. These rings have no edge index, so on Java 17+ the
+ * test uses the vectorised {@link FixedPointKernel} when it is available.
+ *
+ * <p>Rounding moves each vertex by at most half the resolution in latitude and in longitude, so
+ * only points within one resolution step of a border can be classified differently than with
+ * {@link FloatVertices}.
+ */
+class FixedPointVertices implements Vertices {
+
+    // 360 degrees of longitude is 360 million steps, well within an int
+    static final double MIN_RESOLUTION = 1e-6;
+
+    private static final int MAX_SHORT_OFFSET = Character.MAX_VALUE;
+
+    private final double minLat;
+    private final double minLon;
+    private final double resolution;
+    private final char[] latitude16;
+    private final char[] longitude16;
+    private final int[] latitude32;
+    private final int[] longitude32;
+
+    FixedPointVertices(float[] latitude, float[] longitude, BoundingBox boundingBox, double resolution) {
+        this.resolution = resolution;
+        minLat = boundingBox.minLatitude();
+        minLon = boundingBox.minLongitude();
+        int n = latitude.length;
+        int[] lat = new int[n];
+        int[] lon = new int[n];
+        int max = 0;
+        for (int i = 0; i < n; i++) {
+            lat[i] = (int) Math.round((latitude[i] - minLat) / resolution);
+            lon[i] = (int) Math.round((longitude[i] - minLon) / resolution);
+            max = Math.max(max, Math.max(lat[i], lon[i]));
+        }
+        if (max <= MAX_SHORT_OFFSET) {
+            latitude16 = new char[n];
+            longitude16 = new char[n];
+            for (int i = 0; i < n; i++) {
+                latitude16[i] = (char) lat[i];
+                longitude16[i] = (char) lon[i];
+            }
+            latitude32 = null;
+            longitude32 = null;
+        } else {
+            latitude16 = null;
+            longitude16 = null;
+            latitude32 = lat;
+            longitude32 = lon;
+        }
+    }
+
+    @Override
+    public boolean contains(float lat, float lon) {
+        double y = (lat - minLat) / resolution;
+        double x = (lon - minLon) / resolution;
+        return latitude16 != null
+                ? FixedPointKernel.DEFAULT.contains(latitude16, longitude16, y, x)
+                : FixedPointKernel.DEFAULT.contains(latitude32, longitude32, y, x);
+    }
+
+    static boolean pnpoly(char[] latitude, char[] longitude, double y, double x) {
+        boolean contains = false;
+        for (int i = 0, j = latitude.length - 1; i < latitude.length; j = i++) {
+            int yi = latitude[i];
+            int yj = latitude[j];
+            if (((yi > y) != (yj > y))
+                    && (x < (double) (longitude[j] - longitude[i]) * (y - yi) / (yj - yi) + longitude[i])) {
+                contains = !contains;
+            }
+        }
+        return contains;
+    }
+
+    static boolean pnpoly(int[] latitude, int[] longitude, double y, double x) {
+        boolean contains = false;
+        for (int i = 0, j = latitude.length - 1; i < latitude.length; j = i++) {
+            int yi = latitude[i];
+            int yj = latitude[j];
+            if (((yi > y) != (yj > y))
+                    && (x < (double) (longitude[j] - longitude[i]) * (y - yi) / (yj - yi) + longitude[i])) {
+                contains = !contains;
+            }
+        }
+        return contains;
+    }
+
+    @Override
+    public int edges(float lat) {
+        return size();
+    }
+
+    @Override
+    public int size() {
+        return latitude16 != null ? latitude16.length : latitude32.length;
+    }
+
+    @Override
+    public float latitude(int i) {
+        return (float) (minLat + (latitude16 != null ? latitude16[i] : latitude32[i]) * resolution);
+    }
+
+    @Override
+    public float longitude(int i) {
+        return (float) (minLon + (longitude16 != null ? longitude16[i] : longitude32[i]) * resolution);
+    }
+
+    @Override
+    public float[] latitudes() {
+        float[] values = new float[size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = latitude(i);
+        }
+        return values;
+    }
+
+    @Override
+    public float[] longitudes() {
+        float[] values = new float[size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = longitude(i);
+        }
+        return values;
+    }
+
+    @Override
+    public long footprint() {
+        long arrays = latitude16 != null
+                ? 2 * Footprint.array(latitude16.length, Character.BYTES)
+                : 2 * Footprint.array(latitude32.length, Integer.BYTES);
+        return Footprint.object(11) + arrays;
+    }
+}
@@ -0,0 +1,429 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Struct-of-arrays copy of a packed R-tree. Nodes are laid out in depth first order, so the first
+ * child of an inner node is the next node and {@code skip[i]} is the offset of the first node
+ * after the subtree rooted at {@code i}. Traversal is a forward scan over the bounding box arrays
+ * that jumps over subtrees whose box does not contain the query point, which visits nodes in
+ * exactly the same order as the recursive {@link Geometry#getCountryOrdinal} dispatch.
+ *
+ * <p>Groups of points descend the tree together. Each node narrows the group to the points inside
+ * its box, and children whose box does not overlap the bounding box of the narrowed group are
+ * skipped with a single test, so the upper levels are checked once per group rather than once per
+ * point. Children are still visited in depth first order and resolved points are dropped, so every
+ * point gets the same answer as a single lookup.
+ */
+class FlatRTree implements CountryLookup {
+
+    private static final int UNRESOLVED = Integer.MIN_VALUE;
+
+    private final float[] minLat;
+    private final float[] minLon;
+    private final float[] maxLat;
+    private final float[] maxLon;
+    private final int[] skip;
+    private final Polygon[] polygons;
+    private final int height;
+
+    FlatRTree(Geometry root) {
+        List<Geometry> nodes = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        height = flatten(root, nodes, ends);
+        int n = nodes.size();
+        minLat = new float[n];
+        minLon = new float[n];
+        maxLat = new float[n];
+        maxLon = new float[n];
+        skip = new int[n];
+        polygons = new Polygon[n];
+        for (int i = 0; i < n; i++) {
+            Geometry node = nodes.get(i);
+            BoundingBox box = node.boundingBox();
+            minLat[i] = box.minLatitude();
+            minLon[i] = box.minLongitude();
+            maxLat[i] = box.maxLatitude();
+            maxLon[i] = box.maxLongitude();
+            skip[i] = ends.get(i);
+            if (node instanceof Polygon) {
+                polygons[i] = (Polygon) node;
+            }
+        }
+    }
+
+    // returns the number of levels in the subtree
+    private static int flatten(Geometry node, List<Geometry> nodes, List<Integer> ends) {
+        int index = nodes.size();
+        nodes.add(node);
+        ends.add(0);
+        int height = 0;
+        if (node instanceof MultiPolygon) {
+            for (Geometry child : ((MultiPolygon) node).geometries()) {
+                height = Math.max(height, flatten(child, nodes, ends));
+            }
+        }
+        ends.set(index, nodes.size());
+        return height + 1;
+    }
+
+    @Override
+    public int getCountryOrdinal(float lat, float lon) {
+        int node = getPolygon(lat, lon);
+        return node < 0 ? -1 : ordinal(polygons[node]);
+    }
+
+    /**
+     * Returns the first polygon in tree order that contains a coordinate, which is the polygon
+     * that decides {@link #getCountryOrdinal(float, float)}. In a restricted tree this may be a
+     * {@link Polygon#OUTSIDE} polygon.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return node index of the polygon, or -1 if no polygon decides the coordinate
+     */
+    int getPolygon(float lat, float lon) {
+        int i = 0;
+        while (i < skip.length) {
+            if (lat <= maxLat[i] && lon <= maxLon[i] && lat >= minLat[i] && lon >= minLon[i]) {
+                Polygon polygon = polygons[i];
+                if (polygon != null && polygon.decides() && polygon.contains(lat, lon)) {
+                    return i;
+                }
+                i++;
+            } else {
+                i = skip[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Receives the work done by a traced lookup.
+     */
+    interface Trace {
+
+        /**
+         * @param nodes nodes whose bounding box was tested
+         * @param rings outer rings and holes whose vertices were tested
+         * @param edges edges evaluated by those tests
+         */
+        void record(int nodes, int rings, int edges);
+    }
+
+    /**
+     * Same lookup as {@link #getCountryOrdinal(float, float)}, also counting the work it does. The
+     * untraced lookup is kept free of the counters so that it costs nothing when instrumentation
+     * is not enabled.
+     *
+     * @param lat   degrees latitude
+     * @param lon   degrees longitude
+     * @param trace receives the counts
+     * @return country ordinal, or -1 if the coordinate is not in a country
+     */
+    int getCountryOrdinal(float lat, float lon, Trace trace) {
+        int nodes = 0;
+        int rings = 0;
+        int edges = 0;
+        int ordinal = -1;
+        int i = 0;
+        while (i < skip.length) {
+            nodes++;
+            if (lat <= maxLat[i] && lon <= maxLon[i] && lat >= minLat[i] && lon >= minLon[i]) {
+                Polygon polygon = polygons[i];
+                if (polygon != null && polygon.decides()) {
+                    Ring ring = polygon.ring();
+                    rings++;
+                    edges += ring.edges(lat);
+                    if (ring.contains(lat, lon)) {
+                        long holes = traceHoles(polygon.holes(), lat, lon);
+                        rings += (int) (holes >>> 32 & Integer.MAX_VALUE);
+                        edges += (int) holes;
+                        if (holes >= 0) {
+                            ordinal = ordinal(polygon);
+                            break;
+                        }
+                    }
+                }
+                i++;
+            } else {
+                i = skip[i];
+            }
+        }
+        trace.record(nodes, rings, edges);
+        return ordinal;
+    }
+
+    // same search as Geometry.contains over a polygon's holes, returning the rings tested in the
+    // upper half and the edges evaluated in the lower half, negative if a hole contains the point
+    private static long traceHoles(Geometry node, float lat, float lon) {
+        if (!node.boundingBox().contains(lat, lon)) {
+            return 0;
+        }
+        if (node instanceof Ring) {
+            Ring ring = (Ring) node;
+            long work = 1L << 32 | ring.edges(lat);
+            return ring.contains(lat, lon) ? work | Long.MIN_VALUE : work;
+        }
+        long work = 0;
+        for (Geometry child : ((MultiPolygon) node).geometries()) {
+            long holes = traceHoles(child, lat, lon);
+            work += holes & Long.MAX_VALUE;
+            if (holes < 0) {
+                return work | Long.MIN_VALUE;
+            }
+        }
+        return work;
+    }
+
+    /**
+     * Finds the polygon with the nearest edge to a coordinate by best first search. Nodes are
+     * expanded in order of the distance to their bounding box, which is a lower bound for the
+     * distance to any edge inside them, and the search stops once the nearest remaining bound is
+     * further than the nearest edge found so far.
+     *
+     * @param lat         degrees latitude
+     * @param lon         degrees longitude
+     * @param maxDistance maximum distance in radians
+     * @return node index of the nearest polygon, or -1 if no polygon is within the maximum distance
+     */
+    int getNearestPolygon(float lat, float lon, double maxDistance) {
+        if (skip.length == 0) {
+            return -1;
+        }
+        double best = Math.nextUp(maxDistance);
+        GreatCircle.Window window = new GreatCircle.Window(lat, lon, best);
+        int nearest = -1;
+        NodeQueue queue = new NodeQueue();
+        queue.add(0, GreatCircle.boxDistance(lat, lon, minLat[0], minLon[0], maxLat[0], maxLon[0]));
+        while (!queue.isEmpty() && queue.minDistance() < best) {
+            int node = queue.poll();
+            Polygon polygon = polygons[node];
+            if (polygon == null) {
+                for (int child = node + 1; child < skip[node]; child = skip[child]) {
+                    if (window.excludesBox(minLat[child], minLon[child], maxLat[child], maxLon[child])) {
+                        continue;
+                    }
+                    double bound = GreatCircle.boxDistance(lat, lon, minLat[child], minLon[child], maxLat[child], maxLon[child]);
+                    if (bound < best) {
+                        queue.add(child, bound);
+                    }
+                }
+            } else if (polygon.country() >= 0) {
+                double distance = polygon.distance(lat, lon, best);
+                if (distance < best) {
+                    best = distance;
+                    nearest = node;
+                    window = new GreatCircle.Window(lat, lon, best);
+                }
+            }
+        }
+        return nearest;
+    }
+
+    // binary min-heap of nodes keyed on their distance bound
+    private static class NodeQueue {
+
+        private int[] nodes = new int[16];
+        private double[] distances = new double[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double minDistance() {
+            return distances[0];
+        }
+
+        void add(int node, double distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int i = size++;
+            while (i > 0 && distances[(i - 1) / 2] > distance) {
+                nodes[i] = nodes[(i - 1) / 2];
+                distances[i] = distances[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+        }
+
+        int poll() {
+            int min = nodes[0];
+            int node = nodes[--size];
+            double distance = distances[size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && distances[child + 1] < distances[child]) {
+                    child++;
+                }
+                if (distances[child] >= distance) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+            return min;
+        }
+    }
+
+    /**
+     * Visits the polygons whose bounding box intersects a rectangle, in tree order, including
+     * {@link Polygon#OUTSIDE} polygons.
+     *
+     * @param minLat minimum degrees latitude
+     * @param minLon minimum degrees longitude
+     * @param maxLat maximum degrees latitude
+     * @param maxLon maximum degrees longitude
+     * @param action receives the node index of each polygon
+     */
+    void forEachPolygon(float minLat, float minLon, float maxLat, float maxLon, IntConsumer action) {
+        int i = 0;
+        while (i < skip.length) {
+            if (minLat <= this.maxLat[i] && minLon <= this.maxLon[i]
+                    && maxLat >= this.minLat[i] && maxLon >= this.minLon[i]) {
+                Polygon polygon = polygons[i];
+                if (polygon != null && polygon.decides()) {
+                    action.accept(i);
+                }
+                i++;
+            } else {
+                i = skip[i];
+            }
+        }
+    }
+
+    /**
+     * Visits the polygons whose bounding box is within a great-circle distance of a coordinate, in
+     * tree order.
+     *
+     * @param lat    degrees latitude
+     * @param lon    degrees longitude
+     * @param radius distance in radians
+     * @param action receives the node index of each polygon
+     */
+    void forEachPolygon(double lat, double lon, double radius, IntConsumer action) {
+        GreatCircle.Window window = new GreatCircle.Window(lat, lon, radius);
+        int i = 0;
+        while (i < skip.length) {
+            if (!window.excludesBox(minLat[i], minLon[i], maxLat[i], maxLon[i])
+                    && GreatCircle.boxDistance(lat, lon, minLat[i], minLon[i], maxLat[i], maxLon[i]) <= radius) {
+                Polygon polygon = polygons[i];
+                if (polygon != null && polygon.country() >= 0) {
+                    action.accept(i);
+                }
+                i++;
+            } else {
+                i = skip[i];
+            }
+        }
+    }
+
+    /**
+     * Tests whether a polygon contains a coordinate, checking its bounding box first.
+     *
+     * @param node node index of a polygon
+     * @param lat  degrees latitude
+     * @param lon  degrees longitude
+     * @return true if the polygon contains the coordinate
+     */
+    boolean contains(int node, float lat, float lon) {
+        return lat <= maxLat[node] && lon <= maxLon[node] && lat >= minLat[node] && lon >= minLon[node]
+                && polygons[node].contains(lat, lon);
+    }
+
+    Polygon polygon(int node) {
+        return polygons[node];
+    }
+
+    /**
+     * Returns the country ordinal that a polygon decides for the coordinates inside it.
+     *
+     * @param polygon polygon that {@link Polygon#decides() decides} lookups
+     * @return country ordinal, or -1 for an {@link Polygon#OUTSIDE} polygon
+     */
+    static int ordinal(Polygon polygon) {
+        return Math.max(polygon.country(), -1);
+    }
+
+    @Override
+    public void getCountryOrdinals(float[] lat, float[] lon, int length, int[] ordinals) {
+        Arrays.fill(ordinals, 0, length, UNRESOLVED);
+        int[][] groups = new int[height + 1][length];
+        for (int i = 0; i < length; i++) {
+            groups[0][i] = i;
+        }
+        if (skip.length > 0) {
+            descend(0, lat, lon, groups, 0, length, ordinals);
+        }
+        for (int i = 0; i < length; i++) {
+            if (ordinals[i] == UNRESOLVED) {
+                ordinals[i] = -1;
+            }
+        }
+    }
+
+    // resolves the unresolved points of groups[level][0, size) that are inside the node's subtree
+    private void descend(int node, float[] lat, float[] lon, int[][] groups, int level, int size, int[] ordinals) {
+        int[] group = groups[level];
+        int[] inside = groups[level + 1];
+        float groupMinLat = Float.POSITIVE_INFINITY;
+        float groupMinLon = Float.POSITIVE_INFINITY;
+        float groupMaxLat = Float.NEGATIVE_INFINITY;
+        float groupMaxLon = Float.NEGATIVE_INFINITY;
+        int n = 0;
+        for (int k = 0; k < size; k++) {
+            int p = group[k];
+            float y = lat[p];
+            float x = lon[p];
+            if (ordinals[p] == UNRESOLVED
+                    && y <= maxLat[node] && x <= maxLon[node] && y >= minLat[node] && x >= minLon[node]) {
+                inside[n++] = p;
+                groupMinLat = Math.min(groupMinLat, y);
+                groupMinLon = Math.min(groupMinLon, x);
+                groupMaxLat = Math.max(groupMaxLat, y);
+                groupMaxLon = Math.max(groupMaxLon, x);
+            }
+        }
+        if (n == 0) {
+            return;
+        }
+        Polygon polygon = polygons[node];
+        if (polygon != null) {
+            if (polygon.decides()) {
+                for (int k = 0; k < n; k++) {
+                    int p = inside[k];
+                    if (polygon.contains(lat[p], lon[p])) {
+                        ordinals[p] = ordinal(polygon);
+                    }
+                }
+            }
+            return;
+        }
+        for (int child = node + 1; child < skip[node]; child = skip[child]) {
+            if (groupMinLat <= maxLat[child] && groupMinLon <= maxLon[child]
+                    && groupMaxLat >= minLat[child] && groupMaxLon >= minLon[child]) {
+                descend(child, lat, lon, groups, level + 1, n, ordinals);
+            }
+        }
+    }
+
+    long footprint() {
+        return Footprint.object(6) + 5 * Footprint.array(skip.length, Float.BYTES)
+                + Footprint.array(polygons.length, (int) Footprint.REFERENCE);
+    }
+
+    int size() {
+        return skip.length;
+    }
+}
@@ -0,0 +1,69 @@
+package uk.recurse.geocoding.reverse;
+
+class FloatVertices implements Vertices {
+
+    private final float[] latitude;
+    private final float[] longitude;
+    private final EdgeIndex edgeIndex;
+
+    FloatVertices(float[] latitude, float[] longitude) {
+        this(latitude, longitude, true);
+    }
+
+    // rings that will be converted before use skip building an edge index
+    FloatVertices(float[] latitude, float[] longitude, boolean indexEdges) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        edgeIndex = !indexEdges || latitude.length < EdgeIndex.MIN_VERTICES
+                ? null
+                : new EdgeIndex(latitude, longitude);
+    }
+
+    @Override
+    public boolean contains(float lat, float lon) {
+        return edgeIndex == null ? pnpoly(latitude, longitude, lat, lon) : edgeIndex.contains(lat, lon);
+    }
+
+    @Override
+    public double distance(double lat, double lon, double bound) {
+        return edgeIndex == null
+                ? GreatCircle.ringDistance(latitude, longitude, lat, lon, bound)
+                : edgeIndex.distance(lat, lon, bound);
+    }
+
+    @Override
+    public int edges(float lat) {
+        return edgeIndex == null ? latitude.length : edgeIndex.edges(lat);
+    }
+
+    @Override
+    public float[] latitudes() {
+        return latitude;
+    }
+
+    @Override
+    public float[] longitudes() {
+        return longitude;
+    }
+
+    @Override
+    public long footprint() {
+        long arrays = 2 * Footprint.array(latitude.length, Float.BYTES);
+        return Footprint.object(3) + arrays + (edgeIndex == null ? 0 : edgeIndex.footprint());
+    }
+
+    // algorithm notes: https://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
+    static boolean pnpoly(float[] latitude, float[] longitude, float lat, float lon) {
+        boolean contains = false;
+        for (int i = 0, j = latitude.length - 1; i < latitude.length; j = i++) {
+            if (((latitude[i] > lat) != (latitude[j] > lat))
+                    && (lon < (longitude[j] - longitude[i])
+                    * (lat - latitude[i])
+                    / (latitude[j] - latitude[i])
+                    + longitude[i])) {
+                contains = !contains;
+            }
+        }
+        return contains;
+    }
+}
@@ -0,0 +1,26 @@
+package uk.recurse.geocoding.reverse;
+
+/**
+ * Shallow heap size estimates for a 64-bit JVM with compressed oops, used to report how much
+ * memory the boundary data and indexes retain.
+ */
+class Footprint {
+
+    static final long OBJECT = 16;
+    static final long REFERENCE = 4;
+
+    private Footprint() {
+    }
+
+    static long array(int length, int elementSize) {
+        return align(16 + (long) length * elementSize);
+    }
+
+    static long object(int fields) {
+        return align(12 + fields * 4L);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7;
+    }
+}
@@ -0,0 +1,290 @@
+package uk.recurse.geocoding.reverse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the GeoJSON shapes with Jackson's streaming parser. Coordinates go straight from the
+ * tokens into growable float buffers and each ring's bounding box is taken in the same pass, so
+ * loading creates no {@link Point} per vertex and no tree of JSON nodes. The result is identical
+ * to binding the shapes to the annotated {@link FeatureCollection}: the same feature order, the
+ * same float rounding of every coordinate and the same packing. The GeoNames table of one
+ * geometry per line is read the same way, once its header line has been skipped.
+ */
+class GeoJsonReader {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final JsonParser parser;
+    private final Map<String, Country> countries;
+    private final boolean indexEdges;
+    // reused for every ring, then copied to arrays of the exact size
+    private float[] latitude = new float[1024];
+    private float[] longitude = new float[1024];
+
+    private GeoJsonReader(JsonParser parser, Map<String, Country> countries, boolean indexEdges) {
+        this.parser = parser;
+        this.countries = countries;
+        this.indexEdges = indexEdges;
+    }
+
+    static FeatureCollection read(InputStream in, Map<String, Country> countries) throws IOException {
+        return read(in, countries, true);
+    }
+
+    /**
+     * Reads a feature collection.
+     *
+     * @param in         GeoJSON or GeoNames table
+     * @param countries  countries by ISO code
+     * @param indexEdges false to skip the edge index of large rings, when they will be converted
+     * @return feature collection
+     * @throws IOException if the shapes cannot be read or are malformed
+     */
+    static FeatureCollection read(InputStream in, Map<String, Country> countries, boolean indexEdges)
+            throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            return new GeoJsonReader(parser, countries, indexEdges).featureCollection();
+        }
+    }
+
+    private FeatureCollection featureCollection() throws IOException {
+        List<Country> features = new ArrayList<>();
+        List<Geometry> polygons = new ArrayList<>();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            rows(features, polygons);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("features")) {
+                expect(value, JsonToken.START_ARRAY);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    feature(features, polygons);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new FeatureCollection(
+                SortTileRecursive.pack(polygons.stream()),
+                features.toArray(new Country[0]),
+                Country.byOrdinal(countries.values())
+        );
+    }
+
+    private void feature(List<Country> features, List<Geometry> polygons) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+        String id = null;
+        Geometry geometry = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("properties") && value == JsonToken.START_OBJECT) {
+                id = geoNameId();
+            } else if (field.equals("geometry")) {
+                expect(value, JsonToken.START_OBJECT);
+                geometry = geometry();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (geometry == null) {
+            throw new IOException("Feature without geometry at " + parser.getCurrentLocation());
+        }
+        add(id, geometry, features, polygons);
+    }
+
+    // reads the GeoNames table of "<geoNameId>\t<geometry>" lines, without its header line, as a
+    // sequence of root level values
+    private void rows(List<Country> features, List<Geometry> polygons) throws IOException {
+        for (JsonToken token = parser.currentToken(); token != null; token = parser.nextToken()) {
+            expect(token, JsonToken.VALUE_NUMBER_INT);
+            String id = parser.getValueAsString();
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            add(id, geometry(), features, polygons);
+        }
+    }
+
+    private void add(String id, Geometry geometry, List<Country> features, List<Geometry> polygons) {
+        Country country = countries.get(id);
+        features.add(country);
+        geometry.flatten(country == null ? -1 : country.ordinal()).forEach(polygons::add);
+    }
+
+    private String geoNameId() throws IOException {
+        String id = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("geoNameId")) {
+                id = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return id;
+    }
+
+    private Geometry geometry() throws IOException {
+        String type = null;
+        List<Ring[]> polygons = null;
+        boolean multi = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("type")) {
+                type = parser.getText();
+            } else if (field.equals("coordinates")) {
+                expect(value, JsonToken.START_ARRAY);
+                polygons = new ArrayList<>();
+                multi = coordinates(polygons);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (polygons == null || !(multi ? "MultiPolygon" : "Polygon").equals(type)) {
+            throw new IOException("Expected Polygon or MultiPolygon coordinates at " + parser.getCurrentLocation());
+        }
+        if (multi) {
+            return new MultiPolygon(polygons.toArray(new Ring[0][]));
+        }
+        return new Polygon(polygons.get(0));
+    }
+
+    // reads Polygon or MultiPolygon coordinates, depending on how deeply the first point is nested
+    private boolean coordinates(List<Ring[]> polygons) throws IOException {
+        List<Ring> rings = new ArrayList<>();
+        expect(parser.nextToken(), JsonToken.START_ARRAY);
+        JsonToken token = parser.nextToken();
+        expect(token, JsonToken.START_ARRAY);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            // [[[x, y], ...], ...]: the first ring and its first point have been opened
+            rings.add(ring(true));
+            rings(rings);
+            polygons.add(rings.toArray(new Ring[0]));
+            return false;
+        }
+        // [[[[x, y], ...], ...], ...]: the first polygon, its first ring and first point are open
+        parser.nextToken();
+        rings.add(ring(true));
+        rings(rings);
+        polygons.add(rings.toArray(new Ring[0]));
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser.currentToken(), JsonToken.START_ARRAY);
+            rings.clear();
+            rings(rings);
+            polygons.add(rings.toArray(new Ring[0]));
+        }
+        return true;
+    }
+
+    // reads rings up to the end of the enclosing polygon array
+    private void rings(List<Ring> rings) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser.currentToken(), JsonToken.START_ARRAY);
+            rings.add(ring(false));
+        }
+    }
+
+    // reads [x, y] points up to the end of the ring array
+    private Ring ring(boolean firstPointOpen) throws IOException {
+        float minLat = Float.POSITIVE_INFINITY;
+        float minLon = Float.POSITIVE_INFINITY;
+        float maxLat = Float.NEGATIVE_INFINITY;
+        float maxLon = Float.NEGATIVE_INFINITY;
+        int n = 0;
+        for (boolean open = firstPointOpen; open || parser.nextToken() != JsonToken.END_ARRAY; open = false) {
+            if (!open) {
+                expect(parser.currentToken(), JsonToken.START_ARRAY);
+                parser.nextToken();
+            }
+            float lon = number();
+            parser.nextToken();
+            float lat = number();
+            expect(parser.nextToken(), JsonToken.END_ARRAY);
+            if (n == latitude.length) {
+                latitude = Arrays.copyOf(latitude, 2 * n);
+                longitude = Arrays.copyOf(longitude, 2 * n);
+            }
+            latitude[n] = lat;
+            longitude[n] = lon;
+            n++;
+            minLat = Math.min(minLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLat = Math.max(maxLat, lat);
+            maxLon = Math.max(maxLon, lon);
+        }
+        BoundingBox box = new BoundingBox(minLat, minLon, maxLat, maxLon);
+        return new Ring(Arrays.copyOf(latitude, n), Arrays.copyOf(longitude, n), box, indexEdges);
+    }
+
+    // rounds like binding a float property, which also accepts integers
+    private float number() throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+            throw new IOException("Expected a coordinate at " + parser.getCurrentLocation());
+        }
+        double value = parseDecimal(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        return Double.isNaN(value) ? parser.getFloatValue() : (float) value;
+    }
+
+    /**
+     * Parses a plain decimal without the string that {@link JsonParser#getFloatValue()} creates.
+     * With at most 15 significant digits the digits and the power of ten are both exact doubles,
+     * so their quotient is correctly rounded and matches {@link Double#parseDouble(String)}.
+     *
+     * @return the value, or NaN for numbers with an exponent or more digits
+     */
+    static double parseDecimal(char[] text, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        boolean negative = i < end && text[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long digits = 0;
+        int count = 0;
+        int decimals = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            char c = text[i];
+            if (c >= '0' && c <= '9') {
+                digits = digits * 10 + (c - '0');
+                if (digits > 0) {
+                    count++;
+                }
+                if (point) {
+                    decimals++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (count > 15 || decimals >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        double value = digits / POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+
+    private void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Expected " + expected + " but found " + actual + " at " + parser.getCurrentLocation());
+        }
+    }
+}
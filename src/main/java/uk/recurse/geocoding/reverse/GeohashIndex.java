@@ -0,0 +1,226 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Prefix table of geohash cells that is precomputed from the ring edges like {@link GridIndex},
+ * but split 32 ways per level as geohashes are, so that a geohash is resolved by walking its
+ * characters. A cell that no edge passes through is inside the same countries or outside all of
+ * them at every point, so its prefix maps straight to the answer at its centre. Only geohashes in
+ * cells that a border still crosses at the maximum precision fall back to a polygon test at the
+ * centre of their own cell.
+ *
+ * <p>Geohashes are packed into a long as the five bits of each character, first character most
+ * significant, shifted left by four bits with the number of characters in the low four bits. Nodes
+ * are stored as 32 consecutive slots of an int array, one per character, which are encoded as in
+ * {@link GridIndex}.
+ */
+class GeohashIndex {
+
+    static final int MAX_PRECISION = 6;
+    static final int MAX_LENGTH = 12;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    // value of each ASCII character, or -1 if it is not in the alphabet
+    private static final byte[] DIGITS = new byte[128];
+    private static final int MIXED = Integer.MIN_VALUE;
+    // cells are widened by this many degrees so float rounding in pnpoly cannot flip a point
+    private static final double TOLERANCE = 1e-4;
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < BASE32.length(); i++) {
+            DIGITS[BASE32.charAt(i)] = (byte) i;
+            DIGITS[Character.toUpperCase(BASE32.charAt(i))] = (byte) i;
+        }
+    }
+
+    private final CountryLookup fallback;
+    private final int precision;
+    private final int[] nodes;
+
+    GeohashIndex(Geometry world, CountryLookup fallback, int precision) {
+        this.fallback = fallback;
+        this.precision = precision;
+        Builder builder = new Builder(world);
+        builder.node(0, 0, 0, builder.edges.all());
+        nodes = Arrays.copyOf(builder.nodes, builder.size);
+    }
+
+    int getCountryOrdinal(long geohash) {
+        int length = length(geohash);
+        int node = 0;
+        for (int i = 0; i < length; i++) {
+            int slot = nodes[node + ((int) (geohash >>> (4 + 5 * (length - 1 - i))) & 31)];
+            if (slot > 0) {
+                node = slot;
+            } else if (slot == MIXED) {
+                break;
+            } else {
+                return -2 - slot;
+            }
+        }
+        return centreOrdinal(geohash, fallback);
+    }
+
+    /**
+     * Writes a row for each cell of the table that is in a country, in geohash order: the cells
+     * no border crosses, which are exact, and the cells at the maximum precision that a border
+     * crosses, which are labelled with the country at their centre. Every geohash at least as
+     * long as the maximum precision starts with at most one of the prefixes.
+     *
+     * @param out      destination of the CSV rows, after a {@code geohash,iso,exact} header
+     * @param isoCodes country code by ordinal
+     * @throws IOException if the rows cannot be written
+     */
+    void write(Appendable out, String[] isoCodes) throws IOException {
+        out.append("geohash,iso,exact\n");
+        write(out, isoCodes, 0, new StringBuilder(precision));
+    }
+
+    private void write(Appendable out, String[] isoCodes, int node, StringBuilder prefix) throws IOException {
+        int level = prefix.length();
+        for (int digit = 0; digit < 32; digit++) {
+            prefix.setLength(level);
+            prefix.append(BASE32.charAt(digit));
+            int slot = nodes[node + digit];
+            if (slot > 0) {
+                write(out, isoCodes, slot, prefix);
+            } else {
+                int ordinal = slot == MIXED ? centreOrdinal(parse(prefix), fallback) : -2 - slot;
+                if (ordinal >= 0) {
+                    out.append(prefix).append(',').append(isoCodes[ordinal])
+                            .append(slot == MIXED ? ",false\n" : ",true\n");
+                }
+            }
+        }
+        prefix.setLength(level);
+    }
+
+    /**
+     * Returns the heap used by the table nodes.
+     *
+     * @return size in bytes
+     */
+    long footprint() {
+        return (long) nodes.length * Integer.BYTES;
+    }
+
+    int precision() {
+        return precision;
+    }
+
+    /**
+     * Packs a geohash string, in either case, into a long.
+     *
+     * @param geohash 1 to 12 characters of the geohash alphabet
+     * @return packed geohash
+     * @throws IllegalArgumentException if the geohash is empty, too long or has a character outside
+     *                                  the alphabet
+     */
+    static long parse(CharSequence geohash) {
+        int length = geohash.length();
+        if (length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Geohash must have 1 to " + MAX_LENGTH + " characters: " + geohash);
+        }
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            char c = geohash.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid geohash character '" + c + "': " + geohash);
+            }
+            bits = bits << 5 | digit;
+        }
+        return bits << 4 | length;
+    }
+
+    /**
+     * Returns the country ordinal at the centre of a geohash cell.
+     *
+     * @param geohash packed geohash
+     * @param lookup  lookup to test the centre with
+     * @return country ordinal, or -1 if the centre is not in a country
+     * @throws IllegalArgumentException if the packed geohash is invalid
+     */
+    static int centreOrdinal(long geohash, CountryLookup lookup) {
+        int bits = 5 * length(geohash);
+        long hash = geohash >>> 4;
+        long x = 0;
+        long y = 0;
+        for (int i = 0; i < bits; i++) {
+            long bit = hash >>> (bits - 1 - i) & 1;
+            // bits alternate between longitude and latitude, starting with longitude
+            if ((i & 1) == 0) {
+                x = x << 1 | bit;
+            } else {
+                y = y << 1 | bit;
+            }
+        }
+        double lon = (x + 0.5) * 360.0 / (1L << (bits + 1) / 2) - 180;
+        double lat = (y + 0.5) * 180.0 / (1L << bits / 2) - 90;
+        return lookup.getCountryOrdinal((float) lat, (float) lon);
+    }
+
+    private static int length(long geohash) {
+        int length = (int) (geohash & 15);
+        if (length < 1 || length > MAX_LENGTH || (length < MAX_LENGTH && geohash >>> (4 + 5 * length) != 0)) {
+            throw new IllegalArgumentException("Invalid packed geohash: 0x" + Long.toHexString(geohash));
+        }
+        return length;
+    }
+
+    private static int terminal(int ordinal) {
+        return -2 - ordinal;
+    }
+
+    private class Builder {
+
+        private final RingEdges edges;
+        private int[] nodes = new int[1024];
+        private int size;
+
+        Builder(Geometry world) {
+            edges = new RingEdges(world);
+        }
+
+        // builds the node for the cell (y, x) with the given number of characters and returns its index
+        int node(int level, int y, int x, int[] candidates) {
+            int index = size;
+            if (size + 32 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            }
+            size += 32;
+            for (int digit = 0; digit < 32; digit++) {
+                int childY = y;
+                int childX = x;
+                for (int i = 0; i < 5; i++) {
+                    int bit = digit >>> (4 - i) & 1;
+                    if ((5 * level + i & 1) == 0) {
+                        childX = childX << 1 | bit;
+                    } else {
+                        childY = childY << 1 | bit;
+                    }
+                }
+                int slot = cell(level + 1, childY, childX, candidates);
+                nodes[index + digit] = slot;
+            }
+            return index;
+        }
+
+        private int cell(int level, int y, int x, int[] candidates) {
+            double cellHeight = 180.0 / (1 << 5 * level / 2);
+            double cellWidth = 360.0 / (1 << (5 * level + 1) / 2);
+            double minLat = y * cellHeight - 90;
+            double minLon = x * cellWidth - 180;
+            int[] crossing = edges.crossing(candidates, minLat - TOLERANCE, minLon - TOLERANCE,
+                    minLat + cellHeight + TOLERANCE, minLon + cellWidth + TOLERANCE);
+            if (crossing.length == 0) {
+                return terminal(fallback.getCountryOrdinal(
+                        (float) (minLat + cellHeight / 2), (float) (minLon + cellWidth / 2)));
+            }
+            return level == precision ? MIXED : node(level, y, x, crossing);
+        }
+    }
+}
@@ -5,17 +5,22 @@ import com.fasterxml.jackson.annotation.JsonSubTypes.Type;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
 
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 @JsonTypeInfo(use = Id.NAME, property = "type")
 @JsonSubTypes({@Type(Polygon.class), @Type(MultiPolygon.class)})
-interface Geometry {
+interface Geometry extends CountryLookup {
 
     boolean contains(float lat, float lon);
 
-    Country getCountry(float lat, float lon);
-
     BoundingBox boundingBox();
 
-    Stream<Geometry> flatten(Country country);
+    Stream<Geometry> flatten(int countryOrdinal);
+
+    Stream<Ring> rings();
+
+    Geometry mapRings(UnaryOperator<Ring> mapper);
+
+    long footprint();
 }
@@ -0,0 +1,323 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.Arrays;
+
+/**
+ * Great-circle distances on a spherical earth, as central angles in radians. Ring edges are the
+ * straight lines in latitude and longitude between their vertices that pnpoly tests, not
+ * great-circle arcs, so the distance to a border agrees with which side of it a point is on; on a
+ * long edge along a parallel, such as the 49th parallel between the US and Canada, an arc would
+ * bulge poleward by up to a degree. Each edge therefore stays within the latitude and longitude
+ * range of its vertices, which the bounds for boxes and edges rely on.
+ */
+class GreatCircle {
+
+    static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private GreatCircle() {
+    }
+
+    static double toRadians(double km) {
+        return km / EARTH_RADIUS_KM;
+    }
+
+    static double toKm(double radians) {
+        return radians * EARTH_RADIUS_KM;
+    }
+
+    /**
+     * Returns the distance between two coordinates using the haversine formula.
+     */
+    static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double h = haversine(phi2 - phi1) + Math.cos(phi1) * Math.cos(phi2) * haversine(Math.toRadians(lon2 - lon1));
+        return angle(h);
+    }
+
+    /**
+     * Returns the distance from a coordinate to the nearest point of a latitude and longitude box,
+     * which is zero inside the box.
+     */
+    static double boxDistance(double lat, double lon, float minLat, float minLon, float maxLat, float maxLon) {
+        if (lon >= minLon && lon <= maxLon) {
+            if (lat < minLat) {
+                return Math.toRadians(minLat - lat);
+            }
+            if (lat > maxLat) {
+                return Math.toRadians(lat - maxLat);
+            }
+            return 0;
+        }
+        // the nearest point is on the nearer of the two meridians, at the latitude where the great
+        // circle through the coordinate meets that meridian at a right angle if it is in range
+        double hLon = Math.min(haversine(Math.toRadians(minLon - lon)), haversine(Math.toRadians(maxLon - lon)));
+        double phi = Math.toRadians(lat);
+        double cosLat = Math.cos(phi);
+        double cosLon = 1 - 2 * hLon;
+        double vertex = cosLon <= 0 ? Math.copySign(Math.PI / 2, phi) : Math.atan(Math.tan(phi) / cosLon);
+        double minPhi = Math.toRadians(minLat);
+        double maxPhi = Math.toRadians(maxLat);
+        double h;
+        if (vertex > minPhi && vertex < maxPhi) {
+            h = cosLat * Math.cos(vertex) * hLon + haversine(phi - vertex);
+        } else {
+            h = Math.min(cosLat * Math.cos(minPhi) * hLon + haversine(phi - minPhi),
+                    cosLat * Math.cos(maxPhi) * hLon + haversine(phi - maxPhi));
+        }
+        return angle(h);
+    }
+
+    /**
+     * Returns the distance from a coordinate to the nearest edge of a ring, or {@code bound} if no
+     * edge is nearer than that.
+     */
+    static double ringDistance(float[] latitude, float[] longitude, double lat, double lon, double bound) {
+        Nearest nearest = new Nearest(lat, lon, bound);
+        for (int i = 0, j = latitude.length - 1; i < latitude.length; j = i++) {
+            nearest.add(latitude[j], longitude[j], latitude[i], longitude[i]);
+        }
+        return nearest.distance();
+    }
+
+    /**
+     * Latitude and longitude box around a coordinate that contains every point within a distance,
+     * so segments and boxes outside it can be ruled out with a few float comparisons.
+     */
+    static class Window {
+
+        private final float south;
+        private final float north;
+        private final float west;
+        private final float east;
+
+        Window(double lat, double lon, double distance) {
+            double latSlack = Math.toDegrees(distance);
+            double lonSlack = lonSlack(lat, lon, distance);
+            south = Math.nextDown((float) (lat - latSlack));
+            north = Math.nextUp((float) (lat + latSlack));
+            west = Math.nextDown((float) (lon - lonSlack));
+            east = Math.nextUp((float) (lon + lonSlack));
+        }
+
+        boolean excludesSegment(float lat1, float lon1, float lat2, float lon2) {
+            return (lat1 < south && lat2 < south) || (lat1 > north && lat2 > north)
+                    || (lon1 < west && lon2 < west) || (lon1 > east && lon2 > east);
+        }
+
+        boolean excludesBox(float minLat, float minLon, float maxLat, float maxLon) {
+            return maxLat < south || minLat > north || maxLon < west || minLon > east;
+        }
+    }
+
+    // Longitude difference beyond which every point within the latitude slack is further away than
+    // the distance. Distance grows with the longitude difference and is at least asin(cos(lat) *
+    // sin(difference)) up to a right angle, so the cosine of the latitude furthest from the equator
+    // gives the limit. Near the poles or the antimeridian no longitude is ruled out.
+    private static double lonSlack(double lat, double lon, double distance) {
+        double furthest = Math.toRadians(Math.abs(lat)) + distance;
+        if (distance >= Math.PI / 2 || furthest >= Math.PI / 2) {
+            return 360;
+        }
+        double sin = Math.sin(distance) / Math.cos(furthest);
+        if (sin >= 1) {
+            return 360;
+        }
+        double slack = Math.toDegrees(Math.asin(sin));
+        return lon - slack < -180 || lon + slack > 180 ? 360 : slack;
+    }
+
+    /**
+     * Running minimum of the distance from a coordinate to a set of segments. Segments outside the
+     * {@link Window} of the current minimum are skipped without any trigonometry. For the others,
+     * the nearest point of the segment is found in a plane centred on the coordinate with
+     * longitudes scaled by the cosine of its latitude, and its great-circle distance is measured
+     * as a haversine, which orders distances the same way as the angle. Edges longer than a
+     * degree are measured in pieces of up to a degree, and pieces long enough for the plane to miss
+     * their nearest point are searched along their length when {@link #distance()} is called, if
+     * they may still be the nearest.
+     */
+    static class Nearest {
+
+        // longest piece of an edge in degrees that is measured in one plane
+        private static final double MAX_PIECE = 1;
+        // pieces are only searched beyond the plane if they are longer than this many degrees and
+        // either further than a degree away or at polar latitudes, as elsewhere the plane is within
+        // 0.1% of the sphere
+        private static final double MIN_SEARCH_PIECE = 0.05;
+        private static final double MIN_SEARCH_HAVERSINE = haversine(Math.toRadians(1));
+        private static final double POLAR = 60;
+        // the plane overestimates the haversine of a piece by a fraction less than this times the
+        // piece's extent in degrees over the squared cosine of the coordinate's latitude, so only
+        // pieces within that margin of the nearest are searched
+        private static final double PLANE_ERROR = 0.04;
+        private static final double GOLDEN = 0.6180339887498949;
+        private static final int SEARCH_STEPS = 20;
+        private static final double[] NO_CANDIDATES = {};
+
+        private final double lat;
+        private final double lon;
+        private final double cosLat;
+        private final double minSearch;
+        private final double searchMargin;
+        private double haversine;
+        private double distance;
+        private Window window;
+        // pieces to search, as the offsets of their ends and the lowest haversine they may have
+        private double[] candidates = NO_CANDIDATES;
+        private int pending;
+
+        Nearest(double lat, double lon, double bound) {
+            this.lat = lat;
+            this.lon = lon;
+            cosLat = Math.cos(Math.toRadians(lat));
+            minSearch = Math.abs(lat) > POLAR ? 0 : MIN_SEARCH_HAVERSINE;
+            searchMargin = PLANE_ERROR / (cosLat * cosLat);
+            distance = bound;
+            haversine = bound < Math.PI ? haversine(bound) : Double.POSITIVE_INFINITY;
+            window = new Window(lat, lon, bound);
+        }
+
+        /**
+         * Returns the smallest distance so far.
+         *
+         * @return distance in radians, or the bound if no segment was nearer
+         */
+        double distance() {
+            for (int i = 0; i < pending; i += 5) {
+                if (candidates[i + 4] < haversine) {
+                    improve(search(candidates[i], candidates[i + 1], candidates[i + 2], candidates[i + 3]));
+                }
+            }
+            pending = 0;
+            return distance;
+        }
+
+        /**
+         * Returns an upper bound of the smallest distance so far, for ruling out segments while
+         * more are being added without searching the pieces that may be nearest.
+         *
+         * @return distance in radians, or the bound if no segment was nearer
+         */
+        double bound() {
+            return distance;
+        }
+
+        void add(float latA, float lonA, float latB, float lonB) {
+            if (window.excludesSegment(latA, lonA, latB, lonB)) {
+                return;
+            }
+            int pieces = (int) Math.ceil(Math.max(Math.abs(latB - latA), Math.abs(lonB - lonA)) / MAX_PIECE);
+            if (pieces <= 1) {
+                measure(latA, lonA, latB, lonB);
+                return;
+            }
+            // the plane only approximates the sphere near the coordinate, so long edges are
+            // measured in pieces, each of which the window may skip
+            float lat0 = latA;
+            float lon0 = lonA;
+            for (int i = 1; i <= pieces; i++) {
+                float lat1 = i == pieces ? latB : (float) (latA + (double) (latB - latA) * i / pieces);
+                float lon1 = i == pieces ? lonB : (float) (lonA + (double) (lonB - lonA) * i / pieces);
+                if (!window.excludesSegment(lat0, lon0, lat1, lon1)) {
+                    measure(lat0, lon0, lat1, lon1);
+                }
+                lat0 = lat1;
+                lon0 = lon1;
+            }
+        }
+
+        private void measure(float latA, float lonA, float latB, float lonB) {
+            double ay = latA - lat;
+            double by = latB - lat;
+            double ax = lonA - lon;
+            double bx = lonB - lon;
+            // measure across the antimeridian when the whole segment is nearer that way
+            if (ax > 180 && bx > 180) {
+                ax -= 360;
+                bx -= 360;
+            } else if (ax < -180 && bx < -180) {
+                ax += 360;
+                bx += 360;
+            }
+            double dx = (bx - ax) * cosLat;
+            double dy = by - ay;
+            double length = dx * dx + dy * dy;
+            double t = length > 0 ? Math.max(0, Math.min(1, -(ax * cosLat * dx + ay * dy) / length)) : 0;
+            double h = haversineAt(ay + t * (by - ay), ax + t * (bx - ax));
+            // far from the coordinate, and most of all near the poles, the plane can miss the
+            // nearest point of a long piece, so one that might be nearest is searched along, but
+            // only once all segments are in and the nearest is known to within the plane's error
+            double extent = Math.max(Math.abs(by - ay), Math.abs(bx - ax));
+            double lowest = h / (1 + searchMargin * extent);
+            if (h > minSearch && lowest < haversine && extent > MIN_SEARCH_PIECE) {
+                if (pending == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, Math.max(40, 2 * pending));
+                }
+                candidates[pending++] = ay;
+                candidates[pending++] = ax;
+                candidates[pending++] = by;
+                candidates[pending++] = bx;
+                candidates[pending++] = lowest;
+            }
+            improve(h);
+        }
+
+        private void improve(double h) {
+            if (h < haversine) {
+                haversine = h;
+                distance = Math.min(distance, angle(h));
+                window = new Window(lat, lon, distance);
+            }
+        }
+
+        // golden section search for the smallest haversine along a piece, which has one minimum
+        private double search(double ay, double ax, double by, double bx) {
+            double low = 0;
+            double high = 1;
+            double t1 = high - GOLDEN * (high - low);
+            double t2 = low + GOLDEN * (high - low);
+            double h1 = haversineAt(ay + t1 * (by - ay), ax + t1 * (bx - ax));
+            double h2 = haversineAt(ay + t2 * (by - ay), ax + t2 * (bx - ax));
+            for (int i = 0; i < SEARCH_STEPS; i++) {
+                if (h1 < h2) {
+                    high = t2;
+                    t2 = t1;
+                    h2 = h1;
+                    t1 = high - GOLDEN * (high - low);
+                    h1 = haversineAt(ay + t1 * (by - ay), ax + t1 * (bx - ax));
+                } else {
+                    low = t1;
+                    t1 = t2;
+                    h1 = h2;
+                    t2 = low + GOLDEN * (high - low);
+                    h2 = haversineAt(ay + t2 * (by - ay), ax + t2 * (bx - ax));
+                }
+            }
+            double h = Math.min(h1, h2);
+            // the bracket never closes on an end of the piece, where the minimum often is
+            if (low == 0) {
+                h = Math.min(h, haversineAt(ay, ax));
+            }
+            if (high == 1) {
+                h = Math.min(h, haversineAt(by, bx));
+            }
+            return h;
+        }
+
+        // haversine of the distance to the point at offsets in degrees from the coordinate
+        private double haversineAt(double y, double x) {
+            return GreatCircle.haversine(Math.toRadians(y))
+                    + cosLat * Math.cos(Math.toRadians(lat + y)) * GreatCircle.haversine(Math.toRadians(x));
+        }
+    }
+
+    private static double haversine(double theta) {
+        double s = Math.sin(theta / 2);
+        return s * s;
+    }
+
+    private static double angle(double haversine) {
+        return 2 * Math.asin(Math.sqrt(Math.min(1, haversine)));
+    }
+}
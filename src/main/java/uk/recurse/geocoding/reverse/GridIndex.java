@@ -0,0 +1,125 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.Arrays;
+
+/**
+ * Quadtree over the whole latitude and longitude range that is precomputed from the ring edges.
+ * A cell that no edge passes through is either inside the same countries or outside all of them
+ * at every point, so the answer at its centre is stored and returned without touching the
+ * polygons. Only cells crossed by a border at the maximum depth fall back to the wrapped lookup.
+ *
+ * <p>Nodes are stored as four consecutive slots of an int array, one per quadrant. A positive
+ * slot is the index of a child node, {@link #MIXED} means fall back and any other negative value
+ * is a country ordinal encoded by {@link #terminal(int)}.
+ */
+class GridIndex implements CountryLookup {
+
+    static final int MAX_DEPTH = 16;
+
+    private static final int MIXED = Integer.MIN_VALUE;
+    // cells are widened by this many degrees so float rounding in pnpoly cannot flip a point
+    private static final double TOLERANCE = 1e-3;
+
+    private final CountryLookup fallback;
+    private final int depth;
+    private final double latScale;
+    private final double lonScale;
+    private final int[] nodes;
+
+    GridIndex(Geometry world, CountryLookup fallback, int depth) {
+        this.fallback = fallback;
+        this.depth = depth;
+        latScale = (1 << depth) / 180.0;
+        lonScale = (1 << depth) / 360.0;
+        Builder builder = new Builder(world);
+        builder.node(0, 0, 0, builder.allEdges());
+        nodes = Arrays.copyOf(builder.nodes, builder.size);
+    }
+
+    @Override
+    public int getCountryOrdinal(float lat, float lon) {
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            return fallback.getCountryOrdinal(lat, lon);
+        }
+        int max = (1 << depth) - 1;
+        int y = Math.min((int) ((lat + 90.0) * latScale), max);
+        int x = Math.min((int) ((lon + 180.0) * lonScale), max);
+        int node = 0;
+        for (int shift = depth - 1; ; shift--) {
+            int slot = nodes[node + (((y >>> shift) & 1) << 1 | ((x >>> shift) & 1))];
+            if (slot > 0) {
+                node = slot;
+            } else if (slot == MIXED) {
+                return fallback.getCountryOrdinal(lat, lon);
+            } else {
+                return -2 - slot;
+            }
+        }
+    }
+
+    /**
+     * Returns the heap used by the grid nodes.
+     *
+     * @return size in bytes
+     */
+    long footprint() {
+        return (long) nodes.length * Integer.BYTES;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    private static int terminal(int ordinal) {
+        return -2 - ordinal;
+    }
+
+    private class Builder {
+
+        private final RingEdges edges;
+        private int[] nodes = new int[1024];
+        private int size;
+
+        Builder(Geometry world) {
+            edges = new RingEdges(world);
+        }
+
+        int[] allEdges() {
+            return edges.all();
+        }
+
+        // builds the node for the cell (y, x) at the given level and returns its index
+        int node(int level, int y, int x, int[] edges) {
+            int index = size;
+            if (size + 4 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            }
+            size += 4;
+            boolean collapsible = true;
+            for (int quadrant = 0; quadrant < 4; quadrant++) {
+                int slot = cell(level + 1, y << 1 | quadrant >> 1, x << 1 | quadrant & 1, edges);
+                nodes[index + quadrant] = slot;
+                collapsible &= slot == MIXED;
+            }
+            if (collapsible && index > 0) {
+                size = index;
+                return MIXED;
+            }
+            return index;
+        }
+
+        private int cell(int level, int y, int x, int[] candidates) {
+            double cellHeight = 180.0 / (1 << level);
+            double cellWidth = 360.0 / (1 << level);
+            double minLat = y * cellHeight - 90;
+            double minLon = x * cellWidth - 180;
+            int[] crossing = edges.crossing(candidates, minLat - TOLERANCE, minLon - TOLERANCE,
+                    minLat + cellHeight + TOLERANCE, minLon + cellWidth + TOLERANCE);
+            if (crossing.length == 0) {
+                return terminal(fallback.getCountryOrdinal(
+                        (float) (minLat + cellHeight / 2), (float) (minLon + cellWidth / 2)));
+            }
+            return level == depth ? MIXED : node(level, y, x, crossing);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package uk.recurse.geocoding.reverse;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram for the lookups of one reverse geocoder. Instrumentation is a
+ * layer of the lookup chain that only exists when it is enabled: the outermost lookup is wrapped
+ * to time every call, and the R-tree search is replaced by a traced copy of it that counts the
+ * nodes, rings and edges it tests, so a reverse geocoder built without instrumentation runs
+ * exactly the same code as before.
+ *
+ * <p>Counters are {@link LongAdder}s, so threads looking up in parallel do not contend on them.
+ * Lookups slower than the threshold are committed as {@link SlowLookupEvent}s when the JVM has JFR
+ * and a recording has the event enabled.
+ */
+class LookupStatistics implements LookupStatisticsMXBean, CountryLookup, FlatRTree.Trace {
+
+    static final String DOMAIN = "uk.recurse.geocoding.reverse";
+
+    private static final int BUCKETS = 32;
+    // probed here rather than in SlowLookupEvent, as loading that loads jdk.jfr.Event
+    private static final boolean JFR = jfrAvailable();
+
+    private final FeatureCollection featureCollection;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder treeLookups = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder rings = new LongAdder();
+    private final LongAdder edges = new LongAdder();
+    private final LongAdder[] latency = new LongAdder[BUCKETS];
+    private volatile long slowLookupNanos;
+    private CountryLookup lookup;
+    private CountryCache cache;
+    private volatile long cacheHitsAtReset;
+    private volatile long cacheMissesAtReset;
+
+    LookupStatistics(FeatureCollection featureCollection, long slowLookupNanos) {
+        this.featureCollection = featureCollection;
+        this.slowLookupNanos = slowLookupNanos;
+        for (int i = 0; i < BUCKETS; i++) {
+            latency[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the traced R-tree search, for the grid to fall back on or to use directly.
+     *
+     * @return traced lookup
+     */
+    CountryLookup tree() {
+        FlatRTree index = featureCollection.index();
+        return (lat, lon) -> index.getCountryOrdinal(lat, lon, this);
+    }
+
+    /**
+     * Wraps the outermost lookup to time it. Must be called once, before the statistics are
+     * published.
+     *
+     * @param lookup lookup to time
+     * @param cache  result cache inside the lookup, or null
+     * @return this
+     */
+    CountryLookup wrap(CountryLookup lookup, CountryCache cache) {
+        this.lookup = lookup;
+        this.cache = cache;
+        return this;
+    }
+
+    @Override
+    public int getCountryOrdinal(float lat, float lon) {
+        long start = System.nanoTime();
+        int ordinal = lookup.getCountryOrdinal(lat, lon);
+        long nanos = System.nanoTime() - start;
+        lookups.increment();
+        if (ordinal >= 0) {
+            hits.increment();
+        }
+        latency[Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1)].increment();
+        if (nanos > slowLookupNanos && JFR) {
+            SlowLookupEvent.commit(featureCollection, lat, lon, ordinal, nanos);
+        }
+        return ordinal;
+    }
+
+    private static boolean jfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void record(int nodes, int rings, int edges) {
+        treeLookups.increment();
+        this.nodes.add(nodes);
+        this.rings.add(rings);
+        this.edges.add(edges);
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server, replacing any registered under the
+     * same name.
+     *
+     * @param name value of the {@code name} key of the object name
+     * @throws IllegalArgumentException if the name is not a valid object name value
+     */
+    void register(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN, "name", name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot register lookup statistics as " + name, e);
+        }
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return lookups.sum() - hits.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cache == null ? 0 : cache.hits() - cacheHitsAtReset;
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cache == null ? 0 : cache.misses() - cacheMissesAtReset;
+    }
+
+    @Override
+    public long getTreeLookups() {
+        return treeLookups.sum();
+    }
+
+    @Override
+    public long getNodesVisited() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getRingsTested() {
+        return rings.sum();
+    }
+
+    @Override
+    public long getEdgesEvaluated() {
+        return edges.sum();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = latency[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return percentile(0.99);
+    }
+
+    private long percentile(double p) {
+        long[] histogram = getLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getSlowLookupThresholdNanos() {
+        return slowLookupNanos;
+    }
+
+    @Override
+    public void setSlowLookupThresholdNanos(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative: " + nanos);
+        }
+        slowLookupNanos = nanos;
+    }
+
+    @Override
+    public void reset() {
+        lookups.reset();
+        hits.reset();
+        treeLookups.reset();
+        nodes.reset();
+        rings.reset();
+        edges.reset();
+        for (LongAdder bucket : latency) {
+            bucket.reset();
+        }
+        if (cache != null) {
+            cacheHitsAtReset = cache.hits();
+            cacheMissesAtReset = cache.misses();
+        }
+    }
+}
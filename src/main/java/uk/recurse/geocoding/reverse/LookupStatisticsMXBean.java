@@ -0,0 +1,91 @@
+package uk.recurse.geocoding.reverse;
+
+/**
+ * Management interface of the lookup statistics that a {@link ReverseGeocoder} publishes when it
+ * is built with {@link ReverseGeocoder.Builder#instrument(String, long)}. Counts cover
+ * {@code getCountry} and {@code getCountryOrdinal} lookups and the batch forms of them, from when
+ * the reverse geocoder was created or the statistics were last reset.
+ */
+public interface LookupStatisticsMXBean {
+
+    /**
+     * @return number of lookups
+     */
+    long getLookups();
+
+    /**
+     * @return number of lookups that found a country
+     */
+    long getHits();
+
+    /**
+     * @return number of lookups outside every country
+     */
+    long getMisses();
+
+    /**
+     * @return number of lookups answered by the result cache, 0 if it is not enabled
+     */
+    long getCacheHits();
+
+    /**
+     * @return number of lookups that went past the result cache, 0 if it is not enabled
+     */
+    long getCacheMisses();
+
+    /**
+     * @return number of lookups that searched the R-tree, rather than being answered by the cache
+     * or the grid
+     */
+    long getTreeLookups();
+
+    /**
+     * @return number of R-tree nodes whose bounding box was tested
+     */
+    long getNodesVisited();
+
+    /**
+     * @return number of outer rings and holes whose vertices were tested
+     */
+    long getRingsTested();
+
+    /**
+     * @return number of polygon edges evaluated by the ring tests
+     */
+    long getEdgesEvaluated();
+
+    /**
+     * Returns the lookup latency histogram. Bucket 0 counts lookups that took under 1 ns and
+     * bucket {@code i} those that took from 2<sup>i-1</sup> to 2<sup>i</sup> ns, except for the
+     * last bucket, which counts all slower lookups.
+     *
+     * @return number of lookups in each bucket
+     */
+    long[] getLatencyHistogram();
+
+    /**
+     * @return upper bound of the histogram bucket containing the median latency, in nanoseconds
+     */
+    long getLatencyP50Nanos();
+
+    /**
+     * @return upper bound of the histogram bucket containing the 99th percentile latency, in
+     * nanoseconds
+     */
+    long getLatencyP99Nanos();
+
+    /**
+     * @return latency above which a lookup is recorded as a JFR event, in nanoseconds
+     */
+    long getSlowLookupThresholdNanos();
+
+    /**
+     * @param nanos latency above which a lookup is recorded as a JFR event, in nanoseconds
+     */
+    void setSlowLookupThresholdNanos(long nanos);
+
+    /**
+     * Sets all the counts and the histogram to zero.
+     */
+    void reset();
+}
@@ -3,6 +3,7 @@ package uk.recurse.geocoding.reverse;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 class MultiPolygon implements Geometry {
@@ -20,6 +21,10 @@ class MultiPolygon implements Geometry {
         boundingBox = new BoundingBox(geometries);
     }
 
+    Geometry[] geometries() {
+        return geometries;
+    }
+
     @Override
     public boolean contains(float lat, float lon) {
         if (boundingBox.contains(lat, lon)) {
@@ -33,16 +38,16 @@ class MultiPolygon implements Geometry {
     }
 
     @Override
-    public Country getCountry(float lat, float lon) {
+    public int getCountryOrdinal(float lat, float lon) {
         if (boundingBox.contains(lat, lon)) {
             for (Geometry geometry : geometries) {
-                Country country = geometry.getCountry(lat, lon);
-                if (country != null) {
-                    return country;
+                int country = geometry.getCountryOrdinal(lat, lon);
+                if (country != -1) {
+                    return Math.max(country, -1);
                 }
             }
         }
-        return null;
+        return -1;
     }
 
     @Override
@@ -51,7 +56,26 @@ class MultiPolygon implements Geometry {
     }
 
     @Override
-    public Stream<Geometry> flatten(Country country) {
-        return Stream.of(geometries).flatMap(geometry -> geometry.flatten(country));
+    public Stream<Geometry> flatten(int countryOrdinal) {
+        return Stream.of(geometries).flatMap(geometry -> geometry.flatten(countryOrdinal));
+    }
+
+    @Override
+    public Stream<Ring> rings() {
+        return Stream.of(geometries).flatMap(Geometry::rings);
+    }
+
+    @Override
+    public Geometry mapRings(UnaryOperator<Ring> mapper) {
+        return new MultiPolygon(Stream.of(geometries)
+                .map(geometry -> geometry.mapRings(mapper))
+                .toArray(Geometry[]::new));
+    }
+
+    @Override
+    public long footprint() {
+        long children = Stream.of(geometries).mapToLong(Geometry::footprint).sum();
+        return Footprint.object(2) + Footprint.array(geometries.length, (int) Footprint.REFERENCE)
+                + boundingBox.footprint() + children;
     }
 }
@@ -0,0 +1,144 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Geocodes a batch of coordinates on an executor. The batch is bucketed along a coarse Hilbert
+ * curve with a parallel counting sort, and the bucketed order is cut into contiguous chunks, so
+ * each task looks up a compact region of the globe and keeps its part of the tree in cache
+ * instead of every thread walking the whole tree. Within a chunk, runs of consecutive points are
+ * passed to {@link CountryLookup#getCountryOrdinals(float[], float[], int, int[])} as a group so
+ * they can share the tree descent. Results are written back at the original indices, so the
+ * output order is unaffected. Each point's bucket is computed once and kept for the second pass of
+ * the sort, so the sort costs little even when most points are in the ocean and lookups are cheap.
+ */
+class ParallelBatch {
+
+    // batches smaller than this per task are not worth the cost of scheduling
+    static final int MIN_CHUNK = 1 << 13;
+    // points looked up together, small enough that a group usually spans few countries
+    static final int GROUP = 64;
+
+    // 128 by 128 cells of roughly 1.4 by 2.8 degrees
+    private static final int BUCKET_BITS = 7;
+    private static final int BUCKETS = 1 << 2 * BUCKET_BITS;
+    // extra chunks per thread so a thread finishing an empty ocean region can help elsewhere
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Random access to the coordinates of a batch, which may be stored as floats or doubles.
+     */
+    interface Coordinates {
+
+        float latitude(int index);
+
+        float longitude(int index);
+    }
+
+    /**
+     * Receives the country ordinal for each index of a batch.
+     */
+    interface Sink {
+
+        void accept(int index, int ordinal);
+    }
+
+    private ParallelBatch() {
+    }
+
+    static void run(Coordinates coordinates, int offset, int length, CountryLookup lookup, Sink sink,
+                    Executor executor) {
+        int threads = executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        int chunks = Math.max(1, Math.min(length / MIN_CHUNK, threads * CHUNKS_PER_THREAD));
+        if (length < GROUP) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                sink.accept(i, lookup.getCountryOrdinal(coordinates.latitude(i), coordinates.longitude(i)));
+            }
+            return;
+        }
+        int[][] counts = new int[chunks][BUCKETS];
+        int[] buckets = new int[length];
+        forEachChunk(chunks, length, executor, (chunk, start, end) -> {
+            int[] count = counts[chunk];
+            for (int k = start; k < end; k++) {
+                int bucket = bucket(coordinates, offset + k);
+                buckets[k] = bucket;
+                count[bucket]++;
+            }
+        });
+        // turn the counts into the first output position of each bucket, chunk by chunk
+        int position = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            for (int[] count : counts) {
+                int n = count[bucket];
+                count[bucket] = position;
+                position += n;
+            }
+        }
+        int[] order = new int[length];
+        forEachChunk(chunks, length, executor, (chunk, start, end) -> {
+            int[] next = counts[chunk];
+            for (int k = start; k < end; k++) {
+                order[next[buckets[k]]++] = offset + k;
+            }
+        });
+        forEachChunk(chunks, length, executor, (chunk, start, end) -> {
+            float[] lat = new float[GROUP];
+            float[] lon = new float[GROUP];
+            int[] ordinals = new int[GROUP];
+            for (int from = start; from < end; from += GROUP) {
+                int n = Math.min(GROUP, end - from);
+                for (int k = 0; k < n; k++) {
+                    int i = order[from + k];
+                    lat[k] = coordinates.latitude(i);
+                    lon[k] = coordinates.longitude(i);
+                }
+                lookup.getCountryOrdinals(lat, lon, n, ordinals);
+                for (int k = 0; k < n; k++) {
+                    sink.accept(order[from + k], ordinals[k]);
+                }
+            }
+        });
+    }
+
+    private static int bucket(Coordinates coordinates, int index) {
+        return SpatialOrder.hilbert(coordinates.latitude(index), coordinates.longitude(index), BUCKET_BITS);
+    }
+
+    private interface ChunkTask {
+
+        void run(int chunk, int start, int end);
+    }
+
+    // splits [0, length) into equal chunks and waits for all of them to complete
+    private static void forEachChunk(int chunks, int length, Executor executor, ChunkTask task) {
+        if (chunks == 1) {
+            task.run(0, 0, length);
+            return;
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int c = chunk;
+            int start = (int) ((long) length * chunk / chunks);
+            int end = (int) ((long) length * (chunk + 1) / chunks);
+            futures[chunk] = CompletableFuture.runAsync(() -> task.run(c, start, end), executor);
+        }
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -3,33 +3,131 @@ package uk.recurse.geocoding.reverse;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 class Polygon implements Geometry {
 
+    /**
+     * Country of a polygon of an unselected country that a restricted tree keeps because it
+     * overlaps a selected one. Coordinates inside it are in no country, as they would have been
+     * claimed by the unselected country before the selected polygon was reached.
+     */
+    static final int OUTSIDE = -2;
+
     private final Ring ring;
     private final Geometry holes;
-    private final Country country;
+    private final int country;
 
     @JsonCreator
     Polygon(@JsonProperty("coordinates") Ring[] rings) {
-        this(rings[0], SortTileRecursive.pack(Stream.of(rings).skip(1)), null);
+        this(rings[0], SortTileRecursive.pack(Stream.of(rings).skip(1)), -1);
     }
 
-    private Polygon(Ring ring, Geometry holes, Country country) {
+    Polygon(Ring ring, Geometry holes, int country) {
         this.ring = ring;
         this.holes = holes;
         this.country = country;
     }
 
+    Ring ring() {
+        return ring;
+    }
+
+    Geometry holes() {
+        return holes;
+    }
+
+    int country() {
+        return country;
+    }
+
+    /**
+     * Tests whether the polygon decides the country of the coordinates inside it, which is true
+     * of the polygons of countries and of {@link #OUTSIDE} polygons. Polygons that belong to no
+     * country are passed over.
+     *
+     * @return true if a lookup stops at the polygon
+     */
+    boolean decides() {
+        return country != -1;
+    }
+
     @Override
     public boolean contains(float lat, float lon) {
         return ring.contains(lat, lon) && !holes.contains(lat, lon);
     }
 
+    /**
+     * Returns the great-circle distance to the nearest edge of the outer ring or a hole, which is
+     * how far a coordinate inside the polygon is from its border or coastline.
+     *
+     * @param lat   degrees latitude
+     * @param lon   degrees longitude
+     * @param bound distance in radians beyond which edges need not be measured
+     * @return distance in radians, or {@code bound} if no edge is nearer than that
+     */
+    double distance(double lat, double lon, double bound) {
+        double[] best = {ring.distance(lat, lon, bound)};
+        GreatCircle.Window[] window = {new GreatCircle.Window(lat, lon, best[0])};
+        holes.rings().forEach(hole -> {
+            BoundingBox box = hole.boundingBox();
+            if (!window[0].excludesBox(box.minLatitude(), box.minLongitude(), box.maxLatitude(), box.maxLongitude())) {
+                double distance = hole.distance(lat, lon, best[0]);
+                if (distance < best[0]) {
+                    best[0] = distance;
+                    window[0] = new GreatCircle.Window(lat, lon, distance);
+                }
+            }
+        });
+        return best[0];
+    }
+
+    /**
+     * Tests whether the polygon and a latitude and longitude rectangle have a point in common.
+     * Either the polygon lies within the rectangle, or the border of the polygon crosses the
+     * rectangle, or there is no border in the rectangle and the whole rectangle is inside the
+     * polygon exactly when its centre is.
+     *
+     * @param minLat minimum degrees latitude
+     * @param minLon minimum degrees longitude
+     * @param maxLat maximum degrees latitude
+     * @param maxLon maximum degrees longitude
+     * @return true if they intersect
+     */
+    boolean intersects(double minLat, double minLon, double maxLat, double maxLon) {
+        BoundingBox box = ring.boundingBox();
+        if (box.minLatitude() >= minLat && box.maxLatitude() <= maxLat
+                && box.minLongitude() >= minLon && box.maxLongitude() <= maxLon) {
+            return true;
+        }
+        if (ring.crosses(minLat, minLon, maxLat, maxLon)
+                || holes.rings().anyMatch(hole -> hole.crosses(minLat, minLon, maxLat, maxLon))) {
+            return true;
+        }
+        return contains((float) ((minLat + maxLat) / 2), (float) ((minLon + maxLon) / 2));
+    }
+
+    /**
+     * Tests whether the polygon has a point within a great-circle distance of a coordinate: either
+     * a vertex is near enough, which settles polygons lying entirely within the distance without
+     * measuring any edges, or the coordinate is inside, or an edge of the outer ring or a hole is
+     * near enough.
+     *
+     * @param lat    degrees latitude
+     * @param lon    degrees longitude
+     * @param radius distance in radians
+     * @return true if the polygon is within the distance
+     */
+    boolean within(double lat, double lon, double radius) {
+        return GreatCircle.distance(lat, lon, ring.latitude(0), ring.longitude(0)) <= radius
+                || contains((float) lat, (float) lon)
+                || distance(lat, lon, radius) < radius;
+    }
+
     @Override
-    public Country getCountry(float lat, float lon) {
-        return contains(lat, lon) ? country : null;
+    public int getCountryOrdinal(float lat, float lon) {
+        return contains(lat, lon) ? country : -1;
     }
 
     @Override
@@ -38,7 +136,22 @@ class Polygon implements Geometry {
     }
 
     @Override
-    public Stream<Geometry> flatten(Country country) {
-        return Stream.of(new Polygon(ring, holes, country));
+    public Stream<Geometry> flatten(int countryOrdinal) {
+        return Stream.of(new Polygon(ring, holes, countryOrdinal));
+    }
+
+    @Override
+    public Stream<Ring> rings() {
+        return Stream.concat(Stream.of(ring), holes.rings());
+    }
+
+    @Override
+    public Geometry mapRings(UnaryOperator<Ring> mapper) {
+        return new Polygon(mapper.apply(ring), holes.mapRings(mapper), country);
+    }
+
+    @Override
+    public long footprint() {
+        return Footprint.object(3) + ring.footprint() + holes.footprint();
     }
 }
@@ -0,0 +1,306 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Adjacency graph between the polygons of a {@link FlatRTree}. Two polygons are neighbours when
+ * their bounding boxes intersect, which links every polygon to the polygons across its land
+ * borders as well as to nearby islands. Neighbour lists are in tree order.
+ *
+ * <p>Simplified borders can overlap slightly, and a full search returns the first polygon in tree
+ * order that contains a point. So for each polygon the graph also keeps the earlier neighbours that
+ * may overlap it, with the bounding box of the area where they may overlap. The boundary of the
+ * overlap between two outer rings consists of edges of one ring inside the other, so the area
+ * covers every edge within {@link #TOLERANCE} of an edge of the other ring or with an end inside
+ * it. Neighbours with no such edges cannot overlap. Polygons with many overlapping neighbours, such
+ * as large countries with long borders, also get a coarse grid over their bounding box listing the
+ * overlap areas that touch each cell.
+ */
+class PolygonGraph {
+
+    // degrees of slack when comparing edges, far more than pnpoly's float rounding error
+    private static final float TOLERANCE = 1e-4f;
+
+    // polygons with more overlapping neighbours than this get a grid of GRID by GRID cells
+    private static final int GRID_THRESHOLD = 8;
+    private static final int GRID = 16;
+
+    private static final int[] NONE = {};
+    private static final float[] NO_AREAS = {};
+
+    private final FlatRTree tree;
+    private final int[][] neighbours;
+    private final int[][] overlaps;
+    private final float[][] overlapAreas;
+    // per polygon GRID * GRID + 1 cell offsets followed by the overlaps in each cell, or null
+    private final int[][] overlapGrids;
+
+    PolygonGraph(FlatRTree tree) {
+        this.tree = tree;
+        this.neighbours = new int[tree.size()][];
+        this.overlaps = new int[tree.size()][];
+        this.overlapAreas = new float[tree.size()][];
+        this.overlapGrids = new int[tree.size()][];
+        int[] buffer = new int[64];
+        Map<Ring, Edges> edges = new IdentityHashMap<>();
+        for (int node = 0; node < neighbours.length; node++) {
+            Polygon polygon = tree.polygon(node);
+            if (polygon == null || !polygon.decides()) {
+                neighbours[node] = NONE;
+                overlaps[node] = NONE;
+                overlapAreas[node] = NO_AREAS;
+                continue;
+            }
+            int self = node;
+            int[][] found = {buffer};
+            int[] count = {0};
+            BoundingBox box = polygon.boundingBox();
+            tree.forEachPolygon(box.minLatitude(), box.minLongitude(), box.maxLatitude(), box.maxLongitude(), other -> {
+                if (other != self) {
+                    if (count[0] == found[0].length) {
+                        found[0] = Arrays.copyOf(found[0], found[0].length * 2);
+                    }
+                    found[0][count[0]++] = other;
+                }
+            });
+            buffer = found[0];
+            neighbours[node] = count[0] == 0 ? NONE : Arrays.copyOf(buffer, count[0]);
+            int overlapping = 0;
+            float[] areas = new float[4 * count[0]];
+            for (int k = 0; k < count[0] && buffer[k] < node; k++) {
+                float[] area = overlap(tree.polygon(buffer[k]).ring(), polygon.ring(), edges);
+                if (area != null) {
+                    System.arraycopy(area, 0, areas, 4 * overlapping, 4);
+                    buffer[overlapping++] = buffer[k];
+                }
+            }
+            overlaps[node] = overlapping == 0 ? NONE : Arrays.copyOf(buffer, overlapping);
+            overlapAreas[node] = overlapping == 0 ? NO_AREAS : Arrays.copyOf(areas, 4 * overlapping);
+            if (overlapping > GRID_THRESHOLD) {
+                overlapGrids[node] = grid(box, overlapAreas[node]);
+            }
+        }
+    }
+
+    private static int[] grid(BoundingBox box, float[] areas) {
+        int overlapping = areas.length / 4;
+        int[][] cells = new int[overlapping][];
+        int[] offsets = new int[GRID * GRID + 1];
+        for (int k = 0; k < overlapping; k++) {
+            int minRow = row(box, areas[4 * k]);
+            int minColumn = column(box, areas[4 * k + 1]);
+            int maxRow = row(box, areas[4 * k + 2]);
+            int maxColumn = column(box, areas[4 * k + 3]);
+            cells[k] = new int[]{minRow, minColumn, maxRow, maxColumn};
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int column = minColumn; column <= maxColumn; column++) {
+                    offsets[row * GRID + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < GRID * GRID; cell++) {
+            offsets[cell + 1] += offsets[cell];
+        }
+        int[] grid = Arrays.copyOf(offsets, offsets.length + offsets[GRID * GRID]);
+        int[] next = Arrays.copyOf(offsets, GRID * GRID);
+        // overlaps are added in ascending order, so each cell lists them in tree order
+        for (int k = 0; k < overlapping; k++) {
+            for (int row = cells[k][0]; row <= cells[k][2]; row++) {
+                for (int column = cells[k][1]; column <= cells[k][3]; column++) {
+                    grid[offsets.length + next[row * GRID + column]++] = k;
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static int row(BoundingBox box, float lat) {
+        return cell(lat, box.minLatitude(), box.maxLatitude());
+    }
+
+    private static int column(BoundingBox box, float lon) {
+        return cell(lon, box.minLongitude(), box.maxLongitude());
+    }
+
+    private static int cell(float value, float min, float max) {
+        int cell = (int) ((value - min) / (max - min) * GRID);
+        return Math.max(0, Math.min(GRID - 1, cell));
+    }
+
+    // returns the bounding box of the area where the rings may overlap, or null if they cannot
+    private static float[] overlap(Ring a, Ring b, Map<Ring, Edges> edges) {
+        BoundingBox boxA = a.boundingBox();
+        BoundingBox boxB = b.boundingBox();
+        float minLat = Math.max(boxA.minLatitude(), boxB.minLatitude()) - TOLERANCE;
+        float minLon = Math.max(boxA.minLongitude(), boxB.minLongitude()) - TOLERANCE;
+        float maxLat = Math.min(boxA.maxLatitude(), boxB.maxLatitude()) + TOLERANCE;
+        float maxLon = Math.min(boxA.maxLongitude(), boxB.maxLongitude()) + TOLERANCE;
+        float[] edgesA = edges.computeIfAbsent(a, Edges::new).within(b, minLat, minLon, maxLat, maxLon);
+        float[] edgesB = edges.computeIfAbsent(b, Edges::new).within(a, minLat, minLon, maxLat, maxLon);
+        // the overlap is bounded by edges of each ring that are inside the other or cross its edges
+        float[] area = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int i = 0; i < edgesA.length; i += 5) {
+            if (edgesA[i + 4] != 0) {
+                include(area, edgesA, i);
+            }
+        }
+        for (int j = 0; j < edgesB.length; j += 5) {
+            if (edgesB[j + 4] != 0) {
+                include(area, edgesB, j);
+            }
+        }
+        // find the pairs of nearby edges by sorting one side by minimum latitude, then for each
+        // edge of the other side scanning from the first edge that could reach it
+        long[] sorted = new long[edgesB.length / 5];
+        float tallest = 0;
+        for (int j = 0; j < edgesB.length; j += 5) {
+            sorted[j / 5] = (long) sortable(edgesB[j]) << 32 | j;
+            tallest = Math.max(tallest, edgesB[j + 2] - edgesB[j]);
+        }
+        Arrays.sort(sorted);
+        for (int i = 0; i < edgesA.length; i += 5) {
+            long from = (long) sortable(edgesA[i] - tallest - TOLERANCE) << 32;
+            int start = Arrays.binarySearch(sorted, from);
+            for (int k = start < 0 ? -start - 1 : start; k < sorted.length; k++) {
+                int j = (int) sorted[k];
+                if (edgesB[j] > edgesA[i + 2] + TOLERANCE) {
+                    break;
+                }
+                if (edgesA[i] <= edgesB[j + 2] + TOLERANCE && edgesA[i + 1] <= edgesB[j + 3] + TOLERANCE
+                        && edgesA[i + 3] >= edgesB[j + 1] - TOLERANCE) {
+                    include(area, edgesA, i);
+                    include(area, edgesB, j);
+                }
+            }
+        }
+        return area[0] > area[2] ? null : area;
+    }
+
+    // maps a float to an int with the same ordering
+    private static int sortable(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ (bits >> 31 & Integer.MAX_VALUE);
+    }
+
+    private static void include(float[] area, float[] edges, int i) {
+        area[0] = Math.min(area[0], edges[i] - TOLERANCE);
+        area[1] = Math.min(area[1], edges[i + 1] - TOLERANCE);
+        area[2] = Math.max(area[2], edges[i + 2] + TOLERANCE);
+        area[3] = Math.max(area[3], edges[i + 3] + TOLERANCE);
+    }
+
+    // edges of a ring sorted by minimum latitude, so the edges in a rectangle can be found
+    // without scanning the whole ring for each of its neighbours
+    private static class Edges {
+
+        private final float[] lat;
+        private final float[] lon;
+        private final long[] sorted;
+        private float tallest;
+
+        Edges(Ring ring) {
+            lat = ring.latitudes();
+            lon = ring.longitudes();
+            sorted = new long[lat.length];
+            for (int i = 0, j = lat.length - 1; i < lat.length; j = i++) {
+                sorted[i] = (long) sortable(Math.min(lat[i], lat[j])) << 32 | i;
+                tallest = Math.max(tallest, Math.abs(lat[i] - lat[j]));
+            }
+            Arrays.sort(sorted);
+        }
+
+        // bounding boxes of the edges that intersect a rectangle, and whether either end of the
+        // edge is inside the other ring, as five floats per edge
+        float[] within(Ring other, float minLat, float minLon, float maxLat, float maxLon) {
+            float[] edges = new float[64];
+            int n = 0;
+            int start = Arrays.binarySearch(sorted, (long) sortable(minLat - tallest) << 32);
+            for (int k = start < 0 ? -start - 1 : start; k < sorted.length; k++) {
+                int i = (int) sorted[k];
+                int j = i == 0 ? lat.length - 1 : i - 1;
+                float edgeMinLat = Math.min(lat[i], lat[j]);
+                if (edgeMinLat > maxLat) {
+                    break;
+                }
+                float edgeMinLon = Math.min(lon[i], lon[j]);
+                float edgeMaxLat = Math.max(lat[i], lat[j]);
+                float edgeMaxLon = Math.max(lon[i], lon[j]);
+                if (edgeMinLon <= maxLon && edgeMaxLat >= minLat && edgeMaxLon >= minLon) {
+                    if (n + 5 > edges.length) {
+                        edges = Arrays.copyOf(edges, edges.length * 2);
+                    }
+                    edges[n++] = edgeMinLat;
+                    edges[n++] = edgeMinLon;
+                    edges[n++] = edgeMaxLat;
+                    edges[n++] = edgeMaxLon;
+                    edges[n++] = other.contains(lat[i], lon[i]) || other.contains(lat[j], lon[j]) ? 1 : 0;
+                }
+            }
+            return Arrays.copyOf(edges, n);
+        }
+    }
+
+    FlatRTree tree() {
+        return tree;
+    }
+
+    /**
+     * Returns the polygons whose bounding box intersects the bounding box of a polygon.
+     *
+     * @param node node index of a polygon
+     * @return node indices of the neighbouring polygons in ascending order
+     */
+    int[] neighbours(int node) {
+        return neighbours[node];
+    }
+
+    /**
+     * Finds a polygon that comes before a polygon in tree order and also contains a coordinate.
+     *
+     * @param node node index of a polygon containing the coordinate
+     * @param lat  degrees latitude
+     * @param lon  degrees longitude
+     * @return node index of an earlier polygon containing the coordinate, or -1 if there is none
+     */
+    int earlierContaining(int node, float lat, float lon) {
+        int[] overlaps = this.overlaps[node];
+        float[] areas = overlapAreas[node];
+        int[] grid = overlapGrids[node];
+        if (grid == null) {
+            for (int k = 0; k < overlaps.length; k++) {
+                if (contains(overlaps[k], areas, k, lat, lon)) {
+                    return overlaps[k];
+                }
+            }
+        } else {
+            BoundingBox box = tree.polygon(node).boundingBox();
+            int cell = row(box, lat) * GRID + column(box, lon);
+            for (int i = grid[cell]; i < grid[cell + 1]; i++) {
+                int k = grid[GRID * GRID + 1 + i];
+                if (contains(overlaps[k], areas, k, lat, lon)) {
+                    return overlaps[k];
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean contains(int node, float[] areas, int k, float lat, float lon) {
+        int area = 4 * k;
+        return lat >= areas[area] && lon >= areas[area + 1] && lat <= areas[area + 2] && lon <= areas[area + 3]
+                && tree.contains(node, lat, lon);
+    }
+
+    long footprint() {
+        long bytes = Footprint.object(5) + 4 * Footprint.array(neighbours.length, (int) Footprint.REFERENCE);
+        for (int node = 0; node < neighbours.length; node++) {
+            bytes += neighbours[node] == NONE ? 0 : Footprint.array(neighbours[node].length, Integer.BYTES);
+            bytes += overlaps[node] == NONE ? 0 : Footprint.array(overlaps[node].length, Integer.BYTES)
+                    + Footprint.array(overlapAreas[node].length, Float.BYTES);
+            bytes += overlapGrids[node] == null ? 0 : Footprint.array(overlapGrids[node].length, Integer.BYTES);
+        }
+        return bytes;
+    }
+}
@@ -7,8 +7,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -19,25 +27,130 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 public class ReverseGeocoder {
 
     private final FeatureCollection featureCollection;
+    private final CountryLookup lookup;
+    private final GeohashIndex geohashes;
+    private final CountryDirectory directory;
+    private final CountryCache cache;
+    private final LookupStatistics statistics;
+    private final long footprint;
+    private final DatasetSource source;
+    private final long loadNanos;
+    private final long loadedVertices;
+    private volatile PolygonGraph graph;
 
     /**
      * Creates a new reverse geocoder. This is an expensive operation as the country boundary data
-     * is parsed each time the class constructed.
+     * is loaded each time the class constructed. The precompiled binary snapshot of the boundary
+     * data is used when it is on the classpath, otherwise the GeoJSON shapes are parsed.
      */
     public ReverseGeocoder() {
-        Class<?> cls = ReverseGeocoder.class;
-        try (
-                InputStream countryInfo = cls.getResourceAsStream("/countryInfo.txt");
-                InputStream shapes = cls.getResourceAsStream("/shapes_simplified_low.json")
-        ) {
-            featureCollection = load(countryInfo, shapes);
+        this(builder());
+    }
+
+    private ReverseGeocoder(Builder builder) {
+        long start = System.nanoTime();
+        source = builder.shapes == null ? DatasetSource.bundledShapes() : builder.shapes;
+        // rings that are converted after loading only get an edge index at the end, if at all
+        boolean convert = builder.tolerance > 0 || builder.resolution > 0;
+        FeatureCollection loaded = restrict(load(builder.countryInfo, source, !convert),
+                builder.isoCodes, builder.continents);
+        loadedVertices = loaded.vertexCount();
+        featureCollection = convert
+                ? loaded.mapRings(ring -> {
+                    Ring simplified = builder.tolerance > 0 ? ring.simplify(builder.tolerance) : ring;
+                    return builder.resolution > 0 ? simplified.quantize(builder.resolution) : simplified.indexEdges();
+                })
+                : loaded;
+        statistics = builder.statisticsName == null
+                ? null
+                : new LookupStatistics(featureCollection, builder.slowLookupNanos);
+        CountryLookup tree = statistics == null ? featureCollection : statistics.tree();
+        GridIndex grid = builder.gridDepth == 0
+                ? null
+                : new GridIndex(featureCollection.world(), tree, builder.gridDepth);
+        CountryLookup uncached = grid == null ? tree : grid;
+        geohashes = builder.geohashPrecision == 0
+                ? null
+                : new GeohashIndex(featureCollection.world(), uncached, builder.geohashPrecision);
+        cache = builder.cacheCapacity == 0
+                ? null
+                : new CountryCache(uncached, builder.cacheCapacity, builder.cachePrecision);
+        CountryLookup cached = cache == null ? uncached : cache;
+        lookup = statistics == null ? cached : statistics.wrap(cached, cache);
+        directory = new CountryDirectory(featureCollection);
+        footprint = featureCollection.footprint() + directory.footprint() + (grid == null ? 0 : grid.footprint())
+                + (geohashes == null ? 0 : geohashes.footprint()) + (cache == null ? 0 : cache.footprint());
+        if (statistics != null) {
+            // the grid and geohash table look up through the traced tree while they are built
+            statistics.reset();
+            statistics.register(builder.statisticsName);
+        }
+        loadNanos = System.nanoTime() - start;
+    }
+
+    ReverseGeocoder(FeatureCollection featureCollection) {
+        this.featureCollection = featureCollection;
+        this.lookup = featureCollection;
+        this.geohashes = null;
+        this.directory = new CountryDirectory(featureCollection);
+        this.cache = null;
+        this.statistics = null;
+        this.footprint = featureCollection.footprint() + directory.footprint();
+        this.source = null;
+        this.loadNanos = 0;
+        this.loadedVertices = featureCollection.vertexCount();
+    }
+
+    private static FeatureCollection load(DatasetSource countryInfo, DatasetSource shapes, boolean indexEdges) {
+        try {
+            Map<String, Country> countries = countryInfo == null ? loadCountries() : countryInfo.readCountries();
+            return shapes.readShapes(countries, indexEdges);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    private FeatureCollection load(InputStream countryInfo, InputStream shapes) throws IOException {
-        Map<String, Country> countries = Country.load(new InputStreamReader(countryInfo, UTF_8));
+    private static FeatureCollection restrict(FeatureCollection loaded, Set<String> isoCodes, Set<String> continents) {
+        if (isoCodes.isEmpty() && continents.isEmpty()) {
+            return loaded;
+        }
+        Set<String> unknown = new TreeSet<>(isoCodes);
+        for (int ordinal = 0; ordinal < loaded.countryCount(); ordinal++) {
+            unknown.remove(loaded.country(ordinal).iso());
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown ISO country codes: " + unknown);
+        }
+        return loaded.retain(country -> isoCodes.contains(country.iso()) || continents.contains(country.continent()));
+    }
+
+    /**
+     * Returns a builder for configuring optional features of the reverse geocoder.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    static Map<String, Country> loadCountries() throws IOException {
+        try (InputStream countryInfo = ReverseGeocoder.class.getResourceAsStream("/countryInfo.txt")) {
+            return Country.load(new InputStreamReader(countryInfo, UTF_8));
+        }
+    }
+
+    static FeatureCollection loadShapes(Map<String, Country> countries) throws IOException {
+        try (InputStream shapes = ReverseGeocoder.class.getResourceAsStream("/shapes_simplified_low.json")) {
+            return loadShapes(countries, shapes);
+        }
+    }
+
+    static FeatureCollection loadShapes(Map<String, Country> countries, InputStream shapes) throws IOException {
+        return GeoJsonReader.read(shapes, countries);
+    }
+
+    // binds the shapes to the annotated classes, which GeoJsonReader must reproduce exactly
+    static FeatureCollection bindShapes(Map<String, Country> countries, InputStream shapes) throws IOException {
         InjectableValues injectables = new InjectableValues.Std().addValue(Map.class, countries);
         return new ObjectMapper()
                 .readerFor(FeatureCollection.class)
@@ -64,11 +177,662 @@ public class ReverseGeocoder {
      * @return the country at the given coordinate
      */
     public Optional<Country> getCountry(float lat, float lon) {
-        return Optional.ofNullable(featureCollection.getCountry(lat, lon));
+        return Optional.ofNullable(lookupCountry(lat, lon));
+    }
+
+    /**
+     * Converts a coordinate into a country along with its distance to the nearest border or
+     * coastline of the matched shape. Only points close to a border can be misclassified by the
+     * simplified shapes, so callers can use the distance to decide which points need a second
+     * opinion. The distance is found with the latitude slab index of each ring and is only
+     * measured up to the given maximum, so for small maximums this costs little more than
+     * {@link #getCountry(double, double)}.
+     *
+     * <p>The country is the one {@link #getCountry(double, double)} returns, through the same cache, grid
+     * and lookup statistics. Where a cache answers differently from the shapes, which only happens
+     * within a cache cell of a border, the border distance is 0.
+     *
+     * @param lat           degrees latitude
+     * @param lon           degrees longitude
+     * @param maxDistanceKm distance in kilometres beyond which the border distance is not needed
+     * @return the country at the given coordinate and its distance to the border
+     * @throws IllegalArgumentException if the maximum distance is negative or NaN
+     */
+    public Optional<CountryMatch> getCountryMatch(double lat, double lon, double maxDistanceKm) {
+        return getCountryMatch((float) lat, (float) lon, maxDistanceKm);
+    }
+
+    /**
+     * Converts a coordinate into a country along with its distance to the nearest border or
+     * coastline of the matched shape. Only points close to a border can be misclassified by the
+     * simplified shapes, so callers can use the distance to decide which points need a second
+     * opinion. The distance is found with the latitude slab index of each ring and is only
+     * measured up to the given maximum, so for small maximums this costs little more than
+     * {@link #getCountry(float, float)}.
+     *
+     * <p>The country is the one {@link #getCountry(float, float)} returns, through the same cache, grid
+     * and lookup statistics. Where a cache answers differently from the shapes, which only happens
+     * within a cache cell of a border, the border distance is 0.
+     *
+     * @param lat           degrees latitude
+     * @param lon           degrees longitude
+     * @param maxDistanceKm distance in kilometres beyond which the border distance is not needed
+     * @return the country at the given coordinate and its distance to the border
+     * @throws IllegalArgumentException if the maximum distance is negative or NaN
+     */
+    public Optional<CountryMatch> getCountryMatch(float lat, float lon, double maxDistanceKm) {
+        if (!(maxDistanceKm >= 0)) {
+            throw new IllegalArgumentException("Maximum distance must not be negative: " + maxDistanceKm);
+        }
+        FlatRTree index = featureCollection.index();
+        int node = index.getPolygon(lat, lon);
+        Polygon polygon = node < 0 ? null : index.polygon(node);
+        // without a cache, grid or statistics the tree search has already answered the lookup
+        int ordinal = lookup == featureCollection
+                ? polygon == null ? -1 : FlatRTree.ordinal(polygon)
+                : lookup.getCountryOrdinal(lat, lon);
+        if (ordinal < 0) {
+            return Optional.empty();
+        }
+        if (polygon == null || polygon.country() != ordinal) {
+            return Optional.of(new CountryMatch(featureCollection.country(ordinal), 0));
+        }
+        double bound = Math.nextUp(GreatCircle.toRadians(maxDistanceKm));
+        double distance = polygon.distance(lat, lon, bound);
+        return Optional.of(new CountryMatch(featureCollection.country(ordinal),
+                distance < bound ? GreatCircle.toKm(distance) : Double.POSITIVE_INFINITY));
+    }
+
+    /**
+     * Converts a coordinate into a country, or if it is not in a country, the country with the
+     * nearest border within a maximum great-circle distance. This finds the country for points
+     * just off the simplified coastlines, such as ports and beaches. The search only measures the
+     * distance to the borders of countries whose bounding boxes are within range, so the cost
+     * grows with the maximum distance.
+     *
+     * @param lat           degrees latitude
+     * @param lon           degrees longitude
+     * @param maxDistanceKm maximum distance to the border in kilometres
+     * @return the country at or nearest to the given coordinate
+     * @throws IllegalArgumentException if the maximum distance is negative or NaN
+     */
+    public Optional<Country> getNearestCountry(double lat, double lon, double maxDistanceKm) {
+        return getNearestCountry((float) lat, (float) lon, maxDistanceKm);
+    }
+
+    /**
+     * Converts a coordinate into a country, or if it is not in a country, the country with the
+     * nearest border within a maximum great-circle distance. This finds the country for points
+     * just off the simplified coastlines, such as ports and beaches. The search only measures the
+     * distance to the borders of countries whose bounding boxes are within range, so the cost
+     * grows with the maximum distance.
+     *
+     * @param lat           degrees latitude
+     * @param lon           degrees longitude
+     * @param maxDistanceKm maximum distance to the border in kilometres
+     * @return the country at or nearest to the given coordinate
+     * @throws IllegalArgumentException if the maximum distance is negative or NaN
+     */
+    public Optional<Country> getNearestCountry(float lat, float lon, double maxDistanceKm) {
+        if (!(maxDistanceKm >= 0)) {
+            throw new IllegalArgumentException("Maximum distance must not be negative: " + maxDistanceKm);
+        }
+        Country country = lookupCountry(lat, lon);
+        if (country != null || !(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            return Optional.ofNullable(country);
+        }
+        FlatRTree index = featureCollection.index();
+        int nearest = index.getNearestPolygon(lat, lon, GreatCircle.toRadians(maxDistanceKm));
+        return Optional.ofNullable(nearest < 0 ? null : featureCollection.country(index.polygon(nearest).country()));
+    }
+
+    /**
+     * Converts a geohash into the country at the centre of its cell, so that data keyed by geohash
+     * does not have to be decoded to coordinates first. With {@link Builder#geohash(int)} most
+     * geohashes are answered from a precomputed prefix table without testing any polygons, and
+     * the result is the same either way.
+     *
+     * @param geohash 1 to 12 characters of the geohash alphabet, in either case
+     * @return the country at the centre of the cell
+     * @throws IllegalArgumentException if the geohash is empty, too long or has a character outside
+     *                                  the alphabet
+     */
+    public Optional<Country> getCountryByGeohash(String geohash) {
+        return getCountryByGeohash(GeohashIndex.parse(geohash));
+    }
+
+    /**
+     * Converts a packed geohash into the country at the centre of its cell without allocating.
+     * The long holds the five bits of each character, first character most significant, shifted
+     * left by four bits with the number of characters, from 1 to 12, in the low four bits.
+     *
+     * @param geohash packed geohash
+     * @return the country at the centre of the cell
+     * @throws IllegalArgumentException if the length is out of range or there are bits above the
+     *                                  last character
+     * @see #getCountryByGeohash(String)
+     */
+    public Optional<Country> getCountryByGeohash(long geohash) {
+        int ordinal = getCountryOrdinalByGeohash(geohash);
+        return Optional.ofNullable(ordinal < 0 ? null : featureCollection.country(ordinal));
+    }
+
+    /**
+     * Converts a geohash into the ordinal of the country at the centre of its cell.
+     *
+     * @param geohash 1 to 12 characters of the geohash alphabet, in either case
+     * @return country ordinal, or -1 if the centre is not in a country
+     * @throws IllegalArgumentException if the geohash is empty, too long or has a character outside
+     *                                  the alphabet
+     * @see #getCountryByGeohash(String)
+     */
+    public int getCountryOrdinalByGeohash(String geohash) {
+        return getCountryOrdinalByGeohash(GeohashIndex.parse(geohash));
+    }
+
+    /**
+     * Converts a packed geohash into the ordinal of the country at the centre of its cell.
+     *
+     * @param geohash packed geohash
+     * @return country ordinal, or -1 if the centre is not in a country
+     * @throws IllegalArgumentException if the length is out of range or there are bits above the
+     *                                  last character
+     * @see #getCountryByGeohash(long)
+     */
+    public int getCountryOrdinalByGeohash(long geohash) {
+        return geohashes == null
+                ? GeohashIndex.centreOrdinal(geohash, lookup)
+                : geohashes.getCountryOrdinal(geohash);
+    }
+
+    /**
+     * Writes the geohash prefix table as CSV with a {@code geohash,iso,exact} header, for joining
+     * geohash keyed data to countries in a database. There is a row for each cell of the table
+     * that is in a country, in geohash order. Rows with {@code exact} set to {@code true} are cells
+     * that no border crosses; rows with {@code false} are cells at the table's precision that a
+     * border crosses, labelled with the country at their centre. Cells at sea have no row. A
+     * geohash at least as long as the precision starts with at most one of the prefixes.
+     *
+     * @param out destination of the rows, which is not closed
+     * @throws IOException           if the rows cannot be written
+     * @throws IllegalStateException if the prefix table is not enabled
+     * @see Builder#geohash(int)
+     */
+    public void writeGeohashTable(Appendable out) throws IOException {
+        if (geohashes == null) {
+            throw new IllegalStateException("The geohash prefix table is not enabled");
+        }
+        String[] isoCodes = new String[featureCollection.countryCount()];
+        for (int ordinal = 0; ordinal < isoCodes.length; ordinal++) {
+            isoCodes[ordinal] = featureCollection.country(ordinal).iso();
+        }
+        geohashes.write(out, isoCodes);
+    }
+
+    /**
+     * Finds the countries that a latitude and longitude rectangle, such as a map viewport, has any
+     * point in common with. Only polygons whose bounding boxes overlap the rectangle are tested,
+     * and each is tested exactly: whether it lies in the rectangle, its border crosses the
+     * rectangle or it covers the rectangle. Polygons of a country that has already been found are
+     * skipped, so the cost is mostly in the borders within the rectangle.
+     *
+     * <p>A rectangle whose western longitude is greater than its eastern longitude crosses the
+     * antimeridian.
+     *
+     * @param south minimum degrees latitude
+     * @param west  western edge in degrees longitude
+     * @param north maximum degrees latitude
+     * @param east  eastern edge in degrees longitude
+     * @return the intersecting countries, in ordinal order
+     * @throws IllegalArgumentException if a coordinate is out of range or south is north of north
+     */
+    public Set<Country> getCountriesInBox(double south, double west, double north, double east) {
+        if (!(south >= -90 && north <= 90 && south <= north)) {
+            throw new IllegalArgumentException("Invalid latitude range: " + south + " to " + north);
+        }
+        if (!(west >= -180 && west <= 180 && east >= -180 && east <= 180)) {
+            throw new IllegalArgumentException("Invalid longitude range: " + west + " to " + east);
+        }
+        boolean[] found = new boolean[featureCollection.countryCount()];
+        if (west <= east) {
+            findInBox(south, west, north, east, found);
+        } else {
+            findInBox(south, west, north, 180, found);
+            findInBox(south, -180, north, east, found);
+        }
+        return countrySet(found);
+    }
+
+    /**
+     * Finds the countries within a great-circle distance of a coordinate, such as those a delivery
+     * radius reaches. Only polygons whose bounding boxes are within the distance are tested, and
+     * each is tested exactly: whether it has a vertex within the distance, contains the coordinate
+     * or has an edge within the distance. Polygons of a country that has already been found are
+     * skipped. Radiuses up to a few hundred kilometres take microseconds, but the cost grows with
+     * the radius, as large countries that are out of reach are only ruled out by measuring their
+     * borders.
+     *
+     * @param lat      degrees latitude
+     * @param lon      degrees longitude
+     * @param radiusKm distance in kilometres
+     * @return the countries within the distance, in ordinal order
+     * @throws IllegalArgumentException if the coordinate is out of range or the distance is
+     *                                  negative or NaN
+     */
+    public Set<Country> getCountriesWithin(double lat, double lon, double radiusKm) {
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            throw new IllegalArgumentException("Invalid coordinate: " + lat + "," + lon);
+        }
+        if (!(radiusKm >= 0)) {
+            throw new IllegalArgumentException("Radius must not be negative: " + radiusKm);
+        }
+        double radius = GreatCircle.toRadians(radiusKm);
+        boolean[] found = new boolean[featureCollection.countryCount()];
+        FlatRTree index = featureCollection.index();
+        index.forEachPolygon(lat, lon, radius, node -> {
+            Polygon polygon = index.polygon(node);
+            if (!found[polygon.country()] && polygon.within(lat, lon, radius)) {
+                found[polygon.country()] = true;
+            }
+        });
+        return countrySet(found);
+    }
+
+    private void findInBox(double south, double west, double north, double east, boolean[] found) {
+        FlatRTree index = featureCollection.index();
+        index.forEachPolygon(Math.nextDown((float) south), Math.nextDown((float) west),
+                Math.nextUp((float) north), Math.nextUp((float) east), node -> {
+                    Polygon polygon = index.polygon(node);
+                    if (polygon.country() >= 0 && !found[polygon.country()]
+                            && polygon.intersects(south, west, north, east)) {
+                        found[polygon.country()] = true;
+                    }
+                });
+    }
+
+    private Set<Country> countrySet(boolean[] found) {
+        Set<Country> countries = new LinkedHashSet<>();
+        for (int ordinal = 0; ordinal < found.length; ordinal++) {
+            if (found[ordinal]) {
+                countries.add(featureCollection.country(ordinal));
+            }
+        }
+        return countries;
     }
 
     /**
-     * Returns all the countries recognised by the reverse geocoder.
+     * Converts a batch of coordinates into countries without allocating per coordinate. The
+     * country for {@code lat[i]} and {@code lon[i]} is written to {@code countries[i]}, or
+     * {@code null} if the coordinate is not in a country.
+     *
+     * @param lat       degrees latitude
+     * @param lon       degrees longitude
+     * @param offset    index of the first coordinate to convert
+     * @param length    number of coordinates to convert
+     * @param countries output array for the countries
+     * @throws IndexOutOfBoundsException if the range is outside any of the arrays
+     */
+    public void getCountries(double[] lat, double[] lon, int offset, int length, Country[] countries) {
+        checkRange(offset, length, lat.length, lon.length, countries.length);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            countries[i] = lookupCountry((float) lat[i], (float) lon[i]);
+        }
+    }
+
+    /**
+     * Converts a batch of coordinates into countries without allocating per coordinate. The
+     * country for {@code lat[i]} and {@code lon[i]} is written to {@code countries[i]}, or
+     * {@code null} if the coordinate is not in a country.
+     *
+     * @param lat       degrees latitude
+     * @param lon       degrees longitude
+     * @param offset    index of the first coordinate to convert
+     * @param length    number of coordinates to convert
+     * @param countries output array for the countries
+     * @throws IndexOutOfBoundsException if the range is outside any of the arrays
+     */
+    public void getCountries(float[] lat, float[] lon, int offset, int length, Country[] countries) {
+        checkRange(offset, length, lat.length, lon.length, countries.length);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            countries[i] = lookupCountry(lat[i], lon[i]);
+        }
+    }
+
+    /**
+     * Converts a batch of coordinates into countries in parallel. The batch is sorted into
+     * spatially coherent chunks that are geocoded as separate tasks on the executor, for example
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and this method blocks until all of
+     * them have completed. The country for {@code lat[i]} and {@code lon[i]} is written to
+     * {@code countries[i]}, or {@code null} if the coordinate is not in a country. Nearby
+     * coordinates descend the tree together, so with an executor of {@code Runnable::run} this
+     * converts large batches on the calling thread faster than the batch methods that do not take
+     * an executor, in exchange for working arrays the size of the batch.
+     *
+     * @param lat       degrees latitude
+     * @param lon       degrees longitude
+     * @param offset    index of the first coordinate to convert
+     * @param length    number of coordinates to convert
+     * @param countries output array for the countries
+     * @param executor  executor to run the tasks on
+     * @throws IndexOutOfBoundsException if the range is outside any of the arrays
+     */
+    public void getCountries(double[] lat, double[] lon, int offset, int length, Country[] countries,
+                             Executor executor) {
+        checkRange(offset, length, lat.length, lon.length, countries.length);
+        ParallelBatch.run(coordinates(lat, lon), offset, length, lookup,
+                (i, ordinal) -> countries[i] = ordinal < 0 ? null : featureCollection.country(ordinal), executor);
+    }
+
+    /**
+     * Converts a batch of coordinates into countries in parallel. The batch is sorted into
+     * spatially coherent chunks that are geocoded as separate tasks on the executor, for example
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and this method blocks until all of
+     * them have completed. The country for {@code lat[i]} and {@code lon[i]} is written to
+     * {@code countries[i]}, or {@code null} if the coordinate is not in a country. Nearby
+     * coordinates descend the tree together, so with an executor of {@code Runnable::run} this
+     * converts large batches on the calling thread faster than the batch methods that do not take
+     * an executor, in exchange for working arrays the size of the batch.
+     *
+     * @param lat       degrees latitude
+     * @param lon       degrees longitude
+     * @param offset    index of the first coordinate to convert
+     * @param length    number of coordinates to convert
+     * @param countries output array for the countries
+     * @param executor  executor to run the tasks on
+     * @throws IndexOutOfBoundsException if the range is outside any of the arrays
+     */
+    public void getCountries(float[] lat, float[] lon, int offset, int length, Country[] countries,
+                             Executor executor) {
+        checkRange(offset, length, lat.length, lon.length, countries.length);
+        ParallelBatch.run(coordinates(lat, lon), offset, length, lookup,
+                (i, ordinal) -> countries[i] = ordinal < 0 ? null : featureCollection.country(ordinal), executor);
+    }
+
+    /**
+     * Converts a coordinate into a country ordinal without allocating.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return the {@link Country#ordinal() ordinal} of the country at the given coordinate, or -1
+     * if the coordinate is not in a country
+     */
+    public int getCountryOrdinal(double lat, double lon) {
+        return getCountryOrdinal((float) lat, (float) lon);
+    }
+
+    /**
+     * Converts a coordinate into a country ordinal without allocating.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return the {@link Country#ordinal() ordinal} of the country at the given coordinate, or -1
+     * if the coordinate is not in a country
+     */
+    public int getCountryOrdinal(float lat, float lon) {
+        return lookup.getCountryOrdinal(lat, lon);
+    }
+
+    /**
+     * Converts a batch of coordinates into country ordinals without allocating per coordinate. The
+     * ordinal for {@code lat[i]} and {@code lon[i]} is written to {@code ordinals[i]}, or -1 if
+     * the coordinate is not in a country.
+     *
+     * @param lat      degrees latitude
+     * @param lon      degrees longitude
+     * @param offset   index of the first coordinate to convert
+     * @param length   number of coordinates to convert
+     * @param ordinals output array for the country ordinals
+     * @throws IndexOutOfBoundsException if the range is outside any of the arrays
+     */
+    public void getCountryOrdinals(double[] lat, double[] lon, int offset, int length, short[] ordinals) {
+        checkRange(offset, length, lat.length, lon.length, ordinals.length);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            ordinals[i] = (short) lookup.getCountryOrdinal((float) lat[i], (float) lon[i]);
+        }
+    }
+
+    /**
+     * Converts a batch of coordinates into country ordinals without allocating per coordinate. The
+     * ordinal for {@code lat[i]} and {@code lon[i]} is written to {@code ordinals[i]}, or -1 if
+     * the coordinate is not in a country.
+     *
+     * @param lat      degrees latitude
+     * @param lon      degrees longitude
+     * @param offset   index of the first coordinate to convert
+     * @param length   number of coordinates to convert
+     * @param ordinals output array for the country ordinals
+     * @throws IndexOutOfBoundsException if the range is outside any of the arrays
+     */
+    public void getCountryOrdinals(float[] lat, float[] lon, int offset, int length, short[] ordinals) {
+        checkRange(offset, length, lat.length, lon.length, ordinals.length);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            ordinals[i] = (short) lookup.getCountryOrdinal(lat[i], lon[i]);
+        }
+    }
+
+    /**
+     * Converts a batch of coordinates into country ordinals in parallel. The batch is sorted into
+     * spatially coherent chunks that are geocoded as separate tasks on the executor, for example
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and this method blocks until all of
+     * them have completed. The ordinal for {@code lat[i]} and {@code lon[i]} is written to
+     * {@code ordinals[i]}, or -1 if the coordinate is not in a country. Nearby coordinates descend
+     * the tree together, so with an executor of {@code Runnable::run} this converts large batches
+     * on the calling thread faster than the batch methods that do not take an executor, in exchange
+     * for working arrays the size of the batch.
+     *
+     * @param lat      degrees latitude
+     * @param lon      degrees longitude
+     * @param offset   index of the first coordinate to convert
+     * @param length   number of coordinates to convert
+     * @param ordinals output array for the country ordinals
+     * @param executor executor to run the tasks on
+     * @throws IndexOutOfBoundsException if the range is outside any of the arrays
+     */
+    public void getCountryOrdinals(double[] lat, double[] lon, int offset, int length, short[] ordinals,
+                                   Executor executor) {
+        checkRange(offset, length, lat.length, lon.length, ordinals.length);
+        ParallelBatch.run(coordinates(lat, lon), offset, length, lookup,
+                (i, ordinal) -> ordinals[i] = (short) ordinal, executor);
+    }
+
+    /**
+     * Converts a batch of coordinates into country ordinals in parallel. The batch is sorted into
+     * spatially coherent chunks that are geocoded as separate tasks on the executor, for example
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()}, and this method blocks until all of
+     * them have completed. The ordinal for {@code lat[i]} and {@code lon[i]} is written to
+     * {@code ordinals[i]}, or -1 if the coordinate is not in a country. Nearby coordinates descend
+     * the tree together, so with an executor of {@code Runnable::run} this converts large batches
+     * on the calling thread faster than the batch methods that do not take an executor, in exchange
+     * for working arrays the size of the batch.
+     *
+     * @param lat      degrees latitude
+     * @param lon      degrees longitude
+     * @param offset   index of the first coordinate to convert
+     * @param length   number of coordinates to convert
+     * @param ordinals output array for the country ordinals
+     * @param executor executor to run the tasks on
+     * @throws IndexOutOfBoundsException if the range is outside any of the arrays
+     */
+    public void getCountryOrdinals(float[] lat, float[] lon, int offset, int length, short[] ordinals,
+                                   Executor executor) {
+        checkRange(offset, length, lat.length, lon.length, ordinals.length);
+        ParallelBatch.run(coordinates(lat, lon), offset, length, lookup,
+                (i, ordinal) -> ordinals[i] = (short) ordinal, executor);
+    }
+
+    /**
+     * Returns the country with the given ordinal in constant time.
+     *
+     * @param ordinal country ordinal, from zero to {@link #countryCount()} - 1
+     * @return the country
+     * @throws IndexOutOfBoundsException if the ordinal is out of range
+     */
+    public Country country(int ordinal) {
+        return featureCollection.country(ordinal);
+    }
+
+    /**
+     * Returns the directory for finding countries by their ISO alpha-2, alpha-3 or numeric codes
+     * in constant time, which returns the same instances as the lookups. Like
+     * {@link #country(int)}, it has every country in the country information, including those left
+     * out by {@link Builder#countries(String...)} or {@link Builder#continents(String...)}.
+     *
+     * @return directory of all countries
+     */
+    public CountryDirectory directory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of country ordinals, which is one more than the largest ordinal.
+     *
+     * @return number of countries in the country information
+     */
+    public int countryCount() {
+        return featureCollection.countryCount();
+    }
+
+    /**
+     * Returns an estimate of the heap retained by the country boundaries and the indexes built over
+     * them, for comparing the memory cost of the builder options.
+     *
+     * @return size in bytes
+     */
+    public long footprint() {
+        return footprint;
+    }
+
+    /**
+     * Returns the number of ring vertices the reverse geocoder tests, including the closing vertex
+     * of each ring.
+     *
+     * @return vertex count, after simplification if it is enabled
+     * @see Builder#simplify(double)
+     */
+    public long vertexCount() {
+        return featureCollection.vertexCount();
+    }
+
+    /**
+     * Returns the number of ring vertices in the shapes as they were read, before any
+     * simplification.
+     *
+     * @return vertex count of the shapes
+     * @see Builder#simplify(double)
+     */
+    public long loadedVertexCount() {
+        return loadedVertices;
+    }
+
+    /**
+     * Returns how long the reverse geocoder took to create, from reading the boundary data to
+     * building the optional indexes.
+     *
+     * @return load time in nanoseconds
+     */
+    public long loadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * Creates a lookup session for a trace of nearby coordinates, which tests the polygon found for
+     * the previous coordinate and its neighbours before searching the whole tree. The first call
+     * builds the polygon adjacency graph shared by all sessions of this reverse geocoder, which
+     * takes a few hundred milliseconds and about 1.5 MB; after that, sessions are cheap enough to
+     * create per thread or per trace. Sessions bypass the grid and the cache.
+     *
+     * @return new session, which must not be shared between threads
+     */
+    public TrajectorySession newSession() {
+        PolygonGraph graph = this.graph;
+        if (graph == null) {
+            synchronized (this) {
+                graph = this.graph;
+                if (graph == null) {
+                    graph = new PolygonGraph(featureCollection.index());
+                    this.graph = graph;
+                }
+            }
+        }
+        return new TrajectorySession(featureCollection, graph);
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache since the reverse geocoder was created.
+     *
+     * @return cache hits, or 0 if the cache is not enabled
+     * @see Builder#cache(int, double)
+     */
+    public long cacheHits() {
+        return cache == null ? 0 : cache.hits();
+    }
+
+    /**
+     * Returns the number of lookups that went past the cache since the reverse geocoder was
+     * created, excluding invalid coordinates which are never cached.
+     *
+     * @return cache misses, or 0 if the cache is not enabled
+     * @see Builder#cache(int, double)
+     */
+    public long cacheMisses() {
+        return cache == null ? 0 : cache.misses();
+    }
+
+    /**
+     * Returns the lookup statistics, which are also published as an MXBean.
+     *
+     * @return the statistics, or empty if instrumentation is not enabled
+     * @see Builder#instrument(String, long)
+     */
+    public Optional<LookupStatisticsMXBean> statistics() {
+        return Optional.ofNullable(statistics);
+    }
+
+    private Country lookupCountry(float lat, float lon) {
+        int ordinal = lookup.getCountryOrdinal(lat, lon);
+        return ordinal < 0 ? null : featureCollection.country(ordinal);
+    }
+
+    private static ParallelBatch.Coordinates coordinates(double[] lat, double[] lon) {
+        return new ParallelBatch.Coordinates() {
+            @Override
+            public float latitude(int index) {
+                return (float) lat[index];
+            }
+
+            @Override
+            public float longitude(int index) {
+                return (float) lon[index];
+            }
+        };
+    }
+
+    private static ParallelBatch.Coordinates coordinates(float[] lat, float[] lon) {
+        return new ParallelBatch.Coordinates() {
+            @Override
+            public float latitude(int index) {
+                return lat[index];
+            }
+
+            @Override
+            public float longitude(int index) {
+                return lon[index];
+            }
+        };
+    }
+
+    private static void checkRange(int offset, int length, int... arrayLengths) {
+        for (int arrayLength : arrayLengths) {
+            if (offset < 0 || length < 0 || offset > arrayLength - length) {
+                throw new IndexOutOfBoundsException(
+                        "offset=" + offset + " length=" + length + " arrayLength=" + arrayLength);
+            }
+        }
+    }
+
+    /**
+     * Returns all the countries recognised by the reverse geocoder, which are only the selected
+     * ones when it is restricted to some countries or continents.
      *
      * @return stream of countries
      */
@@ -76,4 +840,328 @@ public class ReverseGeocoder {
         return featureCollection.countries();
     }
 
+    /**
+     * Describes the shapes the reverse geocoder was loaded from, its size and how long it took to
+     * load, for logging when several reverse geocoders with different datasets are in use.
+     *
+     * @return summary such as
+     * {@code ReverseGeocoder[shapes=classpath:/shapes_simplified_low.bin, polygons=22485, vertices=189505, footprint=14.7 MB, loaded in 117 ms]}
+     */
+    @Override
+    public String toString() {
+        long vertices = vertexCount();
+        return String.format("ReverseGeocoder[shapes=%s, polygons=%d, vertices=%d%s, footprint=%.1f MB, loaded in %d ms]",
+                source, featureCollection.index().size(), vertices,
+                vertices == loadedVertices ? "" : " of " + loadedVertices,
+                footprint / 1e6, loadNanos / 1_000_000);
+    }
+
+    /**
+     * Builder for a {@link ReverseGeocoder} with optional features enabled.
+     */
+    public static class Builder {
+
+        private static final Set<String> CONTINENTS =
+                new HashSet<>(Arrays.asList("AF", "AN", "AS", "EU", "NA", "OC", "SA"));
+
+        private int gridDepth;
+        private int geohashPrecision;
+        private double resolution;
+        private double tolerance;
+        private int cacheCapacity;
+        private double cachePrecision;
+        private String statisticsName;
+        private long slowLookupNanos;
+        private DatasetSource countryInfo;
+        private DatasetSource shapes;
+        private final Set<String> isoCodes = new HashSet<>();
+        private final Set<String> continents = new HashSet<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Reads the country information from a file in the format of the GeoNames
+         * {@code countryInfo.txt}, instead of the bundled copy. Shapes are matched to countries by
+         * their GeoNames ids, so custom country information must keep the ids of the shapes.
+         *
+         * @param path tab separated country information
+         * @return this builder
+         * @throws IllegalArgumentException if the path is null
+         */
+        public Builder countryInfo(Path path) {
+            countryInfo = DatasetSource.path(path);
+            return this;
+        }
+
+        /**
+         * Reads the country information from a channel, from its current position to its end, when
+         * the reverse geocoder is built. The channel is not closed, and a file channel is memory
+         * mapped rather than read.
+         *
+         * @param channel tab separated country information
+         * @return this builder
+         * @throws IllegalArgumentException if the channel is null
+         * @see #countryInfo(Path)
+         */
+        public Builder countryInfo(ReadableByteChannel channel) {
+            countryInfo = DatasetSource.channel(channel);
+            return this;
+        }
+
+        /**
+         * Reads the country boundaries from a file instead of the bundled low resolution shapes,
+         * for example the GeoNames {@code shapes_all_low.txt} where accuracy matters more than
+         * memory. The file may be a GeoJSON feature collection in the format of
+         * {@code shapes_simplified_low.json}, the GeoNames table of one GeoJSON geometry per line,
+         * or a binary snapshot written by the build, and is memory mapped while it is parsed so
+         * that large files are not copied onto the heap.
+         *
+         * <p>Each reverse geocoder holds its own boundaries, so several built from different
+         * shapes can be used side by side.
+         *
+         * @param path country boundaries
+         * @return this builder
+         * @throws IllegalArgumentException if the path is null
+         */
+        public Builder shapes(Path path) {
+            shapes = DatasetSource.path(path);
+            return this;
+        }
+
+        /**
+         * Reads the country boundaries from a channel, from its current position to its end, when
+         * the reverse geocoder is built. The channel is not closed, and a file channel is memory
+         * mapped rather than read.
+         *
+         * @param channel country boundaries
+         * @return this builder
+         * @throws IllegalArgumentException if the channel is null
+         * @see #shapes(Path)
+         */
+        public Builder shapes(ReadableByteChannel channel) {
+            shapes = DatasetSource.channel(channel);
+            return this;
+        }
+
+        /**
+         * Precomputes a quadtree over the world that answers points in cells lying entirely inside a
+         * country, or entirely outside all countries, without testing any polygons. Each level halves
+         * the cell size, so the resolution is 180/2<sup>depth</sup> degrees of latitude by
+         * 360/2<sup>depth</sup> degrees of longitude. Memory and build time roughly double with each
+         * level as they are dominated by the cells along borders and coastlines.
+         *
+         * @param depth number of quadtree levels, from 1 to 16
+         * @return this builder
+         * @throws IllegalArgumentException if the depth is out of range
+         */
+        public Builder grid(int depth) {
+            if (depth < 1 || depth > GridIndex.MAX_DEPTH) {
+                throw new IllegalArgumentException("Grid depth must be between 1 and " + GridIndex.MAX_DEPTH + ": " + depth);
+            }
+            gridDepth = depth;
+            return this;
+        }
+
+        /**
+         * Precomputes a table of geohash prefixes from the country borders, so that
+         * {@link ReverseGeocoder#getCountryByGeohash(String)} and its variants answer geohashes in
+         * cells lying entirely inside a country, or entirely outside all countries, by walking
+         * their characters. Only geohashes in cells that a border crosses at the given precision
+         * are tested against the polygons at the centre of their cell. The table can be exported
+         * with {@link ReverseGeocoder#writeGeohashTable(Appendable)}.
+         *
+         * <p>Memory and build time grow about eightfold with each character: precision 5 (cells
+         * of about 4.9 by 4.9 km) takes 6.4 MB and a little over a second, and precision 6 (1.2
+         * by 0.6 km) takes 52 MB and several seconds.
+         *
+         * @param precision number of geohash characters, from 1 to 6
+         * @return this builder
+         * @throws IllegalArgumentException if the precision is out of range
+         */
+        public Builder geohash(int precision) {
+            if (precision < 1 || precision > GeohashIndex.MAX_PRECISION) {
+                throw new IllegalArgumentException("Geohash precision must be between 1 and "
+                        + GeohashIndex.MAX_PRECISION + ": " + precision);
+            }
+            geohashPrecision = precision;
+            return this;
+        }
+
+        /**
+         * Restricts the reverse geocoder to the given countries, leaving the shapes of every
+         * other country out of memory and out of the R-tree, so the footprint and the depth of
+         * the tree shrink with the selection. Points in any other country are treated like points
+         * at sea: {@code getCountry} returns empty, which {@link Optional#orElse(Object)} can turn
+         * into a value of the caller's choosing, and the ordinal methods return -1. Ordinals are
+         * the same as without the restriction.
+         *
+         * <p>Can be combined with {@link #continents(String...)}, in which case a country is
+         * kept if either selects it.
+         *
+         * @param isoCodes ISO 3166 alpha-2 codes of the countries to keep
+         * @return this builder
+         * @throws IllegalArgumentException if no codes are given; unknown codes are rejected by
+         *                                  {@link #build()}
+         */
+        public Builder countries(String... isoCodes) {
+            if (isoCodes.length == 0) {
+                throw new IllegalArgumentException("At least one ISO country code is required");
+            }
+            this.isoCodes.addAll(Arrays.asList(isoCodes));
+            return this;
+        }
+
+        /**
+         * Restricts the reverse geocoder to the countries on the given continents, as reported by
+         * {@link Country#continent()}. Points elsewhere are treated as described for
+         * {@link #countries(String...)}.
+         *
+         * @param continents two letter continent codes: AF, AN, AS, EU, NA, OC or SA
+         * @return this builder
+         * @throws IllegalArgumentException if no codes are given or a code is not a continent
+         */
+        public Builder continents(String... continents) {
+            if (continents.length == 0) {
+                throw new IllegalArgumentException("At least one continent code is required");
+            }
+            for (String continent : continents) {
+                if (!CONTINENTS.contains(continent)) {
+                    throw new IllegalArgumentException("Unknown continent code: " + continent);
+                }
+            }
+            this.continents.addAll(Arrays.asList(continents));
+            return this;
+        }
+
+        /**
+         * Simplifies every ring, including holes, with the Douglas-Peucker algorithm when the
+         * shapes are loaded, dropping the vertices that are within the tolerance of the simplified
+         * border. Lookups test fewer edges in exchange for borders that move by up to the
+         * tolerance, so only points that close to a border can be classified differently. Rings
+         * keep at least three distinct vertices, so no island or hole disappears. The vertex counts
+         * before and after are reported by {@link ReverseGeocoder#loadedVertexCount()} and
+         * {@link ReverseGeocoder#vertexCount()}.
+         *
+         * <p>A ring whose simplified version would cross or touch itself is kept as it was, so
+         * every simplified ring is simple. Rings are not checked against each other, so within
+         * the tolerance of a border a simplified ring can still cross a neighbouring country's
+         * ring or one of its own holes. Where two countries then overlap, the first in tree order
+         * claims the point, and gaps between them are in no country. Points further than the
+         * tolerance from every original border are unaffected.
+         *
+         * <p>The bundled shapes are already simplified to 0.001 degree precision, so tolerances
+         * below that change little; 0.01 degrees is about 1.1 km.
+         *
+         * @param tolerance maximum distance in degrees of a dropped vertex from the simplified
+         *                  border
+         * @return this builder
+         * @throws IllegalArgumentException if the tolerance is not positive
+         */
+        public Builder simplify(double tolerance) {
+            if (!(tolerance > 0) || Double.isInfinite(tolerance)) {
+                throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+            }
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Stores ring vertices as fixed point offsets from each ring's bounding box, rounded to
+         * multiples of the resolution, instead of as floats. Offsets take 16 bits for rings spanning
+         * up to 65535 steps and 32 bits otherwise, and large rings are tested without the edge index,
+         * which trades lookup speed on long borders for a much smaller heap.
+         *
+         * <p>Rounding moves each vertex by at most half the resolution in latitude and longitude, so
+         * only points within one resolution step of a border can be classified differently. The
+         * bundled shapes have 0.001 degree precision, so a resolution of 0.001 loses no detail.
+         *
+         * @param resolution step size in degrees, at least 0.000001 so that offsets across the
+         *                   whole world fit in 32 bits
+         * @return this builder
+         * @throws IllegalArgumentException if the resolution is below the minimum or not finite
+         */
+        public Builder fixedPointVertices(double resolution) {
+            if (!(resolution >= FixedPointVertices.MIN_RESOLUTION) || Double.isInfinite(resolution)) {
+                throw new IllegalArgumentException("Resolution must be at least "
+                        + FixedPointVertices.MIN_RESOLUTION + " and finite: " + resolution);
+            }
+            this.resolution = resolution;
+            return this;
+        }
+
+        /**
+         * Caches lookup results for coordinates snapped to cells of the given size, including
+         * coordinates outside every country. The cache holds up to the capacity rounded up to a
+         * power of two cells in a lock free table where each cell can only occupy one slot, so a
+         * cell evicts whichever cell was previously stored in its slot. Hits and misses are
+         * reported by {@link ReverseGeocoder#cacheHits()} and {@link ReverseGeocoder#cacheMisses()}.
+         *
+         * <p>The answer for a cell is the country of the first coordinate looked up in it, so
+         * cached answers are exact for cells lying entirely inside one country or entirely outside
+         * all countries, and can only differ from uncached ones within one cell of a border. A
+         * precision of 0.0001 degrees is about 11 metres.
+         *
+         * @param capacity  maximum number of cached cells
+         * @param precision cell size in degrees, at least 360/2<sup>24</sup> (about 2.1e-5)
+         * @return this builder
+         * @throws IllegalArgumentException if the capacity is not positive or too large, or the
+         *                                  precision is too small
+         */
+        public Builder cache(int capacity, double precision) {
+            if (capacity < 1 || capacity > 1 << 30) {
+                throw new IllegalArgumentException("Cache capacity must be between 1 and " + (1 << 30) + ": " + capacity);
+            }
+            if (!(precision >= CountryCache.MIN_PRECISION) || Double.isInfinite(precision)) {
+                throw new IllegalArgumentException("Cache precision must be at least " + CountryCache.MIN_PRECISION + ": " + precision);
+            }
+            cacheCapacity = capacity;
+            cachePrecision = precision;
+            return this;
+        }
+
+        /**
+         * Counts lookups, the R-tree nodes, rings and edges they test and their latency, and
+         * publishes the counts as a {@link LookupStatisticsMXBean} named
+         * {@code uk.recurse.geocoding.reverse:name=<name>} on the platform MBean server, replacing
+         * any previously registered under that name. Lookups slower than the threshold are also
+         * recorded as {@code uk.recurse.geocoding.reverse.SlowLookup} JFR events when the JVM
+         * supports JFR and a recording enables them.
+         *
+         * <p>Timing costs two clock reads per lookup and counting adds a little to each tree
+         * search, and batches are looked up one coordinate at a time so that each is timed.
+         * Without this option none of the instrumentation is in the lookup path.
+         *
+         * @param name            value of the {@code name} key of the MBean object name
+         * @param slowLookupNanos latency in nanoseconds above which lookups are recorded as JFR
+         *                        events, adjustable later through the MBean
+         * @return this builder
+         * @throws IllegalArgumentException if the name is null or the threshold is negative
+         */
+        public Builder instrument(String name, long slowLookupNanos) {
+            if (name == null) {
+                throw new IllegalArgumentException("Statistics name must not be null");
+            }
+            if (slowLookupNanos < 0) {
+                throw new IllegalArgumentException("Slow lookup threshold must not be negative: " + slowLookupNanos);
+            }
+            statisticsName = name;
+            this.slowLookupNanos = slowLookupNanos;
+            return this;
+        }
+
+        /**
+         * Creates the reverse geocoder. This is an expensive operation as the country boundary data
+         * is loaded and any optional indexes are built.
+         *
+         * @return new reverse geocoder
+         * @throws UncheckedIOException     if the country information or the shapes cannot be read
+         * @throws IllegalArgumentException if an ISO country code given to
+         *                                  {@link #countries(String...)} is not in the country
+         *                                  information
+         */
+        public ReverseGeocoder build() {
+            return new ReverseGeocoder(this);
+        }
+    }
 }
@@ -3,33 +3,155 @@ package uk.recurse.geocoding.reverse;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.NONE)
 class Ring implements Geometry {
 
-    private final float[] latitude;
-    private final float[] longitude;
+    private final Vertices vertices;
     private final BoundingBox boundingBox;
 
     @JsonCreator
     Ring(Point... points) {
-        latitude = new float[points.length];
-        longitude = new float[points.length];
+        this(coordinates(points));
+    }
+
+    private Ring(float[][] coordinates) {
+        this(coordinates[0], coordinates[1]);
+    }
+
+    Ring(float[] latitude, float[] longitude) {
+        this(latitude, longitude, new BoundingBox(latitude, longitude));
+    }
+
+    Ring(float[] latitude, float[] longitude, BoundingBox boundingBox) {
+        this(latitude, longitude, boundingBox, true);
+    }
+
+    /**
+     * Creates a ring with float vertices, optionally without the edge index of large rings, for
+     * rings that are only read once to be simplified or quantized.
+     *
+     * @param latitude    vertex latitudes
+     * @param longitude   vertex longitudes
+     * @param boundingBox bounding box of the vertices
+     * @param indexEdges  false to skip building the edge index
+     */
+    Ring(float[] latitude, float[] longitude, BoundingBox boundingBox, boolean indexEdges) {
+        this(new FloatVertices(latitude, longitude, indexEdges), boundingBox);
+    }
+
+    private Ring(Vertices vertices, BoundingBox boundingBox) {
+        this.vertices = vertices;
+        this.boundingBox = boundingBox;
+    }
+
+    private static float[][] coordinates(Point[] points) {
+        float[][] coordinates = new float[2][points.length];
         for (int i = 0; i < points.length; i++) {
-            latitude[i] = points[i].latitude();
-            longitude[i] = points[i].longitude();
+            coordinates[0][i] = points[i].latitude();
+            coordinates[1][i] = points[i].longitude();
         }
-        boundingBox = new BoundingBox(Stream.of(points));
+        return coordinates;
     }
 
     @Override
     public boolean contains(float lat, float lon) {
-        return boundingBox.contains(lat, lon) && pnpoly(lat, lon);
+        return boundingBox.contains(lat, lon) && vertices.contains(lat, lon);
+    }
+
+    /**
+     * Returns the great-circle distance to the nearest edge of the ring.
+     *
+     * @param lat   degrees latitude
+     * @param lon   degrees longitude
+     * @param bound distance in radians beyond which edges need not be measured
+     * @return distance in radians, or {@code bound} if no edge is nearer than that
+     */
+    double distance(double lat, double lon, double bound) {
+        return vertices.distance(lat, lon, bound);
+    }
+
+    /**
+     * Tests whether an edge of the ring crosses or touches a latitude and longitude rectangle.
+     *
+     * @param minLat minimum degrees latitude
+     * @param minLon minimum degrees longitude
+     * @param maxLat maximum degrees latitude
+     * @param maxLon maximum degrees longitude
+     * @return true if an edge has a point in the rectangle
+     */
+    boolean crosses(double minLat, double minLon, double maxLat, double maxLon) {
+        if (boundingBox.maxLatitude() < minLat || boundingBox.minLatitude() > maxLat
+                || boundingBox.maxLongitude() < minLon || boundingBox.minLongitude() > maxLon) {
+            return false;
+        }
+        int n = vertices.size();
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            if (clips(vertices.latitude(j), vertices.longitude(j), vertices.latitude(i), vertices.longitude(i),
+                    minLat, minLon, maxLat, maxLon)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Liang-Barsky: narrows the parameter range of the segment to each side of the rectangle in
+    // turn, and the segment misses the rectangle if the range becomes empty
+    private static boolean clips(float lat1, float lon1, float lat2, float lon2,
+                                 double minLat, double minLon, double maxLat, double maxLon) {
+        if ((lat1 < minLat && lat2 < minLat) || (lat1 > maxLat && lat2 > maxLat)
+                || (lon1 < minLon && lon2 < minLon) || (lon1 > maxLon && lon2 > maxLon)) {
+            return false;
+        }
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        double enter = 0;
+        double exit = 1;
+        for (int side = 0; side < 4; side++) {
+            double p;
+            double q;
+            switch (side) {
+                case 0:
+                    p = -dLon;
+                    q = lon1 - minLon;
+                    break;
+                case 1:
+                    p = dLon;
+                    q = maxLon - lon1;
+                    break;
+                case 2:
+                    p = -dLat;
+                    q = lat1 - minLat;
+                    break;
+                default:
+                    p = dLat;
+                    q = maxLat - lat1;
+                    break;
+            }
+            if (p == 0) {
+                if (q < 0) {
+                    return false;
+                }
+            } else if (p < 0) {
+                enter = Math.max(enter, q / p);
+            } else {
+                exit = Math.min(exit, q / p);
+            }
+            if (enter > exit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int edges(float lat) {
+        return vertices.edges(lat);
     }
 
     @Override
-    public Country getCountry(float lat, float lon) {
+    public int getCountryOrdinal(float lat, float lon) {
         throw new UnsupportedOperationException();
     }
 
@@ -39,22 +161,81 @@ class Ring implements Geometry {
     }
 
     @Override
-    public Stream<Geometry> flatten(Country country) {
+    public Stream<Geometry> flatten(int countryOrdinal) {
         throw new UnsupportedOperationException();
     }
 
-    // algorithm notes: https://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
-    private boolean pnpoly(float lat, float lon) {
-        boolean contains = false;
-        for (int i = 0, j = latitude.length - 1; i < latitude.length; j = i++) {
-            if (((latitude[i] > lat) != (latitude[j] > lat))
-                    && (lon < (longitude[j] - longitude[i])
-                    * (lat - latitude[i])
-                    / (latitude[j] - latitude[i])
-                    + longitude[i])) {
-                contains = !contains;
-            }
+    @Override
+    public Stream<Ring> rings() {
+        return Stream.of(this);
+    }
+
+    @Override
+    public Geometry mapRings(UnaryOperator<Ring> mapper) {
+        return mapper.apply(this);
+    }
+
+    @Override
+    public long footprint() {
+        return Footprint.object(2) + boundingBox.footprint() + vertices.footprint();
+    }
+
+    Ring quantize(double resolution) {
+        Vertices fixedPoint = new FixedPointVertices(latitudes(), longitudes(), boundingBox, resolution);
+        return new Ring(fixedPoint, boundingBox);
+    }
+
+    /**
+     * Returns a ring with the same float vertices and an edge index if it is large enough for
+     * one, for rings that were created without it.
+     *
+     * @return indexed ring
+     */
+    Ring indexEdges() {
+        return new Ring(latitudes(), longitudes(), boundingBox);
+    }
+
+    /**
+     * Simplifies the ring with {@link DouglasPeucker}, rebuilding its bounding box. The simplified
+     * ring has no edge index, as it may be quantized next; see {@link #indexEdges()}.
+     *
+     * @param tolerance maximum distance in degrees of a dropped vertex from the simplified ring
+     * @return simplified ring, or this ring if no vertex can be dropped or the simplified ring
+     * would cross itself
+     */
+    Ring simplify(double tolerance) {
+        float[] latitude = latitudes();
+        float[] longitude = longitudes();
+        int[] kept = DouglasPeucker.simplify(latitude, longitude, tolerance);
+        if (kept == null) {
+            return this;
         }
-        return contains;
+        float[] lat = new float[kept.length];
+        float[] lon = new float[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            lat[i] = latitude[kept[i]];
+            lon[i] = longitude[kept[i]];
+        }
+        return new Ring(lat, lon, new BoundingBox(lat, lon), false);
+    }
+
+    int size() {
+        return vertices.size();
+    }
+
+    float latitude(int i) {
+        return vertices.latitude(i);
+    }
+
+    float longitude(int i) {
+        return vertices.longitude(i);
+    }
+
+    float[] latitudes() {
+        return vertices.latitudes();
+    }
+
+    float[] longitudes() {
+        return vertices.longitudes();
     }
 }
@@ -0,0 +1,84 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.Arrays;
+
+/**
+ * The edges of every ring in the world, for finding which of them cross a cell while an index of
+ * cells is built. An edge is identified by its position in the arrays, so the edges crossing a
+ * cell can be narrowed down again for each of its subcells.
+ */
+class RingEdges {
+
+    private final float[] lat1;
+    private final float[] lon1;
+    private final float[] lat2;
+    private final float[] lon2;
+
+    RingEdges(Geometry world) {
+        int edges = world.rings().mapToInt(ring -> ring.latitudes().length).sum();
+        lat1 = new float[edges];
+        lon1 = new float[edges];
+        lat2 = new float[edges];
+        lon2 = new float[edges];
+        int[] next = {0};
+        world.rings().forEach(ring -> {
+            float[] lat = ring.latitudes();
+            float[] lon = ring.longitudes();
+            for (int i = 0, j = lat.length - 1; i < lat.length; j = i++) {
+                int e = next[0]++;
+                lat1[e] = lat[j];
+                lon1[e] = lon[j];
+                lat2[e] = lat[i];
+                lon2[e] = lon[i];
+            }
+        });
+    }
+
+    int[] all() {
+        int[] edges = new int[lat1.length];
+        Arrays.setAll(edges, i -> i);
+        return edges;
+    }
+
+    /**
+     * Returns the edges that pass through a rectangle.
+     *
+     * @param edges  candidate edges, such as those crossing an enclosing cell
+     * @param minLat southern edge of the rectangle
+     * @param minLon western edge of the rectangle
+     * @param maxLat northern edge of the rectangle
+     * @param maxLon eastern edge of the rectangle
+     * @return the candidates crossing the rectangle, in the same order
+     */
+    int[] crossing(int[] edges, double minLat, double minLon, double maxLat, double maxLon) {
+        int[] crossing = new int[edges.length];
+        int n = 0;
+        for (int e : edges) {
+            if (intersects(e, minLat, minLon, maxLat, maxLon)) {
+                crossing[n++] = e;
+            }
+        }
+        return Arrays.copyOf(crossing, n);
+    }
+
+    private boolean intersects(int e, double minLat, double minLon, double maxLat, double maxLon) {
+        double y1 = lat1[e];
+        double x1 = lon1[e];
+        double y2 = lat2[e];
+        double x2 = lon2[e];
+        if (Math.max(y1, y2) < minLat || Math.min(y1, y2) > maxLat
+                || Math.max(x1, x2) < minLon || Math.min(x1, x2) > maxLon) {
+            return false;
+        }
+        // the segment's box overlaps the cell, so it crosses unless all corners are on one side
+        double c1 = side(y1, x1, y2, x2, minLat, minLon);
+        double c2 = side(y1, x1, y2, x2, minLat, maxLon);
+        double c3 = side(y1, x1, y2, x2, maxLat, minLon);
+        double c4 = side(y1, x1, y2, x2, maxLat, maxLon);
+        return !((c1 > 0 && c2 > 0 && c3 > 0 && c4 > 0) || (c1 < 0 && c2 < 0 && c3 < 0 && c4 < 0));
+    }
+
+    private static double side(double y1, double x1, double y2, double x2, double y, double x) {
+        return (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+    }
+}
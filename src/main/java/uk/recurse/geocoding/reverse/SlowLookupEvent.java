@@ -0,0 +1,64 @@
+package uk.recurse.geocoding.reverse;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for a lookup slower than the threshold of its {@link LookupStatistics}. Only loaded
+ * when the JVM has JFR, so instrumented reverse geocoders still run on older Java 8 builds; the
+ * statistics check for JFR themselves before referring to this class.
+ */
+@Name("uk.recurse.geocoding.reverse.SlowLookup")
+@Label("Slow Country Lookup")
+@Description("Country lookup that took longer than the configured threshold")
+@Category("Reverse Geocoder")
+@StackTrace(false)
+class SlowLookupEvent extends Event implements FlatRTree.Trace {
+
+    @Label("Latitude")
+    float latitude;
+
+    @Label("Longitude")
+    float longitude;
+
+    @Label("Country")
+    String country;
+
+    @Label("Lookup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long lookupTime;
+
+    @Label("Nodes Visited")
+    int nodes;
+
+    @Label("Rings Tested")
+    int rings;
+
+    @Label("Edges Evaluated")
+    int edges;
+
+    @Override
+    public void record(int nodes, int rings, int edges) {
+        this.nodes = nodes;
+        this.rings = rings;
+        this.edges = edges;
+    }
+
+    // traces the lookup again to fill in the work it did, which the timed lookup does not keep
+    static void commit(FeatureCollection featureCollection, float lat, float lon, int ordinal, long nanos) {
+        SlowLookupEvent event = new SlowLookupEvent();
+        if (event.isEnabled()) {
+            event.latitude = lat;
+            event.longitude = lon;
+            event.country = ordinal < 0 ? null : featureCollection.country(ordinal).iso();
+            event.lookupTime = nanos;
+            featureCollection.index().getCountryOrdinal(lat, lon, event);
+            event.commit();
+        }
+    }
+}
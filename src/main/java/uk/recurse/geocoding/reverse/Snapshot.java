@@ -0,0 +1,136 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Binary form of a packed {@link FeatureCollection}. The snapshot holds the country table, the
+ * R-tree exactly as {@link SortTileRecursive} packed it and the coordinates of every ring, so it
+ * can be loaded without JSON parsing, repacking or creating a {@link Point} per vertex.
+ */
+class Snapshot {
+
+    private static final int MAGIC = 0x52434353; // "RCCS"
+    private static final int VERSION = 1;
+
+    private static final byte MULTI_POLYGON = 0;
+    private static final byte POLYGON = 1;
+    private static final byte RING = 2;
+
+    private Snapshot() {
+    }
+
+    static void write(FeatureCollection collection, Map<String, Country> countries, OutputStream out)
+            throws IOException {
+        String[] ids = new String[countries.size()];
+        countries.forEach((id, country) -> ids[country.ordinal()] = id);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(ids.length);
+        for (String id : ids) {
+            data.writeUTF(id);
+        }
+        Country[] features = collection.countries().toArray(Country[]::new);
+        data.writeInt(features.length);
+        for (Country country : features) {
+            data.writeInt(country == null ? -1 : country.ordinal());
+        }
+        write(collection.world(), data);
+        data.flush();
+    }
+
+    private static void write(Geometry geometry, DataOutputStream data) throws IOException {
+        if (geometry instanceof MultiPolygon) {
+            Geometry[] geometries = ((MultiPolygon) geometry).geometries();
+            data.writeByte(MULTI_POLYGON);
+            data.writeInt(geometries.length);
+            for (Geometry child : geometries) {
+                write(child, data);
+            }
+        } else if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            data.writeByte(POLYGON);
+            data.writeInt(polygon.country());
+            write(polygon.ring(), data);
+            write(polygon.holes(), data);
+        } else {
+            Ring ring = (Ring) geometry;
+            float[] latitude = ring.latitudes();
+            float[] longitude = ring.longitudes();
+            data.writeByte(RING);
+            data.writeInt(latitude.length);
+            for (float lat : latitude) {
+                data.writeFloat(lat);
+            }
+            for (float lon : longitude) {
+                data.writeFloat(lon);
+            }
+        }
+    }
+
+    static FeatureCollection read(InputStream in, Map<String, Country> countries) throws IOException {
+        return read(in, countries, true);
+    }
+
+    static FeatureCollection read(InputStream in, Map<String, Country> countries, boolean indexEdges)
+            throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Unsupported snapshot format");
+        }
+        Country[] table = new Country[data.readInt()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = countries.get(data.readUTF());
+        }
+        Country[] features = new Country[data.readInt()];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = country(table, data.readInt());
+        }
+        Geometry world = read(table, data, indexEdges);
+        return new FeatureCollection(world, features, Country.byOrdinal(countries.values()));
+    }
+
+    private static Geometry read(Country[] table, DataInputStream data, boolean indexEdges) throws IOException {
+        byte type = data.readByte();
+        switch (type) {
+            case MULTI_POLYGON:
+                Geometry[] geometries = new Geometry[data.readInt()];
+                for (int i = 0; i < geometries.length; i++) {
+                    geometries[i] = read(table, data, indexEdges);
+                }
+                return new MultiPolygon(geometries);
+            case POLYGON:
+                Country country = country(table, data.readInt());
+                Ring ring = (Ring) read(table, data, indexEdges);
+                Geometry holes = read(table, data, indexEdges);
+                return new Polygon(ring, holes, country == null ? -1 : country.ordinal());
+            case RING:
+                int n = data.readInt();
+                float[] lat = readFloats(data, n);
+                float[] lon = readFloats(data, n);
+                return new Ring(lat, lon, new BoundingBox(lat, lon), indexEdges);
+            default:
+                throw new IOException("Unknown geometry type " + type);
+        }
+    }
+
+    private static float[] readFloats(DataInputStream data, int n) throws IOException {
+        byte[] bytes = new byte[n * Float.BYTES];
+        data.readFully(bytes);
+        float[] floats = new float[n];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(floats);
+        return floats;
+    }
+
+    private static Country country(Country[] table, int index) {
+        return index < 0 ? null : table[index];
+    }
+}
@@ -0,0 +1,50 @@
+package uk.recurse.geocoding.reverse;
+
+/**
+ * Space filling curve keys for ordering coordinates so that points close together on the curve
+ * are close together on the globe, and therefore visit the same parts of the tree.
+ */
+class SpatialOrder {
+
+    private SpatialOrder() {
+    }
+
+    /**
+     * Returns the position of a coordinate on a Hilbert curve over a grid of 2<sup>bits</sup> by
+     * 2<sup>bits</sup> cells. Consecutive positions are always adjacent cells, so runs of sorted
+     * points stay compact. Coordinates outside the valid range are clamped to the nearest edge
+     * cell and NaN is mapped to the first cell.
+     *
+     * @param lat  degrees latitude
+     * @param lon  degrees longitude
+     * @param bits cells per axis as a power of two, from 1 to 15
+     * @return distance along the curve
+     */
+    static int hilbert(float lat, float lon, int bits) {
+        int n = 1 << bits;
+        int y = cell((lat + 90.0) / 180.0, bits);
+        int x = cell((lon + 180.0) / 360.0, bits);
+        int d = 0;
+        for (int s = n >>> 1; s > 0; s >>>= 1) {
+            int rx = (x & s) == 0 ? 0 : 1;
+            int ry = (y & s) == 0 ? 0 : 1;
+            d += s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so the curve inside it starts and ends at the right corners
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    private static int cell(double fraction, int bits) {
+        int max = (1 << bits) - 1;
+        return fraction > 0 ? (int) Math.min(fraction * (max + 1), max) : 0;
+    }
+}
@@ -0,0 +1,99 @@
+package uk.recurse.geocoding.reverse;
+
+import java.util.Optional;
+
+/**
+ * Stateful lookup for a sequence of nearby coordinates, such as a GPS trace. Each lookup first
+ * tests the polygon that matched the previous coordinate, then the polygons next to it, and only
+ * searches the whole tree when neither contains the coordinate or the previous coordinate was not
+ * in a country. Answers are always the same as {@link ReverseGeocoder#getCountry(float, float)}
+ * without a cache.
+ *
+ * <p>Sessions are cheap to create and are not thread safe, so each thread or trace should use its
+ * own session from {@link ReverseGeocoder#newSession()}.
+ */
+public class TrajectorySession {
+
+    private final FeatureCollection featureCollection;
+    private final PolygonGraph graph;
+    private final FlatRTree tree;
+    private int last = -1;
+
+    TrajectorySession(FeatureCollection featureCollection, PolygonGraph graph) {
+        this.featureCollection = featureCollection;
+        this.graph = graph;
+        this.tree = graph.tree();
+    }
+
+    /**
+     * Converts the next coordinate of the trace into a country.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return the country at the given coordinate
+     */
+    public Optional<Country> getCountry(double lat, double lon) {
+        return getCountry((float) lat, (float) lon);
+    }
+
+    /**
+     * Converts the next coordinate of the trace into a country.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return the country at the given coordinate
+     */
+    public Optional<Country> getCountry(float lat, float lon) {
+        int ordinal = getCountryOrdinal(lat, lon);
+        return Optional.ofNullable(ordinal < 0 ? null : featureCollection.country(ordinal));
+    }
+
+    /**
+     * Converts the next coordinate of the trace into a country ordinal without allocating.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return the {@link Country#ordinal() ordinal} of the country at the given coordinate, or -1
+     * if the coordinate is not in a country
+     */
+    public int getCountryOrdinal(double lat, double lon) {
+        return getCountryOrdinal((float) lat, (float) lon);
+    }
+
+    /**
+     * Converts the next coordinate of the trace into a country ordinal without allocating.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return the {@link Country#ordinal() ordinal} of the country at the given coordinate, or -1
+     * if the coordinate is not in a country
+     */
+    public int getCountryOrdinal(float lat, float lon) {
+        last = locate(lat, lon);
+        return last < 0 ? -1 : FlatRTree.ordinal(tree.polygon(last));
+    }
+
+    private int locate(float lat, float lon) {
+        if (last >= 0) {
+            if (tree.contains(last, lat, lon)) {
+                return first(last, lat, lon);
+            }
+            for (int neighbour : graph.neighbours(last)) {
+                if (tree.contains(neighbour, lat, lon)) {
+                    return first(neighbour, lat, lon);
+                }
+            }
+        }
+        return tree.getPolygon(lat, lon);
+    }
+
+    // polygons can overlap, so an earlier polygon in tree order may also contain the coordinate and
+    // it would win a full search
+    private int first(int node, float lat, float lon) {
+        for (int earlier = graph.earlierContaining(node, lat, lon); earlier >= 0;
+             earlier = graph.earlierContaining(node, lat, lon)) {
+            node = earlier;
+        }
+        return node;
+    }
+}
@@ -0,0 +1,76 @@
+package uk.recurse.geocoding.reverse;
+
+/**
+ * Storage for the vertices of a ring.
+ */
+interface Vertices {
+
+    /**
+     * Tests if a point is inside the ring without checking its bounding box first.
+     *
+     * @param lat degrees latitude
+     * @param lon degrees longitude
+     * @return true if the point is inside
+     */
+    boolean contains(float lat, float lon);
+
+    /**
+     * Returns the great-circle distance to the nearest edge of the ring.
+     *
+     * @param lat   degrees latitude
+     * @param lon   degrees longitude
+     * @param bound distance in radians beyond which edges need not be measured
+     * @return distance in radians, or {@code bound} if no edge is nearer than that
+     */
+    default double distance(double lat, double lon, double bound) {
+        GreatCircle.Nearest nearest = new GreatCircle.Nearest(lat, lon, bound);
+        for (int i = 0, j = size() - 1; i < size(); j = i++) {
+            nearest.add(latitude(j), longitude(j), latitude(i), longitude(i));
+        }
+        return nearest.distance();
+    }
+
+    /**
+     * Returns the number of edges that {@link #contains(float, float)} evaluates for a point at a
+     * given latitude.
+     *
+     * @param lat degrees latitude
+     * @return number of edges
+     */
+    default int edges(float lat) {
+        return latitudes().length;
+    }
+
+    /**
+     * @return number of vertices
+     */
+    default int size() {
+        return latitudes().length;
+    }
+
+    /**
+     * Returns the latitude of one vertex without copying the others.
+     *
+     * @param i vertex index
+     * @return degrees latitude
+     */
+    default float latitude(int i) {
+        return latitudes()[i];
+    }
+
+    /**
+     * Returns the longitude of one vertex without copying the others.
+     *
+     * @param i vertex index
+     * @return degrees longitude
+     */
+    default float longitude(int i) {
+        return longitudes()[i];
+    }
+
+    float[] latitudes();
+
+    float[] longitudes();
+
+    long footprint();
+}
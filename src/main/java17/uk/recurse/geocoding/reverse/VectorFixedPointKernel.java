@@ -0,0 +1,106 @@
+package uk.recurse.geocoding.reverse;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * PNPOLY with the edge crossing tests of a whole vector of edges evaluated at once. Lane i tests
+ * the edge from vertex i - 1 to vertex i. Offsets are widened to doubles, where differences of
+ * ints are exact, and then go through the same double operations in the same order as the scalar
+ * loop, so the crossing count and the result are identical. Small rings are left to the scalar
+ * loop.
+ */
+class VectorFixedPointKernel implements FixedPointKernel {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(
+            int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    private static final VectorSpecies<Short> SHORTS = VectorSpecies.of(
+            short.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 4));
+    private static final int LANES = DOUBLES.length();
+
+    // below this the scalar loop is faster
+    private static final int MIN_VERTICES = 64;
+
+    @Override
+    public boolean contains(char[] latitude, char[] longitude, double y, double x) {
+        int n = latitude.length;
+        if (n < MIN_VERTICES) {
+            return FixedPointVertices.pnpoly(latitude, longitude, y, x);
+        }
+        // the closing edge from the last vertex to the first
+        int crossings = crosses(latitude[0], latitude[n - 1], longitude[0], longitude[n - 1], y, x) ? 1 : 0;
+        int i = 1;
+        DoubleVector yVector = DoubleVector.broadcast(DOUBLES, y);
+        DoubleVector xVector = DoubleVector.broadcast(DOUBLES, x);
+        for (int bound = n - LANES; i <= bound; i += LANES) {
+            crossings += crossings(
+                    widen(latitude, i), widen(latitude, i - 1),
+                    widen(longitude, i), widen(longitude, i - 1),
+                    yVector, xVector);
+        }
+        for (; i < n; i++) {
+            if (crosses(latitude[i], latitude[i - 1], longitude[i], longitude[i - 1], y, x)) {
+                crossings++;
+            }
+        }
+        return (crossings & 1) == 1;
+    }
+
+    @Override
+    public boolean contains(int[] latitude, int[] longitude, double y, double x) {
+        int n = latitude.length;
+        if (n < MIN_VERTICES) {
+            return FixedPointVertices.pnpoly(latitude, longitude, y, x);
+        }
+        int crossings = crosses(latitude[0], latitude[n - 1], longitude[0], longitude[n - 1], y, x) ? 1 : 0;
+        int i = 1;
+        DoubleVector yVector = DoubleVector.broadcast(DOUBLES, y);
+        DoubleVector xVector = DoubleVector.broadcast(DOUBLES, x);
+        for (int bound = n - LANES; i <= bound; i += LANES) {
+            crossings += crossings(
+                    widen(latitude, i), widen(latitude, i - 1),
+                    widen(longitude, i), widen(longitude, i - 1),
+                    yVector, xVector);
+        }
+        for (; i < n; i++) {
+            if (crosses(latitude[i], latitude[i - 1], longitude[i], longitude[i - 1], y, x)) {
+                crossings++;
+            }
+        }
+        return (crossings & 1) == 1;
+    }
+
+    private static DoubleVector widen(char[] offsets, int from) {
+        return (DoubleVector) ((IntVector) ShortVector.fromCharArray(SHORTS, offsets, from)
+                .convertShape(VectorOperators.S2I, INTS, 0))
+                .and(0xFFFF)
+                .convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+
+    private static DoubleVector widen(int[] offsets, int from) {
+        return (DoubleVector) IntVector.fromArray(INTS, offsets, from)
+                .convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+
+    private static int crossings(DoubleVector yi, DoubleVector yj, DoubleVector xi, DoubleVector xj,
+                                 DoubleVector y, DoubleVector x) {
+        VectorMask<Double> straddles = yi.compare(VectorOperators.GT, y)
+                .eq(yj.compare(VectorOperators.GT, y))
+                .not();
+        DoubleVector intersection = xj.sub(xi)
+                .mul(y.sub(yi))
+                .div(yj.sub(yi))
+                .add(xi);
+        return straddles.and(x.compare(VectorOperators.LT, intersection)).trueCount();
+    }
+
+    private static boolean crosses(int yi, int yj, int xi, int xj, double y, double x) {
+        return ((yi > y) != (yj > y)) && (x < (double) (xj - xi) * (y - yi) / (yj - yi) + xi);
+    }
+}
@@ -0,0 +1,398 @@
+package uk.recurse.geocoding.reverse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * HTTP front end for a shared {@link ReverseGeocoder}, built on the JDK's own HTTP server so that
+ * it needs no dependencies beyond the library.
+ *
+ * <ul>
+ * <li>{@code GET /country?lat=51.5&lon=-0.13} returns the country as JSON, or 404 if the
+ * coordinate is not in a country.</li>
+ * <li>{@code GET /countries} returns every country as a JSON array in ordinal order.</li>
+ * <li>{@code POST /countries} with a text body of {@code lat,lon} lines (a tab or space also
+ * separates the values) returns one ISO code per line, with an empty line where the coordinate is
+ * not in a country or not a number, or the line is longer than {@value #MAX_LINE} bytes.</li>
+ * <li>{@code POST /countries} with an {@code application/octet-stream} body of big-endian float
+ * latitude and longitude pairs returns one big-endian short ordinal per pair, -1 if the coordinate
+ * is not in a country.</li>
+ * </ul>
+ *
+ * <p>Batch bodies are read, geocoded and written {@value #BATCH_SIZE} points at a time with a
+ * chunked response, so a request of any size is answered in constant memory and the client sees
+ * the first results before it has finished sending. Responses for single countries are encoded once
+ * at startup.
+ */
+public class GeocodingServer implements Closeable {
+
+    static final int BATCH_SIZE = 4096;
+    static final String BINARY = "application/octet-stream";
+    // longest text batch line that is parsed, well over any pair of coordinates
+    static final int MAX_LINE = 64;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: GeocodingServer [options]",
+            "  --host <address>   address to bind (default: all interfaces)",
+            "  --port <port>      port to listen on (default 8080)",
+            "  --threads <n>      worker threads when virtual threads are not available",
+            "                     (default: twice the available processors)");
+
+    private final ReverseGeocoder geocoder;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // indexed by country ordinal + 1
+    private final byte[][] json;
+    private final byte[][] iso;
+    private final byte[] countries;
+
+    GeocodingServer(ReverseGeocoder geocoder, InetSocketAddress address, ExecutorService executor)
+            throws IOException {
+        this.geocoder = geocoder;
+        this.executor = executor;
+        ObjectMapper mapper = new ObjectMapper();
+        json = new byte[geocoder.countryCount() + 1][];
+        iso = new byte[geocoder.countryCount() + 1][];
+        json[0] = "null".getBytes(UTF_8);
+        iso[0] = new byte[]{'\n'};
+        List<Map<String, Object>> all = new ArrayList<>();
+        for (int ordinal = 0; ordinal < geocoder.countryCount(); ordinal++) {
+            Country country = geocoder.country(ordinal);
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("iso", country.iso());
+            fields.put("iso3", country.iso3());
+            fields.put("numeric", country.isoNumeric());
+            fields.put("name", country.name());
+            fields.put("continent", country.continent());
+            fields.put("ordinal", ordinal);
+            all.add(fields);
+            json[ordinal + 1] = mapper.writeValueAsBytes(fields);
+            iso[ordinal + 1] = (country.iso() + '\n').getBytes(UTF_8);
+        }
+        countries = mapper.writeValueAsBytes(all);
+        // headers and body are separate writes, so with Nagle's algorithm on every response on a
+        // kept-alive connection waits for the client's delayed ACK, about 40 ms; the JDK reads the
+        // property once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext("/country", this::country);
+        server.createContext("/countries", this::countries);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Starts a server on virtual threads if the JVM has them, otherwise on a fixed pool.
+     *
+     * @param geocoder shared geocoder
+     * @param address  address to bind, port 0 picks a free port
+     * @param threads  size of the fallback pool
+     * @return running server
+     * @throws IOException if the address cannot be bound
+     */
+    public static GeocodingServer start(ReverseGeocoder geocoder, InetSocketAddress address, int threads)
+            throws IOException {
+        ExecutorService executor = newExecutor(threads);
+        try {
+            return new GeocodingServer(geocoder, address, executor);
+        } catch (IOException | RuntimeException e) {
+            executor.shutdown();
+            throw e;
+        }
+    }
+
+    // requests mostly wait on sockets, so a thread each is cheap when the threads are virtual
+    static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = null;
+        int port = 8080;
+        int threads = 2 * Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--host":
+                        host = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (port < 0 || port > 0xffff || threads < 1) {
+                throw new IllegalArgumentException("Invalid port or thread count");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            exit("Missing option value");
+            return;
+        } catch (IllegalArgumentException e) {
+            exit(e.getMessage());
+            return;
+        }
+        InetSocketAddress address = host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+        GeocodingServer server = start(new ReverseGeocoder(), address, threads);
+        System.err.printf("Listening on port %d%n", server.port());
+    }
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return local port
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for open exchanges and stops the workers.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void country(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                reject(exchange, 405);
+                return;
+            }
+            float lat = Float.NaN;
+            float lon = Float.NaN;
+            String query = exchange.getRequestURI().getRawQuery();
+            for (String parameter : query == null ? new String[0] : query.split("&")) {
+                if (parameter.startsWith("lat=")) {
+                    lat = parse(parameter.substring(4));
+                } else if (parameter.startsWith("lon=")) {
+                    lon = parse(parameter.substring(4));
+                }
+            }
+            if (!(Math.abs(lat) <= 90 && Math.abs(lon) <= 180)) {
+                reject(exchange, 400);
+                return;
+            }
+            int ordinal = geocoder.getCountryOrdinal(lat, lon);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            send(exchange, ordinal < 0 ? 404 : 200, json[ordinal + 1]);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static float parse(String value) {
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    private void countries(HttpExchange exchange) throws IOException {
+        try {
+            if (exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                send(exchange, 200, countries);
+            } else if (!exchange.getRequestMethod().equals("POST")) {
+                reject(exchange, 405);
+            } else if (BINARY.equals(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                if (!wholePairs(exchange.getRequestHeaders().getFirst("Content-Length"))) {
+                    reject(exchange, 400);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", BINARY);
+                exchange.sendResponseHeaders(200, 0);
+                binaryBatch(exchange.getRequestBody(), exchange.getResponseBody());
+            } else {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0);
+                textBatch(exchange.getRequestBody(), exchange.getResponseBody());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // a malformed length is rejected; without a length the body streams in and a trailing
+    // partial pair is ignored, as the response has already started
+    private static boolean wholePairs(String length) {
+        if (length == null) {
+            return true;
+        }
+        try {
+            return Long.parseLong(length.trim()) % 8 == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // reads the request body before answering, so that a client still sending it is not reset
+    private static void reject(HttpExchange exchange, int status) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+        }
+        send(exchange, status, null);
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        if (body != null) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    // a trailing partial pair, only possible without a Content-Length, is ignored
+    private void binaryBatch(InputStream in, OutputStream out) throws IOException {
+        byte[] input = new byte[8 * BATCH_SIZE];
+        byte[] output = new byte[2 * BATCH_SIZE];
+        float[] lat = new float[BATCH_SIZE];
+        float[] lon = new float[BATCH_SIZE];
+        short[] ordinals = new short[BATCH_SIZE];
+        ByteBuffer pairs = ByteBuffer.wrap(input);
+        ByteBuffer results = ByteBuffer.wrap(output);
+        int n;
+        while ((n = readFully(in, input)) >= 8) {
+            int points = n / 8;
+            pairs.clear();
+            for (int i = 0; i < points; i++) {
+                lat[i] = pairs.getFloat();
+                lon[i] = pairs.getFloat();
+            }
+            geocoder.getCountryOrdinals(lat, lon, 0, points, ordinals, Runnable::run);
+            results.clear();
+            for (int i = 0; i < points; i++) {
+                results.putShort(ordinals[i]);
+            }
+            out.write(output, 0, 2 * points);
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int n = 0;
+        while (n < buffer.length) {
+            int read = in.read(buffer, n, buffer.length - n);
+            if (read < 0) {
+                break;
+            }
+            n += read;
+        }
+        return n;
+    }
+
+    private void textBatch(InputStream in, OutputStream out) throws IOException {
+        byte[] input = new byte[64 * 1024];
+        byte[] output = new byte[BATCH_SIZE * maxLength(iso)];
+        float[] lat = new float[BATCH_SIZE];
+        float[] lon = new float[BATCH_SIZE];
+        short[] ordinals = new short[BATCH_SIZE];
+        ByteBuffer lines = ByteBuffer.wrap(input);
+        int length = 0;
+        boolean eof = false;
+        // inside a line that was too long, whose result has already been counted
+        boolean skipping = false;
+        while (!eof || length > 0) {
+            if (!eof) {
+                int read = in.read(input, length, input.length - length);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                }
+            }
+            // parse whole lines, or everything once the body has ended
+            int points = 0;
+            int position = 0;
+            while (points < BATCH_SIZE && position < length) {
+                int end = position;
+                while (end < length && input[end] != '\n') {
+                    end++;
+                }
+                if (skipping || end - position > MAX_LINE) {
+                    if (!skipping) {
+                        lat[points] = Float.NaN;
+                        lon[points] = Float.NaN;
+                        points++;
+                    }
+                    skipping = end == length;
+                    position = Math.min(end + 1, length);
+                    continue;
+                }
+                if (end == length && !eof) {
+                    break;
+                }
+                int lineEnd = end > position && input[end - 1] == '\r' ? end - 1 : end;
+                int separator = position;
+                while (separator < lineEnd && input[separator] != ',' && input[separator] != '\t'
+                        && input[separator] != ' ') {
+                    separator++;
+                }
+                lat[points] = BulkGeocoder.parseCoordinate(lines, position, separator);
+                lon[points] = separator < lineEnd
+                        ? BulkGeocoder.parseCoordinate(lines, separator + 1, lineEnd)
+                        : Float.NaN;
+                points++;
+                position = end + 1;
+            }
+            position = Math.min(position, length);
+            System.arraycopy(input, position, input, 0, length - position);
+            length -= position;
+            if (points == 0) {
+                continue;
+            }
+            geocoder.getCountryOrdinals(lat, lon, 0, points, ordinals, Runnable::run);
+            int n = 0;
+            for (int i = 0; i < points; i++) {
+                byte[] line = iso[ordinals[i] + 1];
+                System.arraycopy(line, 0, output, n, line.length);
+                n += line.length;
+            }
+            out.write(output, 0, n);
+        }
+    }
+
+    private static int maxLength(byte[][] values) {
+        int max = 0;
+        for (byte[] value : values) {
+            max = Math.max(max, value.length);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,205 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Load test for {@link GeocodingServer} on localhost. Each client sends requests back to back over
+ * a kept-alive connection, and once the warm up is over every request's latency is recorded, so the
+ * report shows the percentiles seen by a client rather than the server's processing time alone.
+ * Coordinates are uniformly random, so most single lookups are in the sea.
+ */
+public class ServerLoadTest {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: ServerLoadTest [options]",
+            "  --url <url>        server to test (default: start one in this JVM)",
+            "  --clients <n>      concurrent clients (default 8)",
+            "  --requests <n>     measured requests per client (default 5000)",
+            "  --warmup <n>       unmeasured requests per client first (default 1000)",
+            "  --batch <n>        points per text batch request, 0 for single GET lookups (default 0)");
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int clients = 8;
+        int requests = 5000;
+        int warmup = 1000;
+        int batch = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--url":
+                        url = args[++i];
+                        break;
+                    case "--clients":
+                        clients = Integer.parseInt(args[++i]);
+                        break;
+                    case "--requests":
+                        requests = Integer.parseInt(args[++i]);
+                        break;
+                    case "--warmup":
+                        warmup = Integer.parseInt(args[++i]);
+                        break;
+                    case "--batch":
+                        batch = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (clients < 1 || requests < 1 || warmup < 0 || batch < 0) {
+                throw new IllegalArgumentException("Counts must be positive");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            exit("Missing option value");
+            return;
+        } catch (IllegalArgumentException e) {
+            exit(e.getMessage());
+            return;
+        }
+        GeocodingServer server = null;
+        if (url == null) {
+            server = GeocodingServer.start(new ReverseGeocoder(), new InetSocketAddress("127.0.0.1", 0),
+                    2 * Runtime.getRuntime().availableProcessors());
+            url = "http://127.0.0.1:" + server.port();
+        }
+        try {
+            long[][] latencies = run(url, clients, requests, warmup, batch);
+            System.out.println(report(latencies, batch));
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    /**
+     * Runs the clients and returns the latency of each measured request in nanoseconds.
+     */
+    static long[][] run(String url, int clients, int requests, int warmup, int batch)
+            throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                Random random = new Random(c);
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < warmup; i++) {
+                        request(url, random, batch);
+                    }
+                    long[] latencies = new long[requests];
+                    for (int i = 0; i < requests; i++) {
+                        latencies[i] = request(url, random, batch);
+                    }
+                    return latencies;
+                }));
+            }
+            long[][] latencies = new long[clients][];
+            for (int c = 0; c < clients; c++) {
+                latencies[c] = futures.get(c).get();
+            }
+            return latencies;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // returns the time from opening the request to reading the whole response
+    private static long request(String url, Random random, int batch) throws IOException {
+        byte[] body = null;
+        String path;
+        if (batch == 0) {
+            path = String.format(Locale.ROOT, "/country?lat=%.5f&lon=%.5f", lat(random), lon(random));
+        } else {
+            StringBuilder points = new StringBuilder();
+            for (int i = 0; i < batch; i++) {
+                points.append(String.format(Locale.ROOT, "%.5f,%.5f%n", lat(random), lon(random)));
+            }
+            body = points.toString().getBytes(UTF_8);
+            path = "/countries";
+        }
+        long start = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url + path).openConnection();
+        if (body != null) {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        if (status != 200 && status != 404) {
+            throw new IOException("Unexpected status " + status);
+        }
+        // the connection is only reused once its response has been read to the end
+        try (InputStream in = status == 200 ? connection.getInputStream() : connection.getErrorStream()) {
+            drain(in);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in != null) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+        }
+    }
+
+    private static double lat(Random random) {
+        return random.nextDouble() * 180 - 90;
+    }
+
+    private static double lon(Random random) {
+        return random.nextDouble() * 360 - 180;
+    }
+
+    static String report(long[][] latencies, int batch) {
+        int n = 0;
+        for (long[] client : latencies) {
+            n += client.length;
+        }
+        long[] all = new long[n];
+        long busiest = 0;
+        int k = 0;
+        for (long[] client : latencies) {
+            System.arraycopy(client, 0, all, k, client.length);
+            k += client.length;
+            busiest = Math.max(busiest, Arrays.stream(client).sum());
+        }
+        Arrays.sort(all);
+        // requests were back to back, so the slowest client's total is the measured wall time
+        double seconds = busiest / 1e9;
+        return String.format(Locale.ROOT,
+                "%d requests of %s: %.0f requests/s, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                n, batch == 0 ? "1 point" : batch + " points", n / seconds,
+                percentile(all, 0.5) / 1e6, percentile(all, 0.99) / 1e6, all[n - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
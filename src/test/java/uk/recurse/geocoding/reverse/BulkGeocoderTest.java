@@ -0,0 +1,127 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkGeocoderTest {
+
+    private static ReverseGeocoder geocoder;
+    private static ExecutorService executor;
+
+    @BeforeAll
+    static void setup() {
+        geocoder = new ReverseGeocoder();
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void appendsCountriesInOrder() throws IOException {
+        Random random = new Random(0);
+        List<String> input = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        input.add("name\tlat\tlon");
+        expected.add("name\tlat\tlon\tiso\tname");
+        for (int i = 0; i < 5000; i++) {
+            float lat = random.nextFloat() * 180 - 90;
+            float lon = random.nextFloat() * 360 - 180;
+            String row = "row" + i + "\t" + lat + "\t" + lon;
+            input.add(row);
+            expected.add(row + geocoder.getCountry(lat, lon)
+                    .map(country -> "\t" + country.iso() + "\t" + country.name())
+                    .orElse("\t\t"));
+        }
+        Path in = Files.createTempFile("bulk", ".tsv");
+        Path out = Files.createTempFile("bulk", ".tsv");
+        try {
+            Files.write(in, input, UTF_8);
+            BulkGeocoder bulk = new BulkGeocoder(geocoder, 1, 2, '\t', true,
+                    Arrays.asList(BulkGeocoder.Column.ISO, BulkGeocoder.Column.NAME), 4096);
+
+            long rows = bulk.run(in, out, executor, 4);
+
+            assertEquals(5000, rows);
+            assertEquals(expected, Files.readAllLines(out, UTF_8));
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    void quotedFieldsAndLineEndings() throws IOException {
+        String input = "\"London, UK\",51.507222,-0.1275\r\n"
+                + "Nowhere,not a number,0\n"
+                + "Quoted,\"48.71785\", 2.49338\n"
+                + "Exponent,4.871785e1,2.49338";
+        Path in = Files.createTempFile("bulk", ".csv");
+        Path out = Files.createTempFile("bulk", ".csv");
+        try {
+            Files.write(in, input.getBytes(UTF_8));
+            BulkGeocoder bulk = new BulkGeocoder(geocoder, 1, 2, ',', false,
+                    Arrays.asList(BulkGeocoder.Column.ISO3, BulkGeocoder.Column.NUMERIC), 16);
+
+            bulk.run(in, out, executor, 2);
+
+            assertEquals(Arrays.asList(
+                    "\"London, UK\",51.507222,-0.1275,GBR,826",
+                    "Nowhere,not a number,0,,",
+                    "Quoted,\"48.71785\", 2.49338,FRA,250",
+                    "Exponent,4.871785e1,2.49338,FRA,250"), Files.readAllLines(out, UTF_8));
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path in = Files.createTempFile("bulk", ".tsv");
+        Path out = Files.createTempFile("bulk", ".tsv");
+        try {
+            BulkGeocoder bulk = new BulkGeocoder(geocoder, 0, 1, '\t', true,
+                    Collections.singletonList(BulkGeocoder.Column.ISO), 16);
+
+            assertEquals(0, bulk.run(in, out, executor, 2));
+            assertTrue(Files.readAllLines(out).isEmpty());
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    void parsesLikeFloatParseFloat() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100_000; i++) {
+            String text = Float.toString(random.nextFloat() * 360 - 180);
+            if (random.nextBoolean()) {
+                text = String.format("%.6f", random.nextDouble() * 360 - 180);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(UTF_8));
+
+            assertEquals(Float.parseFloat(text), BulkGeocoder.parseCoordinate(buffer, 0, buffer.limit()), text);
+        }
+    }
+}
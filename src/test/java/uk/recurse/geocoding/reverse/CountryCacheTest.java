@@ -0,0 +1,88 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CountryCacheTest {
+
+    private static FeatureCollection featureCollection;
+    private static CountryCache shared;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        featureCollection = ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries());
+        shared = new CountryCache(featureCollection, 1 << 12, 1e-4);
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/baselineCities.csv")
+    void sameCoordinateMatchesUncached(float lat, float lon) {
+        int expected = featureCollection.getCountryOrdinal(lat, lon);
+
+        assertEquals(expected, shared.getCountryOrdinal(lat, lon));
+        assertEquals(expected, shared.getCountryOrdinal(lat, lon));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        CountryCache cache = new CountryCache(featureCollection, 16, 1e-4);
+
+        int london = cache.getCountryOrdinal(51.50723f, -0.12735f);
+        int nearby = cache.getCountryOrdinal(51.50727f, -0.12738f);
+
+        assertEquals(london, nearby);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void cachesOcean() {
+        CountryCache cache = new CountryCache(featureCollection, 16, 1e-4);
+
+        assertEquals(-1, cache.getCountryOrdinal(0, 0));
+        assertEquals(-1, cache.getCountryOrdinal(0, 0));
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void collidingCellEvicts() {
+        CountryCache cache = new CountryCache(featureCollection, 1, 1e-4);
+        int london = featureCollection.getCountryOrdinal(51.507222f, -0.1275f);
+        int paris = featureCollection.getCountryOrdinal(48.856613f, 2.352222f);
+
+        assertEquals(london, cache.getCountryOrdinal(51.507222f, -0.1275f));
+        assertEquals(paris, cache.getCountryOrdinal(48.856613f, 2.352222f));
+        assertEquals(london, cache.getCountryOrdinal(51.507222f, -0.1275f));
+        assertEquals(0, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    void invalidCoordinatesBypassCache() {
+        CountryCache cache = new CountryCache(featureCollection, 16, 1e-4);
+
+        assertEquals(-1, cache.getCountryOrdinal(Float.NaN, 0));
+        assertEquals(-1, cache.getCountryOrdinal(91, 0));
+        assertEquals(0, cache.hits() + cache.misses());
+    }
+
+    @Test
+    void geocoderReportsCacheStatistics() {
+        ReverseGeocoder geocoder = ReverseGeocoder.builder().cache(1024, 1e-4).build();
+
+        geocoder.getCountry(51.507222, -0.1275);
+        geocoder.getCountry(51.507222, -0.1275);
+
+        assertEquals(1, geocoder.cacheHits());
+        assertEquals(1, geocoder.cacheMisses());
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().cache(0, 1e-4));
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().cache(16, 1e-6));
+    }
+}
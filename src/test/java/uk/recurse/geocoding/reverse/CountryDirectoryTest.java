@@ -0,0 +1,110 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CountryDirectoryTest {
+
+    private static ReverseGeocoder geocoder;
+    private static CountryDirectory directory;
+
+    @BeforeAll
+    static void setup() {
+        geocoder = new ReverseGeocoder();
+        directory = geocoder.directory();
+    }
+
+    @Test
+    void findsEveryCountry() {
+        for (int ordinal = 0; ordinal < geocoder.countryCount(); ordinal++) {
+            Country country = geocoder.country(ordinal);
+            assertSame(country, directory.byAlpha2(country.iso()));
+            assertSame(country, directory.byAlpha3(country.iso3()));
+            if (country.isoNumeric() > 0) {
+                assertSame(country, directory.byNumeric(country.isoNumeric()));
+            }
+        }
+    }
+
+    @Test
+    void sameInstanceAsLookups() {
+        assertSame(geocoder.getCountry(51.507222, -0.1275).get(), directory.byAlpha2("GB"));
+    }
+
+    @Test
+    void readsCodesWithoutStrings() {
+        Country uk = directory.byAlpha2("GB");
+
+        assertSame(uk, directory.byAlpha2('G', 'B'));
+        assertSame(uk, directory.byAlpha2(new StringBuilder("gb")));
+        assertSame(uk, directory.byAlpha3('g', 'B', 'r'));
+        assertSame(uk, directory.byAlpha3("GBR"));
+        assertSame(uk, directory.byNumeric(826));
+        assertEquals("FR", directory.byAlpha3("FRA").iso());
+    }
+
+    @Test
+    void unknownCodes() {
+        assertNull(directory.byAlpha2("XX"));
+        assertNull(directory.byAlpha2("G"));
+        assertNull(directory.byAlpha2("G1"));
+        assertNull(directory.byAlpha2('G', 'Ä'));
+        assertNull(directory.byAlpha3("GB"));
+        assertNull(directory.byAlpha3("GBRX"));
+        assertNull(directory.byAlpha3("G@R"));
+        assertNull(directory.byNumeric(0));
+        assertNull(directory.byNumeric(-826));
+        assertNull(directory.byNumeric(1826));
+    }
+
+    @Test
+    void skipsCodesOfWrongLength() throws IOException {
+        Path countryInfo = Files.createTempFile("countryInfo", ".txt");
+        try (InputStream in = CountryDirectoryTest.class.getResourceAsStream("/countryInfo.txt")) {
+            Files.copy(in, countryInfo, StandardCopyOption.REPLACE_EXISTING);
+        }
+        String table = new String(Files.readAllBytes(countryInfo), UTF_8);
+        Files.write(countryInfo, table.replace("\nGB\tGBR\t826\t", "\nGBX\tGB\t826\t").getBytes(UTF_8));
+        String shapes = "geoNameId\tgeoJSON\n"
+                + "2635167\t{\"type\":\"Polygon\",\"coordinates\":[[[-1,50],[1,50],[1,52],[-1,52],[-1,50]]]}\n";
+        try {
+            CountryDirectory custom = ReverseGeocoder.builder()
+                    .countryInfo(countryInfo)
+                    .shapes(Channels.newChannel(new ByteArrayInputStream(shapes.getBytes(UTF_8))))
+                    .build()
+                    .directory();
+
+            assertEquals("GBX", custom.byNumeric(826).iso());
+            assertNull(custom.byAlpha2("GB"));
+            assertNull(custom.byAlpha3("GBX"));
+            // where a two letter alpha-3 code would have been filed
+            assertNull(custom.byAlpha3("AGB"));
+            assertEquals("FR", custom.byAlpha3("FRA").iso());
+        } finally {
+            Files.delete(countryInfo);
+        }
+    }
+
+    @Test
+    void restrictedGeocoderHasEveryCountry() {
+        ReverseGeocoder britain = ReverseGeocoder.builder().countries("GB").build();
+
+        Country france = britain.directory().byAlpha2("FR");
+
+        assertSame(britain.country(france.ordinal()), france);
+        assertEquals(geocoder.countryCount(), britain.countryCount());
+    }
+}
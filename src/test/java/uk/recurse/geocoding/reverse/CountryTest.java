@@ -60,6 +60,11 @@ class CountryTest {
         assertEquals(uk.continent(), "EU");
     }
 
+    @Test
+    void ordinal() {
+        assertEquals(0, uk.ordinal());
+    }
+
     @Test
     void locales() {
         List<Locale> locales = Arrays.asList(
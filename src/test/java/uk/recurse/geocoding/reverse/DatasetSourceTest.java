@@ -0,0 +1,110 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetSourceTest {
+
+    private static ReverseGeocoder bundled;
+    private static Path json;
+    private static Path snapshot;
+    private static Path countryInfo;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        bundled = new ReverseGeocoder();
+        json = copy("/shapes_simplified_low.json");
+        snapshot = copy("/shapes_simplified_low.bin");
+        countryInfo = copy("/countryInfo.txt");
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        Files.delete(json);
+        Files.delete(snapshot);
+        Files.delete(countryInfo);
+    }
+
+    @Test
+    void mappedFilesMatchBundledShapes() {
+        ReverseGeocoder fromJson = ReverseGeocoder.builder().shapes(json).countryInfo(countryInfo).build();
+        ReverseGeocoder fromSnapshot = ReverseGeocoder.builder().shapes(snapshot).build();
+
+        assertSameLookups(fromJson);
+        assertSameLookups(fromSnapshot);
+        assertTrue(fromJson.toString().contains(json.toString()));
+        assertTrue(fromJson.loadNanos() > 0);
+    }
+
+    @Test
+    void channels() throws IOException {
+        ReverseGeocoder fromStream;
+        try (InputStream in = Files.newInputStream(json)) {
+            fromStream = ReverseGeocoder.builder().shapes(Channels.newChannel(in)).build();
+        }
+        ReverseGeocoder fromFileChannel;
+        try (FileChannel channel = FileChannel.open(snapshot)) {
+            fromFileChannel = ReverseGeocoder.builder().shapes(channel).build();
+            assertTrue(channel.isOpen());
+        }
+
+        assertSameLookups(fromStream);
+        assertSameLookups(fromFileChannel);
+    }
+
+    @Test
+    void geoNamesTable() {
+        String table = "geoNameId\tgeoJSON\n"
+                + "2635167\t{\"type\":\"Polygon\",\"coordinates\":[[[-1,50],[1,50],[1,52],[-1,52],[-1,50]]]}\n"
+                + "3017382\t{\"coordinates\":[[[[2,46],[3,46],[3,47],[2,46]]]],\"type\":\"MultiPolygon\"}\n";
+        ReverseGeocoder geocoder = ReverseGeocoder.builder()
+                .shapes(Channels.newChannel(new ByteArrayInputStream(table.getBytes(UTF_8))))
+                .build();
+
+        assertEquals("GB", geocoder.getCountry(51, 0).get().iso());
+        assertEquals("FR", geocoder.getCountry(46.2, 2.9).get().iso());
+        assertFalse(geocoder.getCountry(0, 0).isPresent());
+    }
+
+    @Test
+    void rejectsMissingSources() {
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().shapes((Path) null));
+        Path missing = json.resolveSibling(json.getFileName() + ".missing");
+        ReverseGeocoder.Builder builder = ReverseGeocoder.builder().shapes(missing);
+        assertThrows(UncheckedIOException.class, builder::build);
+    }
+
+    private static void assertSameLookups(ReverseGeocoder geocoder) {
+        for (float lat = -89.5f; lat < 90; lat += 1.5f) {
+            for (float lon = -179.5f; lon < 180; lon += 1.5f) {
+                assertEquals(bundled.getCountryOrdinal(lat, lon), geocoder.getCountryOrdinal(lat, lon),
+                        "lat=" + lat + " lon=" + lon);
+            }
+        }
+    }
+
+    private static Path copy(String resource) throws IOException {
+        Path file = Files.createTempFile("dataset", resource.substring(resource.lastIndexOf('.')));
+        try (InputStream in = DatasetSourceTest.class.getResourceAsStream(resource)) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,136 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DouglasPeuckerTest {
+
+    private static ReverseGeocoder floats;
+    private static ReverseGeocoder simplified;
+
+    @BeforeAll
+    static void setup() {
+        floats = new ReverseGeocoder();
+        simplified = ReverseGeocoder.builder().simplify(0.01).build();
+    }
+
+    @Test
+    void dropsVerticesWithinTolerance() {
+        // a square with a bump of 0.05 on its bottom edge and a bump of 0.5 on its top edge
+        float[] lat = {0, 0.05f, 0, 10, 10.5f, 10, 0};
+        float[] lon = {0, 5, 10, 10, 5, 0, 0};
+
+        int[] kept = DouglasPeucker.simplify(lat, lon, 0.1);
+
+        assertArrayEquals(new int[]{0, 2, 3, 4, 5, 6}, kept);
+    }
+
+    @Test
+    void nothingToDrop() {
+        float[] lat = {0, 0, 10, 10, 0};
+        float[] lon = {0, 10, 10, 0, 0};
+
+        assertNull(DouglasPeucker.simplify(lat, lon, 0.1));
+    }
+
+    @Test
+    void keepsTriangleOfTinyRing() {
+        float[] lat = {0, 0, 0.001f, 0.002f, 0.001f, 0};
+        float[] lon = {0, 0.001f, 0.002f, 0.001f, 0, 0};
+
+        int[] kept = DouglasPeucker.simplify(lat, lon, 1);
+
+        assertEquals(4, kept.length);
+        assertEquals(0, kept[0]);
+        assertEquals(lat.length - 1, kept[3]);
+    }
+
+    @Test
+    void keepsRingThatWouldCrossItself() {
+        // the bump at the bottom is within the tolerance, but the notch from the top reaches
+        // below the straight bottom edge that would replace it
+        float[] lat = {10, 0, -0.4f, 0, 10, 10, -0.2f, 10, 10};
+        float[] lon = {0, 0, 5, 10, 10, 6, 5, 4, 0};
+
+        assertTrue(DouglasPeucker.isSimple(lat, lon, new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8}));
+        assertFalse(DouglasPeucker.isSimple(lat, lon, new int[]{0, 1, 3, 4, 5, 6, 7, 8}));
+        assertNull(DouglasPeucker.simplify(lat, lon, 0.5));
+    }
+
+    @Test
+    void edgeDoublingBackIsNotSimple() {
+        float[] lat = {0, 0, 0, 10, 0};
+        float[] lon = {0, 10, 5, 5, 0};
+
+        assertFalse(DouglasPeucker.isSimple(lat, lon, new int[]{0, 1, 2, 3, 4}));
+    }
+
+    @Test
+    void unchangedRingIsShared() {
+        Ring triangle = new Ring(new float[]{0, 0, 1, 0}, new float[]{0, 1, 0, 0});
+
+        assertSame(triangle, triangle.simplify(10));
+    }
+
+    @Test
+    void preservesRingsAndHoles() throws IOException {
+        FeatureCollection shapes = ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries());
+
+        FeatureCollection simplifiedShapes = shapes.mapRings(ring -> ring.simplify(0.1));
+
+        assertEquals(shapes.world().rings().count(), simplifiedShapes.world().rings().count());
+        assertTrue(simplifiedShapes.world().rings().allMatch(ring -> ring.size() >= 4));
+        assertTrue(shapes.world().rings().allMatch(ring -> {
+            Ring simplifiedRing = ring.simplify(0.1);
+            return simplifiedRing == ring || DouglasPeucker.isSimple(simplifiedRing.latitudes(),
+                    simplifiedRing.longitudes(), IntStream.range(0, simplifiedRing.size()).toArray());
+        }));
+    }
+
+    @Test
+    void reportsVertexCounts() {
+        assertTrue(simplified.vertexCount() < simplified.loadedVertexCount());
+        assertEquals(floats.vertexCount(), simplified.loadedVertexCount());
+        assertTrue(simplified.toString().contains("vertices=" + simplified.vertexCount() + " of "));
+    }
+
+    @Test
+    void agreesWithBaselineNearlyEverywhere() throws IOException {
+        List<String[]> baseline;
+        try (InputStream in = DouglasPeuckerTest.class.getResourceAsStream("/baselineCities.csv")) {
+            baseline = new BufferedReader(new InputStreamReader(in, UTF_8)).lines()
+                    .map(line -> line.split(","))
+                    .collect(toList());
+        }
+        long agree = baseline.stream()
+                .filter(row -> simplified.getCountry(Float.parseFloat(row[0]), Float.parseFloat(row[1]))
+                        .filter(country -> country.iso().equals(row[2]))
+                        .isPresent())
+                .count();
+
+        assertTrue(agree > 0.999 * baseline.size(), agree + " of " + baseline.size());
+    }
+
+    @Test
+    void rejectsNonPositiveTolerance() {
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().simplify(0));
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().simplify(Double.NaN));
+    }
+}
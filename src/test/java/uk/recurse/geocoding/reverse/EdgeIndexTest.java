@@ -0,0 +1,70 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EdgeIndexTest {
+
+    @Test
+    void matchesPnpolyOnLargeRings() throws IOException {
+        Random random = new Random(0);
+        ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries()).world().rings()
+                .filter(ring -> ring.latitudes().length >= EdgeIndex.MIN_VERTICES)
+                .forEach(ring -> {
+                    float[] lat = ring.latitudes();
+                    float[] lon = ring.longitudes();
+                    EdgeIndex index = new EdgeIndex(lat, lon);
+                    BoundingBox box = ring.boundingBox();
+                    for (int i = 0; i < 1000; i++) {
+                        float y = box.minLatitude() + random.nextFloat() * (box.maxLatitude() - box.minLatitude());
+                        float x = box.minLongitude() + random.nextFloat() * (box.maxLongitude() - box.minLongitude());
+                        assertEquals(FloatVertices.pnpoly(lat, lon, y, x), index.contains(y, x), "lat=" + y + " lon=" + x);
+                    }
+                });
+    }
+
+    @Test
+    void distanceMatchesFullScanOnLargeRings() throws IOException {
+        Random random = new Random(0);
+        ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries()).world().rings()
+                .filter(ring -> ring.latitudes().length >= 1000)
+                .forEach(ring -> {
+                    float[] lat = ring.latitudes();
+                    float[] lon = ring.longitudes();
+                    EdgeIndex index = new EdgeIndex(lat, lon);
+                    BoundingBox box = ring.boundingBox();
+                    for (int i = 0; i < 20; i++) {
+                        // a margin around the box, so some points are outside the latitude range
+                        float y = box.minLatitude() - 1 + random.nextFloat() * (box.maxLatitude() - box.minLatitude() + 2);
+                        float x = box.minLongitude() + random.nextFloat() * (box.maxLongitude() - box.minLongitude());
+                        double expected = GreatCircle.ringDistance(lat, lon, y, x, Double.POSITIVE_INFINITY);
+                        assertEquals(expected, index.distance(y, x, Double.POSITIVE_INFINITY), 1e-12, "lat=" + y + " lon=" + x);
+                    }
+                });
+    }
+
+    @Test
+    void square() {
+        float[] lat = {0, 0, 10, 10};
+        float[] lon = {0, 10, 10, 0};
+        EdgeIndex index = new EdgeIndex(lat, lon);
+
+        assertTrue(index.contains(5, 5));
+        assertTrue(index.contains(0, 5));
+        assertFalse(index.contains(10, 5));
+        assertFalse(index.contains(5, 11));
+        assertFalse(index.contains(-1, 5));
+        assertFalse(index.contains(11, 5));
+        // the nearest point of a meridian is slightly poleward of the point's latitude
+        assertEquals(Math.asin(Math.cos(Math.toRadians(5)) * Math.sin(Math.toRadians(2))),
+                index.distance(5, 8, Double.POSITIVE_INFINITY), 1e-12);
+        assertEquals(GreatCircle.distance(-1, -1, 0, 0), index.distance(-1, -1, Double.POSITIVE_INFINITY), 1e-12);
+        assertEquals(0.01, index.distance(12, 5, 0.01));
+    }
+}
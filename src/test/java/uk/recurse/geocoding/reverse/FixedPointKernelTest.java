@@ -0,0 +1,50 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FixedPointKernelTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 8, 17, 63, 64, 65, 71, 100, 1000})
+    void defaultMatchesScalarWith16BitOffsets(int vertices) {
+        Random random = new Random(vertices);
+        char[] lat = new char[vertices];
+        char[] lon = new char[vertices];
+        for (int i = 0; i < vertices; i++) {
+            // spans the sign bit of a short
+            lat[i] = (char) random.nextInt(Character.MAX_VALUE + 1);
+            lon[i] = (char) random.nextInt(Character.MAX_VALUE + 1);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            // every other query is level with a vertex
+            double y = (i & 1) == 0 ? lat[random.nextInt(vertices)] : random.nextDouble() * 70_000 - 2_000;
+            double x = random.nextDouble() * 70_000 - 2_000;
+            assertEquals(FixedPointKernel.SCALAR.contains(lat, lon, y, x),
+                    FixedPointKernel.DEFAULT.contains(lat, lon, y, x));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 8, 17, 63, 64, 65, 71, 100, 1000})
+    void defaultMatchesScalarWith32BitOffsets(int vertices) {
+        Random random = new Random(vertices);
+        int[] lat = new int[vertices];
+        int[] lon = new int[vertices];
+        for (int i = 0; i < vertices; i++) {
+            lat[i] = random.nextInt(180_000_000);
+            lon[i] = random.nextInt(360_000_000);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            // every other query is level with a vertex
+            double y = (i & 1) == 0 ? lat[random.nextInt(vertices)] : random.nextDouble() * 190_000_000 - 5_000_000;
+            double x = random.nextDouble() * 370_000_000 - 5_000_000;
+            assertEquals(FixedPointKernel.SCALAR.contains(lat, lon, y, x),
+                    FixedPointKernel.DEFAULT.contains(lat, lon, y, x));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class FixedPointVerticesTest {
+
+    private static ReverseGeocoder floats;
+    private static ReverseGeocoder fixedPoint;
+
+    @BeforeAll
+    static void setup() {
+        floats = new ReverseGeocoder();
+        fixedPoint = ReverseGeocoder.builder().fixedPointVertices(0.001).build();
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/baselineCities.csv")
+    void reverseGeocoding(float lat, float lon, String expectedIso) {
+        String actualIso = fixedPoint.getCountry(lat, lon)
+                .map(Country::iso)
+                .orElseGet(() -> fail("Country not found"));
+
+        assertEquals(expectedIso, actualIso, "lat=" + lat + " lon=" + lon);
+    }
+
+    @Test
+    void randomLocationsMatchFloats() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100_000; i++) {
+            float lat = random.nextFloat() * 180 - 90;
+            float lon = random.nextFloat() * 360 - 180;
+            assertEquals(floats.getCountryOrdinal(lat, lon), fixedPoint.getCountryOrdinal(lat, lon),
+                    "lat=" + lat + " lon=" + lon);
+        }
+    }
+
+    @Test
+    void smallerFootprint() {
+        assertTrue(fixedPoint.footprint() < floats.footprint(),
+                "fixed point=" + fixedPoint.footprint() + " floats=" + floats.footprint());
+    }
+
+    @Test
+    void largeRingsUse32BitOffsets() {
+        float[] lat = {0, 0, 80, 80};
+        float[] lon = {0, 100, 100, 0};
+        Ring ring = new Ring(lat, lon).quantize(0.001);
+
+        assertTrue(ring.contains(40, 50));
+        assertFalse(ring.contains(40, 101));
+        assertArrayEquals(lat, ring.latitudes());
+        assertArrayEquals(lon, ring.longitudes());
+    }
+
+    @Test
+    void edgeQueriesMatchDecodedRing() throws IOException {
+        Random random = new Random(0);
+        ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries()).world().rings().forEach(original -> {
+            Ring ring = original.quantize(0.001);
+            Ring decoded = new Ring(ring.latitudes(), ring.longitudes());
+            BoundingBox box = ring.boundingBox();
+            float lat = box.minLatitude() + random.nextFloat() * (box.maxLatitude() - box.minLatitude());
+            float lon = box.minLongitude() + random.nextFloat() * (box.maxLongitude() - box.minLongitude());
+
+            // the slab index of the decoded ring measures edges in the other direction, which
+            // splits long edges into different pieces
+            double distance = decoded.distance(lat, lon, Math.PI);
+            assertEquals(distance, ring.distance(lat, lon, Math.PI), distance * 1e-3);
+            assertEquals(decoded.crosses(lat - 0.1, lon - 0.1, lat + 0.1, lon + 0.1),
+                    ring.crosses(lat - 0.1, lon - 0.1, lat + 0.1, lon + 0.1));
+            assertEquals(ring.size(), ring.edges(lat));
+        });
+    }
+
+    @Test
+    void rejectsInvalidResolution() {
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().fixedPointVertices(0));
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().fixedPointVertices(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().fixedPointVertices(1e-9));
+        assertThrows(IllegalArgumentException.class,
+                () -> ReverseGeocoder.builder().fixedPointVertices(Double.POSITIVE_INFINITY));
+        ReverseGeocoder.builder().fixedPointVertices(FixedPointVertices.MIN_RESOLUTION);
+    }
+}
@@ -0,0 +1,106 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlatRTreeTest {
+
+    private static Geometry world;
+    private static FlatRTree flat;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        world = ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries()).world();
+        flat = new FlatRTree(world);
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/baselineCities.csv")
+    void matchesRecursiveTree(float lat, float lon) {
+        assertEquals(world.getCountryOrdinal(lat, lon), flat.getCountryOrdinal(lat, lon), "lat=" + lat + " lon=" + lon);
+    }
+
+    @Test
+    void randomLocationsMatchRecursiveTree() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100_000; i++) {
+            float lat = random.nextFloat() * 180 - 90;
+            float lon = random.nextFloat() * 360 - 180;
+            assertEquals(world.getCountryOrdinal(lat, lon), flat.getCountryOrdinal(lat, lon), "lat=" + lat + " lon=" + lon);
+        }
+    }
+
+    @Test
+    void groupedDescentMatchesSingleLookups() {
+        Random random = new Random(0);
+        for (int size : new int[]{1, 7, 64, 1000}) {
+            // a compact group around a random centre, as produced by sorting a batch spatially
+            float centreLat = random.nextFloat() * 160 - 80;
+            float centreLon = random.nextFloat() * 340 - 170;
+            float[] lat = new float[size];
+            float[] lon = new float[size];
+            for (int i = 0; i < size; i++) {
+                lat[i] = centreLat + random.nextFloat() * 10 - 5;
+                lon[i] = centreLon + random.nextFloat() * 10 - 5;
+            }
+            int[] ordinals = new int[size];
+
+            flat.getCountryOrdinals(lat, lon, size, ordinals);
+
+            for (int i = 0; i < size; i++) {
+                assertEquals(flat.getCountryOrdinal(lat[i], lon[i]), ordinals[i], "lat=" + lat[i] + " lon=" + lon[i]);
+            }
+        }
+    }
+
+    @Test
+    void nearestPolygonMatchesExhaustiveSearch() {
+        double maxDistance = GreatCircle.toRadians(500);
+        Random random = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            float lat = random.nextFloat() * 180 - 90;
+            float lon = random.nextFloat() * 360 - 180;
+
+            int node = flat.getNearestPolygon(lat, lon, maxDistance);
+
+            double nearest = maxDistance;
+            for (int n = 0; n < flat.size(); n++) {
+                Polygon polygon = flat.polygon(n);
+                if (polygon != null && polygon.country() >= 0) {
+                    nearest = Math.min(nearest, distance(polygon, lat, lon));
+                }
+            }
+            // neighbouring polygons share border edges, so compare distances rather than nodes
+            if (nearest < maxDistance) {
+                assertEquals(nearest, distance(flat.polygon(node), lat, lon), "lat=" + lat + " lon=" + lon);
+            } else {
+                assertEquals(-1, node, "lat=" + lat + " lon=" + lon);
+            }
+        }
+    }
+
+    private static double distance(Polygon polygon, float lat, float lon) {
+        return polygon.rings().mapToDouble(ring -> GreatCircle.ringDistance(
+                ring.latitudes(), ring.longitudes(), lat, lon, Double.POSITIVE_INFINITY)).min().getAsDouble();
+    }
+
+    @Test
+    void singleLeaf() {
+        Polygon polygon = new Polygon(new Ring(new Point(0, 0), new Point(0, 1), new Point(1, 1), new Point(1, 0)),
+                SortTileRecursive.pack(Stream.empty()), 7);
+
+        FlatRTree tree = new FlatRTree(polygon);
+
+        assertEquals(1, tree.size());
+        assertEquals(7, tree.getCountryOrdinal(0.5f, 0.5f));
+        assertEquals(-1, tree.getCountryOrdinal(1.5f, 0.5f));
+    }
+}
@@ -0,0 +1,94 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoJsonReaderTest {
+
+    private static Map<String, Country> countries;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        countries = ReverseGeocoder.loadCountries();
+    }
+
+    @Test
+    void identicalToDatabind() throws IOException {
+        FeatureCollection streamed = ReverseGeocoder.loadShapes(countries);
+        FeatureCollection bound;
+        try (InputStream shapes = GeoJsonReaderTest.class.getResourceAsStream("/shapes_simplified_low.json")) {
+            bound = ReverseGeocoder.bindShapes(countries, shapes);
+        }
+
+        assertArrayEquals(snapshot(bound), snapshot(streamed));
+    }
+
+    @Test
+    void fieldOrderAndIntegerCoordinates() throws IOException {
+        String json = "{\"features\": [{\"geometry\": {\"coordinates\": [[[[0, 0], [10, 0], [10, 10], [0, 0]]],"
+                + " [[[20, 20], [30.5, 20], [30, 30], [20, 20]], [[25, 22], [26, 22], [26, 23], [25, 22]]]],"
+                + " \"type\": \"MultiPolygon\"}, \"type\": \"Feature\","
+                + " \"properties\": {\"name\": \"United Kingdom\", \"geoNameId\": \"2635167\"}}],"
+                + " \"type\": \"FeatureCollection\"}";
+
+        FeatureCollection streamed = read(json);
+        FeatureCollection bound = ReverseGeocoder.bindShapes(countries, new ByteArrayInputStream(json.getBytes(UTF_8)));
+
+        assertArrayEquals(snapshot(bound), snapshot(streamed));
+        assertEquals("GB", streamed.getCountry(5, 8).iso());
+        assertEquals("GB", streamed.getCountry(21, 25).iso());
+        assertNull(streamed.getCountry(22.2f, 25.8f));
+    }
+
+    @Test
+    void parsesDecimalsLikeParseDouble() {
+        String[] numbers = {
+                "0", "-0", "12", "-7.5", "0.1", "51.507222", "-0.1275", "179.99999999999",
+                "0.000000000000000000001", "123456789012345", "1234567890123456", "1.5e3", "-2E-2"
+        };
+        for (String number : numbers) {
+            char[] text = (" " + number + " ").toCharArray();
+
+            double value = GeoJsonReader.parseDecimal(text, 1, number.length());
+
+            if (!Double.isNaN(value)) {
+                assertEquals(Double.parseDouble(number), value, number);
+            }
+        }
+        assertTrue(Double.isNaN(GeoJsonReader.parseDecimal("1.5e3".toCharArray(), 0, 5)));
+        assertTrue(Double.isNaN(GeoJsonReader.parseDecimal("1234567890123456".toCharArray(), 0, 16)));
+    }
+
+    @Test
+    void rejectsOtherGeometries() {
+        String json = "{\"features\": [{\"properties\": {}, \"geometry\": {\"type\": \"MultiPolygon\","
+                + " \"coordinates\": [[[0, 0], [1, 0], [1, 1], [0, 0]]]}}]}";
+
+        assertThrows(IOException.class, () -> read(json));
+        assertThrows(IOException.class, () -> read("{\"features\": [{\"properties\": {}}]}"));
+        assertThrows(IOException.class, () -> read("[]"));
+    }
+
+    private static FeatureCollection read(String json) throws IOException {
+        return GeoJsonReader.read(new ByteArrayInputStream(json.getBytes(UTF_8)), countries);
+    }
+
+    private static byte[] snapshot(FeatureCollection collection) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Snapshot.write(collection, countries, out);
+        return out.toByteArray();
+    }
+}
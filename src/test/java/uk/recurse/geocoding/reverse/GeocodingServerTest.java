@@ -0,0 +1,200 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeocodingServerTest {
+
+    private static ReverseGeocoder geocoder;
+    private static GeocodingServer server;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        geocoder = new ReverseGeocoder();
+        server = GeocodingServer.start(geocoder, new InetSocketAddress("127.0.0.1", 0), 2);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        server.close();
+    }
+
+    @Test
+    void singleCountry() throws IOException {
+        Response london = request("GET", "/country?lat=51.507222&lon=-0.1275", null, null);
+
+        assertEquals(200, london.status);
+        assertTrue(london.text().startsWith("{\"iso\":\"GB\",\"iso3\":\"GBR\",\"numeric\":826,"), london.text());
+    }
+
+    @Test
+    void notInCountry() throws IOException {
+        assertEquals(404, request("GET", "/country?lat=0&lon=0", null, null).status);
+    }
+
+    @Test
+    void badRequests() throws IOException {
+        assertEquals(400, request("GET", "/country?lat=91&lon=0", null, null).status);
+        assertEquals(400, request("GET", "/country?lat=abc&lon=0", null, null).status);
+        assertEquals(400, request("GET", "/country", null, null).status);
+        assertEquals(405, request("DELETE", "/country?lat=0&lon=0", null, null).status);
+        byte[] partial = new byte[12];
+        assertEquals(400, request("POST", "/countries", GeocodingServer.BINARY, partial).status);
+        byte[] large = new byte[8 * 1024 * 1024 + 4];
+        assertEquals(400, request("POST", "/countries", GeocodingServer.BINARY, large).status);
+        assertEquals(405, request("PUT", "/countries", "text/plain", large).status);
+    }
+
+    @Test
+    void malformedContentLength() throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", server.port())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /countries HTTP/1.1\r\nHost: 127.0.0.1\r\nContent-Type: " + GeocodingServer.BINARY
+                    + "\r\nContent-Length: eight\r\nConnection: close\r\n\r\n").getBytes(UTF_8));
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            String status = in.readLine();
+
+            assertTrue(status.startsWith("HTTP/1.1 400"), status);
+        }
+    }
+
+    @Test
+    void countriesInOrdinalOrder() throws IOException {
+        String countries = request("GET", "/countries", null, null).text();
+
+        assertTrue(countries.startsWith("[{\"iso\":\"" + geocoder.country(0).iso() + "\""), countries);
+        assertTrue(countries.endsWith(",\"ordinal\":" + (geocoder.countryCount() - 1) + "}]"), countries);
+    }
+
+    @Test
+    void textBatch() throws IOException {
+        Random random = new Random(0);
+        StringBuilder body = new StringBuilder("51.507222,-0.1275\r\nnot a number\n\n48.71785\t2.49338\n");
+        List<String> expected = new ArrayList<>();
+        expected.add("GB");
+        expected.add("");
+        expected.add("");
+        expected.add("FR");
+        for (int i = 0; i < 3 * GeocodingServer.BATCH_SIZE; i++) {
+            float lat = random.nextFloat() * 180 - 90;
+            float lon = random.nextFloat() * 360 - 180;
+            body.append(lat).append(' ').append(lon).append('\n');
+            expected.add(geocoder.getCountry(lat, lon).map(Country::iso).orElse(""));
+        }
+        body.append("-35.2809,149.13");
+        expected.add("AU");
+
+        Response response = request("POST", "/countries", "text/plain", body.toString().getBytes(UTF_8));
+
+        assertEquals(200, response.status);
+        List<String> lines = new ArrayList<>();
+        for (String line : response.text().split("\n", -1)) {
+            lines.add(line);
+        }
+        assertEquals("", lines.remove(lines.size() - 1));
+        assertEquals(expected, lines);
+    }
+
+    @Test
+    void overlongTextLines() throws IOException {
+        char[] filler = new char[1024 * 1024];
+        Arrays.fill(filler, '1');
+        String body = "51.507222,-0.1275\n" + new String(filler) + "\n48.71785,2.49338\n" + new String(filler, 0, 100);
+
+        Response response = request("POST", "/countries", "text/plain", body.getBytes(UTF_8));
+        Response unbroken = request("POST", "/countries", "text/plain", new String(filler).getBytes(UTF_8));
+
+        assertEquals(200, response.status);
+        assertEquals("GB\n\nFR\n\n", response.text());
+        assertEquals("\n", unbroken.text());
+    }
+
+    @Test
+    void binaryBatch() throws IOException {
+        Random random = new Random(0);
+        int n = 2 * GeocodingServer.BATCH_SIZE + 5;
+        ByteBuffer body = ByteBuffer.allocate(8 * n);
+        short[] expected = new short[n];
+        for (int i = 0; i < n; i++) {
+            float lat = random.nextFloat() * 180 - 90;
+            float lon = random.nextFloat() * 360 - 180;
+            body.putFloat(lat).putFloat(lon);
+            expected[i] = (short) geocoder.getCountryOrdinal(lat, lon);
+        }
+
+        Response response = request("POST", "/countries", GeocodingServer.BINARY, body.array());
+
+        assertEquals(200, response.status);
+        assertEquals(2 * n, response.body.length);
+        ByteBuffer ordinals = ByteBuffer.wrap(response.body);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected[i], ordinals.getShort());
+        }
+    }
+
+    private static Response request(String method, String path, String type, byte[] body) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.port() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setRequestProperty("Content-Type", type);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            } catch (IOException e) {
+                // the server may answer and close before the whole body is sent
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = stream.read(buffer)) >= 0) {
+                    bytes.write(buffer, 0, n);
+                }
+            }
+        }
+        return new Response(status, bytes.toByteArray());
+    }
+
+    private static class Response {
+
+        final int status;
+        final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        String text() {
+            return new String(body, UTF_8);
+        }
+    }
+}
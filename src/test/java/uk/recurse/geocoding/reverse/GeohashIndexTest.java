@@ -0,0 +1,178 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeohashIndexTest {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private static FeatureCollection featureCollection;
+    private static ReverseGeocoder geocoder;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        featureCollection = ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries());
+        geocoder = ReverseGeocoder.builder().geohash(3).build();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 5})
+    void randomGeohashesMatchCentre(int precision) {
+        GeohashIndex index = new GeohashIndex(featureCollection.world(), featureCollection, precision);
+        Random random = new Random(precision);
+        for (int i = 0; i < 100_000; i++) {
+            long geohash = encode(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+                    1 + random.nextInt(GeohashIndex.MAX_LENGTH));
+            assertEquals(GeohashIndex.centreOrdinal(geohash, featureCollection), index.getCountryOrdinal(geohash),
+                    toString(geohash));
+        }
+    }
+
+    @Test
+    void geohashesAlongBordersMatchCentre() {
+        GeohashIndex index = new GeohashIndex(featureCollection.world(), featureCollection, 4);
+        Random random = new Random(0);
+        featureCollection.world().rings().forEach(ring -> {
+            float[] lat = ring.latitudes();
+            float[] lon = ring.longitudes();
+            for (int i = 0; i < lat.length; i++) {
+                long geohash = encode(lat[i] + (random.nextDouble() - 0.5) * 0.1,
+                        lon[i] + (random.nextDouble() - 0.5) * 0.1, 4 + random.nextInt(6));
+                assertEquals(GeohashIndex.centreOrdinal(geohash, featureCollection), index.getCountryOrdinal(geohash),
+                        toString(geohash));
+            }
+        });
+    }
+
+    @Test
+    void knownGeohashes() {
+        assertEquals("FR", geocoder.getCountryByGeohash("u09tvw0").get().iso());
+        assertEquals("GB", geocoder.getCountryByGeohash("GCPVJ0").get().iso());
+        assertEquals("AU", geocoder.getCountryByGeohash(GeohashIndex.parse("r3dp")).get().iso());
+        assertFalse(geocoder.getCountryByGeohash("7zzzz").isPresent());
+        assertEquals(-1, geocoder.getCountryOrdinalByGeohash("7zzzz"));
+    }
+
+    @Test
+    void sameAnswerWithoutTable() {
+        ReverseGeocoder plain = new ReverseGeocoder();
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long geohash = encode(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 1 + random.nextInt(8));
+            assertEquals(plain.getCountryOrdinalByGeohash(geohash), geocoder.getCountryOrdinalByGeohash(geohash),
+                    toString(geohash));
+        }
+    }
+
+    @Test
+    void parse() {
+        assertEquals("u09tvw0", toString(encode(48.8566, 2.3522, 7)));
+        assertEquals(encode(48.8566, 2.3522, 7), GeohashIndex.parse("u09tvw0"));
+        assertEquals(GeohashIndex.parse("u09tvw0f6"), GeohashIndex.parse("U09TVW0F6"));
+        assertEquals("zzzzzzzzzzzz", toString(GeohashIndex.parse("zzzzzzzzzzzz")));
+    }
+
+    @Test
+    void rejectsInvalidGeohashes() {
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountryByGeohash(""));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountryByGeohash("u09tvw0f6u09t"));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountryByGeohash("u09a"));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountryByGeohash("u09é"));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountryByGeohash(0L));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountryByGeohash(13L));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountryByGeohash(1L << 40 | 2));
+    }
+
+    @Test
+    void tableCoversGeohashes() throws IOException {
+        StringBuilder out = new StringBuilder();
+        geocoder.writeGeohashTable(out);
+        String[] lines = out.toString().split("\n");
+        assertEquals("geohash,iso,exact", lines[0]);
+        Map<String, String[]> rows = new HashMap<>();
+        String previous = "";
+        for (int i = 1; i < lines.length; i++) {
+            String[] row = lines[i].split(",");
+            assertTrue(row[0].compareTo(previous) > 0, row[0] + " after " + previous);
+            previous = row[0];
+            rows.put(row[0], row);
+        }
+
+        Random random = new Random(2);
+        for (int i = 0; i < 100_000; i++) {
+            String geohash = toString(encode(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 3));
+            String[] match = null;
+            for (int length = 1; length <= geohash.length(); length++) {
+                String[] row = rows.get(geohash.substring(0, length));
+                if (row != null) {
+                    assertTrue(match == null, geohash + " has two prefixes");
+                    match = row;
+                }
+            }
+            String iso = geocoder.getCountryByGeohash(geohash).map(Country::iso).orElse(null);
+            if (match == null) {
+                assertEquals(null, iso, geohash);
+            } else {
+                assertEquals(iso, match[1], geohash);
+            }
+        }
+    }
+
+    @Test
+    void tableRequiresPrecision() {
+        assertThrows(IllegalStateException.class, () -> new ReverseGeocoder().writeGeohashTable(new StringBuilder()));
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().geohash(0));
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().geohash(7));
+    }
+
+    // packs the geohash of a coordinate with the given number of characters
+    private static long encode(double lat, double lon, int length) {
+        double minLat = -90;
+        double maxLat = 90;
+        double minLon = -180;
+        double maxLon = 180;
+        long bits = 0;
+        for (int i = 0; i < 5 * length; i++) {
+            if ((i & 1) == 0) {
+                double mid = (minLon + maxLon) / 2;
+                bits = bits << 1 | (lon >= mid ? 1 : 0);
+                if (lon >= mid) {
+                    minLon = mid;
+                } else {
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                bits = bits << 1 | (lat >= mid ? 1 : 0);
+                if (lat >= mid) {
+                    minLat = mid;
+                } else {
+                    maxLat = mid;
+                }
+            }
+        }
+        return bits << 4 | length;
+    }
+
+    private static String toString(long geohash) {
+        int length = (int) (geohash & 15);
+        StringBuilder chars = new StringBuilder();
+        for (int i = length - 1; i >= 0; i--) {
+            chars.append(BASE32.charAt((int) (geohash >>> (4 + 5 * i)) & 31));
+        }
+        return chars.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GreatCircleTest {
+
+    @Test
+    void londonToParis() {
+        double distance = GreatCircle.distance(51.507222, -0.1275, 48.856613, 2.352222);
+
+        assertEquals(343.5, GreatCircle.toKm(distance), 0.5);
+    }
+
+    @Test
+    void boxDistanceIsZeroInside() {
+        assertEquals(0, GreatCircle.boxDistance(10, 20, 0, 0, 30, 40));
+    }
+
+    @Test
+    void boxDistanceIsLowerBoundOfBoundary() {
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            float minLat = random.nextFloat() * 160 - 80;
+            float minLon = random.nextFloat() * 340 - 180;
+            float maxLat = minLat + random.nextFloat() * (90 - minLat);
+            float maxLon = minLon + random.nextFloat() * (180 - minLon);
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+
+            double bound = GreatCircle.boxDistance(lat, lon, minLat, minLon, maxLat, maxLon);
+
+            double nearest = Double.POSITIVE_INFINITY;
+            for (int k = 0; k <= 100; k++) {
+                double y = minLat + ((double) maxLat - minLat) * k / 100;
+                double x = minLon + ((double) maxLon - minLon) * k / 100;
+                nearest = Math.min(nearest, GreatCircle.distance(lat, lon, y, minLon));
+                nearest = Math.min(nearest, GreatCircle.distance(lat, lon, y, maxLon));
+                nearest = Math.min(nearest, GreatCircle.distance(lat, lon, minLat, x));
+                nearest = Math.min(nearest, GreatCircle.distance(lat, lon, maxLat, x));
+            }
+            boolean inside = lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon;
+            assertTrue(inside || bound <= nearest + 1e-9, "box " + i);
+            // sampling the boundary overestimates by at most the spacing of the samples
+            assertTrue(inside || bound >= nearest - Math.toRadians(Math.max(maxLat - minLat, maxLon - minLon) / 100), "box " + i);
+        }
+    }
+
+    @Test
+    void ringDistanceToNearestEdge() {
+        float[] lat = {0, 0, 1, 1};
+        float[] lon = {0, 1, 1, 0};
+
+        double inside = GreatCircle.ringDistance(lat, lon, 0.5, 0.25, Double.POSITIVE_INFINITY);
+        double east = GreatCircle.ringDistance(lat, lon, 0.5, 2, Double.POSITIVE_INFINITY);
+        double corner = GreatCircle.ringDistance(lat, lon, -1, -1, Double.POSITIVE_INFINITY);
+
+        assertEquals(GreatCircle.distance(0.5, 0.25, 0.5, 0), inside, 1e-6);
+        assertEquals(GreatCircle.distance(0.5, 2, 0.5, 1), east, 1e-6);
+        assertEquals(GreatCircle.distance(-1, -1, 0, 0), corner, 1e-12);
+    }
+
+    @Test
+    void ringDistanceKeepsNearerBound() {
+        float[] lat = {0, 0, 1, 1};
+        float[] lon = {0, 1, 1, 0};
+
+        assertEquals(1e-3, GreatCircle.ringDistance(lat, lon, 0.5, 3, 1e-3));
+    }
+
+    @Test
+    void ringDistanceFollowsStraightEdges() {
+        // one edge along the 49th parallel, which a great-circle arc would leave by almost a degree
+        float[] lat = {49, 49, 60};
+        float[] lon = {-123, -95, -110};
+
+        double distance = GreatCircle.ringDistance(lat, lon, 49.05, -105, Double.POSITIVE_INFINITY);
+
+        assertEquals(GreatCircle.distance(49.05, -105, 49, -105), distance, 1e-9);
+    }
+
+    @Test
+    void edgeDistanceMatchesSampledEdge() {
+        Random random = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            double size = i % 2 == 0 ? 1 : 20;
+            float latA = random.nextFloat() * 160 - 80;
+            float lonA = random.nextFloat() * 340 - 170;
+            float latB = (float) Math.max(-89, Math.min(89, latA + (random.nextDouble() - 0.5) * 2 * size));
+            float lonB = (float) (lonA + (random.nextDouble() - 0.5) * 2 * size);
+            double lat = Math.max(-89, Math.min(89, latA + (random.nextDouble() - 0.5) * 4 * size));
+            double lon = lonA + (random.nextDouble() - 0.5) * 4 * size;
+
+            GreatCircle.Nearest nearest = new GreatCircle.Nearest(lat, lon, Math.PI);
+            nearest.add(latA, lonA, latB, lonB);
+
+            double sampled = Double.POSITIVE_INFINITY;
+            for (int k = 0; k <= 1000; k++) {
+                sampled = Math.min(sampled, GreatCircle.distance(lat, lon,
+                        latA + (latB - latA) * k / 1000.0, lonA + (lonB - lonA) * k / 1000.0));
+            }
+            // sampling the edge overestimates by at most half the spacing of the samples, and
+            // nearby pieces are measured in a plane to within 0.1%
+            double spacing = GreatCircle.distance(latA, lonA, latB, lonB) / 1000;
+            assertTrue(nearest.distance() <= sampled * (1 + 1e-3), "edge " + i);
+            assertTrue(nearest.distance() >= sampled - spacing / 2 - 1e-12, "edge " + i);
+        }
+    }
+}
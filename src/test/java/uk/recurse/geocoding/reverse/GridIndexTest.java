@@ -0,0 +1,75 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GridIndexTest {
+
+    private static FeatureCollection featureCollection;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        featureCollection = ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 6, 10})
+    void randomLocationsMatchTree(int depth) {
+        GridIndex grid = new GridIndex(featureCollection.world(), featureCollection, depth);
+        Random random = new Random(depth);
+        for (int i = 0; i < 200_000; i++) {
+            float lat = random.nextFloat() * 180 - 90;
+            float lon = random.nextFloat() * 360 - 180;
+            assertEquals(featureCollection.getCountryOrdinal(lat, lon), grid.getCountryOrdinal(lat, lon),
+                    "lat=" + lat + " lon=" + lon);
+        }
+    }
+
+    @Test
+    void pointsAlongBordersMatchTree() {
+        GridIndex grid = new GridIndex(featureCollection.world(), featureCollection, 12);
+        Random random = new Random(0);
+        featureCollection.world().rings().forEach(ring -> {
+            float[] lat = ring.latitudes();
+            float[] lon = ring.longitudes();
+            for (int i = 0; i < lat.length; i++) {
+                float pointLat = lat[i] + (random.nextFloat() - 0.5f) * 0.1f;
+                float pointLon = lon[i] + (random.nextFloat() - 0.5f) * 0.1f;
+                assertEquals(featureCollection.getCountryOrdinal(pointLat, pointLon),
+                        grid.getCountryOrdinal(pointLat, pointLon), "lat=" + pointLat + " lon=" + pointLon);
+            }
+        });
+    }
+
+    @Test
+    void extremesMatchTree() {
+        GridIndex grid = new GridIndex(featureCollection.world(), featureCollection, 8);
+        float[][] points = {{90, 180}, {-90, -180}, {90, -180}, {-90, 180}, {0, 0}, {100, 0}, {0, 200}, {Float.NaN, 0}};
+        for (float[] point : points) {
+            assertEquals(featureCollection.getCountryOrdinal(point[0], point[1]), grid.getCountryOrdinal(point[0], point[1]));
+        }
+    }
+
+    @Test
+    void deeperGridUsesMoreMemory() {
+        long shallow = new GridIndex(featureCollection.world(), featureCollection, 6).footprint();
+        long deep = new GridIndex(featureCollection.world(), featureCollection, 8).footprint();
+
+        assertTrue(shallow < deep);
+    }
+
+    @Test
+    void builderRejectsInvalidDepth() {
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().grid(0));
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().grid(17));
+    }
+}
@@ -0,0 +1,149 @@
+package uk.recurse.geocoding.reverse;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LookupStatisticsTest {
+
+    private static FeatureCollection featureCollection;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        featureCollection = ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries());
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/baselineCities.csv")
+    void tracedLookupMatchesUntraced(float lat, float lon) {
+        int[] counts = new int[3];
+        FlatRTree index = featureCollection.index();
+
+        int ordinal = index.getCountryOrdinal(lat, lon, (nodes, rings, edges) -> {
+            counts[0] = nodes;
+            counts[1] = rings;
+            counts[2] = edges;
+        });
+
+        assertEquals(index.getCountryOrdinal(lat, lon), ordinal);
+        assertTrue(counts[0] > 0);
+        assertTrue(counts[2] >= counts[1]);
+    }
+
+    @Test
+    void countsLookups() {
+        LookupStatistics statistics = new LookupStatistics(featureCollection, Long.MAX_VALUE);
+        statistics.wrap(statistics.tree(), null);
+
+        int london = statistics.getCountryOrdinal(51.507222f, -0.1275f);
+        int sea = statistics.getCountryOrdinal(0, 0);
+
+        assertEquals(featureCollection.getCountryOrdinal(51.507222f, -0.1275f), london);
+        assertEquals(-1, sea);
+        assertEquals(2, statistics.getLookups());
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(2, statistics.getTreeLookups());
+        assertTrue(statistics.getNodesVisited() > 0);
+        assertTrue(statistics.getRingsTested() > 0);
+        assertTrue(statistics.getEdgesEvaluated() >= statistics.getRingsTested());
+        assertEquals(2, Arrays.stream(statistics.getLatencyHistogram()).sum());
+        assertTrue(statistics.getLatencyP50Nanos() <= statistics.getLatencyP99Nanos());
+    }
+
+    @Test
+    void reset() {
+        LookupStatistics statistics = new LookupStatistics(featureCollection, Long.MAX_VALUE);
+        CountryCache cache = new CountryCache(statistics.tree(), 16, 1e-4);
+        statistics.wrap(cache, cache);
+        statistics.getCountryOrdinal(51.507222f, -0.1275f);
+        statistics.getCountryOrdinal(51.507222f, -0.1275f);
+
+        assertEquals(1, statistics.getCacheHits());
+        assertEquals(1, statistics.getCacheMisses());
+        assertEquals(1, statistics.getTreeLookups());
+
+        statistics.reset();
+
+        assertEquals(0, statistics.getLookups());
+        assertEquals(0, statistics.getCacheHits());
+        assertEquals(0, statistics.getCacheMisses());
+        assertEquals(0, statistics.getNodesVisited());
+        assertEquals(0, Arrays.stream(statistics.getLatencyHistogram()).sum());
+        assertEquals(0, statistics.getLatencyP99Nanos());
+    }
+
+    @Test
+    void publishedAsMXBean() throws Exception {
+        ReverseGeocoder geocoder = ReverseGeocoder.builder().instrument("test", Long.MAX_VALUE).build();
+        geocoder.getCountry(51.507222, -0.1275);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(LookupStatistics.DOMAIN, "name", "test");
+
+        assertEquals(1L, server.getAttribute(name, "Lookups"));
+        assertEquals(1L, server.getAttribute(name, "Hits"));
+        assertEquals(1L, geocoder.statistics().get().getLookups());
+        assertFalse(new ReverseGeocoder().statistics().isPresent());
+
+        server.unregisterMBean(name);
+    }
+
+    @Test
+    void indexBuildsNotCounted() throws Exception {
+        ReverseGeocoder geocoder = ReverseGeocoder.builder().grid(6).geohash(2).cache(64, 1e-4)
+                .instrument("indexed", Long.MAX_VALUE).build();
+        LookupStatisticsMXBean statistics = geocoder.statistics().get();
+
+        assertEquals(0, statistics.getLookups());
+        assertEquals(0, statistics.getTreeLookups());
+        assertEquals(0, statistics.getNodesVisited());
+        assertEquals(0, statistics.getCacheMisses());
+
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                new ObjectName(LookupStatistics.DOMAIN, "name", "indexed"));
+    }
+
+    @Test
+    void slowLookupsRecordedByJfr() throws IOException {
+        LookupStatistics statistics = new LookupStatistics(featureCollection, 0);
+        statistics.wrap(featureCollection, null);
+        Path file = Files.createTempFile("lookups", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("uk.recurse.geocoding.reverse.SlowLookup");
+            recording.start();
+            statistics.getCountryOrdinal(51.507222f, -0.1275f);
+            statistics.setSlowLookupThresholdNanos(Long.MAX_VALUE);
+            statistics.getCountryOrdinal(48.856613f, 2.352222f);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            assertEquals("GB", event.getString("country"));
+            assertEquals(51.507222f, event.getFloat("latitude"));
+            assertTrue(event.getInt("edges") > 0);
+            assertTrue(event.getLong("lookupTime") > 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangeQueryTest {
+
+    private static ReverseGeocoder geocoder;
+
+    @BeforeAll
+    static void setup() {
+        geocoder = new ReverseGeocoder();
+    }
+
+    @Test
+    void boxInsideOneCountry() {
+        assertEquals(isoCodes("FR"), isoCodes(geocoder.getCountriesInBox(46.5, 2.0, 46.6, 2.1)));
+    }
+
+    @Test
+    void boxAcrossBorders() {
+        Set<String> benelux = isoCodes(geocoder.getCountriesInBox(49.5, 3.0, 53.5, 7.0));
+
+        assertTrue(benelux.containsAll(isoCodes("BE", "NL", "LU", "FR", "DE")), benelux.toString());
+        assertTrue(geocoder.getCountriesInBox(30, -40, 31, -39).isEmpty());
+    }
+
+    @Test
+    void boxAcrossAntimeridian() {
+        Set<String> fiji = isoCodes(geocoder.getCountriesInBox(-17, 179.5, -16, -179.5));
+
+        assertTrue(fiji.contains("FJ"), fiji.toString());
+    }
+
+    @Test
+    void boxContainsEverySampledCountry() {
+        Random random = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            double south = random.nextDouble() * 160 - 80;
+            double west = random.nextDouble() * 340 - 170;
+            double size = random.nextDouble() * 10;
+            double north = Math.min(90, south + size);
+            double east = Math.min(180, west + size);
+
+            Set<Country> countries = geocoder.getCountriesInBox(south, west, north, east);
+
+            for (int y = 0; y <= 20; y++) {
+                for (int x = 0; x <= 20; x++) {
+                    double lat = south + (north - south) * y / 20;
+                    double lon = west + (east - west) * x / 20;
+                    geocoder.getCountry(lat, lon).ifPresent(country -> assertTrue(countries.contains(country),
+                            country + " at " + lat + "," + lon + " not in " + countries));
+                }
+            }
+        }
+    }
+
+    @Test
+    void radius() {
+        assertEquals(isoCodes("AU"), isoCodes(geocoder.getCountriesWithin(-35.2809, 149.13, 0)));
+        assertEquals(isoCodes("CH", "FR"), isoCodes(geocoder.getCountriesWithin(46.2044, 6.1432, 10)));
+        assertTrue(geocoder.getCountriesWithin(30, -40, 100).isEmpty());
+    }
+
+    @Test
+    void radiusAcrossStraightBorder() {
+        // the 49th parallel is 5.6 km south of the centre
+        assertEquals(isoCodes("CA", "US"), isoCodes(geocoder.getCountriesWithin(49.05, -105, 20)));
+        assertEquals(isoCodes("CA"), isoCodes(geocoder.getCountriesWithin(49.05, -105, 5)));
+    }
+
+    @Test
+    void radiusContainsEverySampledCountry() {
+        Random random = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            double lat = random.nextDouble() * 160 - 80;
+            double lon = random.nextDouble() * 360 - 180;
+            double radiusKm = random.nextDouble() * 500;
+
+            Set<Country> countries = geocoder.getCountriesWithin(lat, lon, radiusKm);
+
+            for (int j = 0; j < 200; j++) {
+                double sampleLat = Math.max(-90, Math.min(90, lat + (random.nextDouble() - 0.5) * 10));
+                double sampleLon = lon + (random.nextDouble() - 0.5) * 10;
+                sampleLon = sampleLon > 180 ? sampleLon - 360 : sampleLon < -180 ? sampleLon + 360 : sampleLon;
+                if (GreatCircle.toKm(GreatCircle.distance(lat, lon, sampleLat, sampleLon)) < radiusKm) {
+                    double finalLat = sampleLat;
+                    double finalLon = sampleLon;
+                    geocoder.getCountry(sampleLat, sampleLon).ifPresent(country -> assertTrue(countries.contains(country),
+                            country + " at " + finalLat + "," + finalLon + " not in " + countries));
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountriesInBox(10, 0, 5, 1));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountriesInBox(0, -181, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountriesWithin(0, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountriesWithin(91, 0, 1));
+    }
+
+    private static Set<String> isoCodes(Set<Country> countries) {
+        return countries.stream().map(Country::iso).collect(toSet());
+    }
+
+    private static Set<String> isoCodes(String... codes) {
+        return Stream.of(codes).collect(toSet());
+    }
+}
@@ -0,0 +1,97 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionRestrictionTest {
+
+    private static ReverseGeocoder world;
+    private static ReverseGeocoder europe;
+    private static ReverseGeocoder france;
+
+    @BeforeAll
+    static void setup() {
+        world = new ReverseGeocoder();
+        europe = ReverseGeocoder.builder().continents("EU").build();
+        france = ReverseGeocoder.builder().countries("FR").build();
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/baselineCities.csv")
+    void onlySelectedContinent(float lat, float lon, String expectedIso) {
+        Country country = world.getCountry(lat, lon).get();
+        int expected = country.continent().equals("EU") ? country.ordinal() : -1;
+
+        assertEquals(expected, europe.getCountryOrdinal(lat, lon), "lat=" + lat + " lon=" + lon);
+    }
+
+    @Test
+    void selectedCountries() {
+        ReverseGeocoder geocoder = ReverseGeocoder.builder().countries("GB", "FR").build();
+
+        assertEquals("GB", geocoder.getCountry(51.507222, -0.1275).get().iso());
+        assertEquals("FR", geocoder.getCountry(48.856613, 2.352222).get().iso());
+        assertFalse(geocoder.getCountry(52.52, 13.405).isPresent());
+        assertEquals("outside", geocoder.getCountry(52.52, 13.405).map(Country::iso).orElse("outside"));
+        assertEquals(2, geocoder.countries().count());
+        assertEquals(world.getCountryOrdinal(51.507222, -0.1275), geocoder.getCountryOrdinal(51.507222, -0.1275));
+    }
+
+    @Test
+    void enclaveOfUnselectedCountry() {
+        float[] lat = {43.7102f, 43.7384f};
+        float[] lon = {7.262f, 7.4246f};
+        short[] ordinals = new short[2];
+        TrajectorySession session = france.newSession();
+
+        france.getCountryOrdinals(lat, lon, 0, 2, ordinals);
+
+        assertEquals("MC", world.getCountry(lat[1], lon[1]).get().iso());
+        assertFalse(france.getCountry(lat[1], lon[1]).isPresent());
+        assertFalse(france.getCountryMatch(lat[1], lon[1], 10).isPresent());
+        assertEquals("FR", session.getCountry(lat[0], lon[0]).get().iso());
+        assertFalse(session.getCountry(lat[1], lon[1]).isPresent());
+        assertEquals(world.getCountryOrdinal(lat[0], lon[0]), ordinals[0]);
+        assertEquals(-1, ordinals[1]);
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/baselineCities.csv")
+    void onlySelectedCountry(float lat, float lon, String expectedIso) {
+        Country country = world.getCountry(lat, lon).get();
+        int expected = country.iso().equals("FR") ? country.ordinal() : -1;
+
+        assertEquals(expected, france.getCountryOrdinal(lat, lon), "lat=" + lat + " lon=" + lon);
+    }
+
+    @Test
+    void countriesAndContinentsCombine() {
+        ReverseGeocoder geocoder = ReverseGeocoder.builder().continents("OC").countries("GB").build();
+
+        assertTrue(geocoder.getCountry(51.507222, -0.1275).isPresent());
+        assertTrue(geocoder.getCountry(-35.2809, 149.13).isPresent());
+        assertFalse(geocoder.getCountry(48.856613, 2.352222).isPresent());
+    }
+
+    @Test
+    void smallerFootprint() {
+        assertTrue(europe.footprint() < world.footprint() / 2,
+                "europe=" + europe.footprint() + " world=" + world.footprint());
+        assertTrue(europe.countries().allMatch(country -> country.continent().equals("EU")));
+    }
+
+    @Test
+    void rejectsUnknownCodes() {
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().continents("XX"));
+        assertThrows(IllegalArgumentException.class, () -> ReverseGeocoder.builder().countries());
+        ReverseGeocoder.Builder builder = ReverseGeocoder.builder().countries("GB", "XX");
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+}
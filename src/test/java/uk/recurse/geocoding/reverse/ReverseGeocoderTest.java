@@ -5,8 +5,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvFileSource;
 
+import javax.management.ObjectName;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,6 +44,173 @@ class ReverseGeocoderTest {
         assertEquals(247, geocoder.countries().count());
     }
 
+    @Test
+    void batchMatchesSingleLookups() {
+        double[] lat = {0, 51.507222, 7.88481, -18.14161, 100, 48.71785};
+        double[] lon = {0, -0.1275, 98.40008, 178.44149, -180, 2.49338};
+        Country[] countries = new Country[lat.length];
+
+        geocoder.getCountries(lat, lon, 1, lat.length - 1, countries);
+
+        assertNull(countries[0]);
+        for (int i = 1; i < lat.length; i++) {
+            assertEquals(geocoder.getCountry(lat[i], lon[i]).orElse(null), countries[i]);
+        }
+    }
+
+    @Test
+    void ordinalMatchesCountry() {
+        int ordinal = geocoder.getCountryOrdinal(51.507222, -0.1275);
+
+        assertEquals("GB", geocoder.country(ordinal).iso());
+        assertEquals(ordinal, geocoder.getCountry(51.507222, -0.1275).get().ordinal());
+        assertEquals(-1, geocoder.getCountryOrdinal(0, 0));
+    }
+
+    @Test
+    void ordinalsAreDense() {
+        for (int ordinal = 0; ordinal < geocoder.countryCount(); ordinal++) {
+            assertEquals(ordinal, geocoder.country(ordinal).ordinal());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> geocoder.country(geocoder.countryCount()));
+    }
+
+    @Test
+    void batchOrdinalsMatchSingleLookups() {
+        float[] lat = {0, 51.507222f, 7.88481f, -18.14161f};
+        float[] lon = {0, -0.1275f, 98.40008f, 178.44149f};
+        short[] ordinals = new short[lat.length];
+
+        geocoder.getCountryOrdinals(lat, lon, 0, lat.length, ordinals);
+
+        for (int i = 0; i < lat.length; i++) {
+            assertEquals(geocoder.getCountryOrdinal(lat[i], lon[i]), ordinals[i]);
+        }
+    }
+
+    @Test
+    void parallelBatchMatchesSingleLookups() {
+        Random random = new Random(0);
+        int n = 100_000;
+        double[] lat = random.doubles(n, -90, 90).toArray();
+        double[] lon = random.doubles(n, -180, 180).toArray();
+        Country[] countries = new Country[n];
+        short[] ordinals = new short[n];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            geocoder.getCountries(lat, lon, 1, n - 1, countries, pool);
+            geocoder.getCountryOrdinals(lat, lon, 1, n - 1, ordinals, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertNull(countries[0]);
+        assertEquals(0, ordinals[0]);
+        for (int i = 1; i < n; i++) {
+            assertEquals(geocoder.getCountry(lat[i], lon[i]).orElse(null), countries[i]);
+            assertEquals(geocoder.getCountryOrdinal(lat[i], lon[i]), ordinals[i]);
+        }
+    }
+
+    @Test
+    void callingThreadBatchMatchesSingleLookups() {
+        Random random = new Random(0);
+        int n = 10_000;
+        float[] lat = new float[n];
+        float[] lon = new float[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = random.nextFloat() * 180 - 90;
+            lon[i] = random.nextFloat() * 360 - 180;
+        }
+        Country[] countries = new Country[n];
+        short[] ordinals = new short[n];
+
+        geocoder.getCountries(lat, lon, 1, n - 1, countries, Runnable::run);
+        geocoder.getCountryOrdinals(lat, lon, 1, n - 1, ordinals, Runnable::run);
+
+        assertNull(countries[0]);
+        assertEquals(0, ordinals[0]);
+        for (int i = 1; i < n; i++) {
+            assertEquals(geocoder.getCountry(lat[i], lon[i]).orElse(null), countries[i]);
+            assertEquals(geocoder.getCountryOrdinal(lat[i], lon[i]), ordinals[i]);
+        }
+    }
+
+    @Test
+    void nearestCountry() {
+        // in the sea off the coast of Cornwall and in the middle of the North Atlantic
+        assertEquals("GB", geocoder.getNearestCountry(49.9, -5.3, 50).map(Country::iso).orElse(null));
+        assertEquals(Optional.empty(), geocoder.getNearestCountry(49.9, -5.3, 1));
+        assertEquals(Optional.empty(), geocoder.getNearestCountry(35, -40, 500));
+        assertEquals(geocoder.getCountry(51.507222, -0.1275), geocoder.getNearestCountry(51.507222, -0.1275, 0));
+    }
+
+    @Test
+    void countryMatchHasBorderDistance() {
+        CountryMatch geneva = geocoder.getCountryMatch(46.2044, 6.1432, 1000).get();
+        CountryMatch madrid = geocoder.getCountryMatch(40.4168, -3.7038, 1000).get();
+
+        assertEquals("CH", geneva.country().iso());
+        assertTrue(geneva.borderDistanceKm() < 10, geneva.toString());
+        assertEquals("ES", madrid.country().iso());
+        assertTrue(madrid.borderDistanceKm() > 200, madrid.toString());
+        assertEquals(madrid.borderDistanceKm(), geocoder.getCountryMatch(40.4168, -3.7038, 500).get().borderDistanceKm());
+        assertEquals(Double.POSITIVE_INFINITY, geocoder.getCountryMatch(40.4168, -3.7038, 100).get().borderDistanceKm());
+        assertEquals(Optional.empty(), geocoder.getCountryMatch(0, 0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getCountryMatch(0, 0, -1));
+    }
+
+    @Test
+    void countryMatchAgreesWithCachedLookups() throws Exception {
+        ReverseGeocoder cached = ReverseGeocoder.builder().cache(1024, 0.5).instrument("match", Long.MAX_VALUE).build();
+        try {
+            // around Geneva, with cache cells much larger than the distance to the border
+            for (int i = 0; i < 20; i++) {
+                for (int j = 0; j < 20; j++) {
+                    double lat = 45.7 + i * 0.05;
+                    double lon = 5.6 + j * 0.05;
+                    Optional<Country> country = cached.getCountry(lat, lon);
+                    Optional<CountryMatch> match = cached.getCountryMatch(lat, lon, 100);
+
+                    assertEquals(country, match.map(CountryMatch::country), "lat=" + lat + " lon=" + lon);
+                }
+            }
+            assertEquals(2 * 20 * 20, cached.statistics().get().getLookups());
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    new ObjectName(LookupStatistics.DOMAIN, "name", "match"));
+        }
+    }
+
+    @Test
+    void borderDistanceAlongStraightBorder() {
+        // both points are 0.05 degrees (5.6 km) from the 49th parallel between Canada and the US,
+        // which the simplified shapes follow to within a few hundred metres
+        CountryMatch north = geocoder.getCountryMatch(49.05, -105, 1000).get();
+        CountryMatch south = geocoder.getCountryMatch(48.95, -105, 1000).get();
+
+        assertEquals("CA", north.country().iso());
+        assertEquals("US", south.country().iso());
+        assertEquals(5.56, north.borderDistanceKm(), 0.5);
+        assertEquals(5.56, south.borderDistanceKm(), 0.5);
+    }
+
+    @Test
+    void nearestCountryRejectsNegativeDistance() {
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getNearestCountry(0, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> geocoder.getNearestCountry(0, 0, Double.NaN));
+    }
+
+    @Test
+    void batchRejectsRangeOutsideArrays() {
+        float[] lat = new float[4];
+        float[] lon = new float[4];
+        Country[] countries = new Country[3];
+
+        assertThrows(IndexOutOfBoundsException.class, () -> geocoder.getCountries(lat, lon, 0, 4, countries));
+        assertThrows(IndexOutOfBoundsException.class, () -> geocoder.getCountries(lat, lon, -1, 2, countries));
+    }
+
 
     @Test
     // Test1: Check whether lat and lon can be found in geo data
@@ -0,0 +1,88 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Trades lookup speed against accuracy for a range of simplification tolerances: for each one,
+ * prints the vertex count, footprint, average lookup time over the baseline cities and how many of
+ * them are still matched to their baseline country. The arguments are tolerances in degrees,
+ * optionally preceded by a shapes file to use instead of the bundled shapes.
+ */
+public class SimplificationHarness {
+
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws IOException {
+        Path shapes = args.length > 0 && !Character.isDigit(args[0].charAt(0)) ? Paths.get(args[0]) : null;
+        double[] tolerances = Arrays.stream(args, shapes == null ? 0 : 1, args.length)
+                .mapToDouble(Double::parseDouble)
+                .toArray();
+        if (tolerances.length == 0) {
+            tolerances = new double[]{0, 0.001, 0.003, 0.01, 0.03, 0.1};
+        }
+        List<String[]> baseline;
+        try (InputStream in = SimplificationHarness.class.getResourceAsStream("/baselineCities.csv")) {
+            baseline = new BufferedReader(new InputStreamReader(in, UTF_8)).lines()
+                    .map(line -> line.split(","))
+                    .collect(toList());
+        }
+        float[] lat = new float[baseline.size()];
+        float[] lon = new float[baseline.size()];
+        String[] iso = new String[baseline.size()];
+        for (int i = 0; i < lat.length; i++) {
+            lat[i] = Float.parseFloat(baseline.get(i)[0]);
+            lon[i] = Float.parseFloat(baseline.get(i)[1]);
+            iso[i] = baseline.get(i)[2];
+        }
+        System.out.printf("%9s %9s %7s %10s %9s%n", "tolerance", "vertices", "MB", "ns/lookup", "agreement");
+        boolean warm = false;
+        for (double tolerance : tolerances) {
+            ReverseGeocoder.Builder builder = ReverseGeocoder.builder();
+            if (shapes != null) {
+                builder.shapes(shapes);
+            }
+            ReverseGeocoder geocoder = tolerance > 0 ? builder.simplify(tolerance).build() : builder.build();
+            if (!warm) {
+                time(geocoder, lat, lon);
+                warm = true;
+            }
+            int agree = 0;
+            for (int i = 0; i < lat.length; i++) {
+                int ordinal = geocoder.getCountryOrdinal(lat[i], lon[i]);
+                if (ordinal >= 0 && geocoder.country(ordinal).iso().equals(iso[i])) {
+                    agree++;
+                }
+            }
+            System.out.printf("%9s %9d %7.1f %10.1f %8.3f%%%n", tolerance, geocoder.vertexCount(),
+                    geocoder.footprint() / 1e6, time(geocoder, lat, lon), 100.0 * agree / lat.length);
+        }
+    }
+
+    // best of several rounds, in nanoseconds per lookup
+    private static double time(ReverseGeocoder geocoder, float[] lat, float[] lon) {
+        System.gc();
+        long best = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < lat.length; i++) {
+                sink += geocoder.getCountryOrdinal(lat[i], lon[i]);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == 0) {
+            System.out.print("");
+        }
+        return (double) best / lat.length;
+    }
+}
@@ -0,0 +1,18 @@
+package uk.recurse.geocoding.reverse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+public class SnapshotGenerator {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, Country> countries = ReverseGeocoder.loadCountries();
+        FeatureCollection featureCollection = ReverseGeocoder.loadShapes(countries);
+        try (OutputStream out = Files.newOutputStream(Paths.get(args[0], "shapes_simplified_low.bin"))) {
+            Snapshot.write(featureCollection, countries, out);
+        }
+    }
+}
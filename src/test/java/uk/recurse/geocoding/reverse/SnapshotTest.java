@@ -0,0 +1,76 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotTest {
+
+    private static Map<String, Country> countries;
+    private static FeatureCollection json;
+    private static FeatureCollection snapshot;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        countries = ReverseGeocoder.loadCountries();
+        json = ReverseGeocoder.loadShapes(countries);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Snapshot.write(json, countries, out);
+        snapshot = Snapshot.read(new ByteArrayInputStream(out.toByteArray()), countries);
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/baselineCities.csv")
+    void reverseGeocoding(float lat, float lon, String expectedIso) {
+        assertEquals(expectedIso, snapshot.getCountry(lat, lon).iso(), "lat=" + lat + " lon=" + lon);
+    }
+
+    @Test
+    void randomLocationsMatchJson() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100_000; i++) {
+            float lat = random.nextFloat() * 180 - 90;
+            float lon = random.nextFloat() * 360 - 180;
+            assertEquals(json.getCountry(lat, lon), snapshot.getCountry(lat, lon), "lat=" + lat + " lon=" + lon);
+        }
+    }
+
+    @Test
+    void countriesMatchJson() {
+        assertArrayEquals(json.countries().toArray(), snapshot.countries().toArray());
+    }
+
+    @Test
+    void bundledSnapshotMatchesJson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Snapshot.write(json, countries, out);
+        byte[] bundled;
+        try (InputStream in = SnapshotTest.class.getResourceAsStream("/shapes_simplified_low.bin")) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            for (int n; (n = in.read(chunk)) != -1; ) {
+                buffer.write(chunk, 0, n);
+            }
+            bundled = buffer.toByteArray();
+        }
+        assertArrayEquals(out.toByteArray(), bundled, "run ./gradlew compileShapes");
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        byte[] garbage = {1, 2, 3, 4, 5, 6, 7, 8};
+        assertThrows(IOException.class, () -> Snapshot.read(new ByteArrayInputStream(garbage), countries));
+    }
+}
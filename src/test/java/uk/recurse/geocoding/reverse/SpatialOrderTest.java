@@ -0,0 +1,34 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpatialOrderTest {
+
+    @Test
+    void hilbertClampsInvalidCoordinates() {
+        assertEquals(0, SpatialOrder.hilbert(Float.NaN, Float.NaN, 4));
+        assertEquals(0, SpatialOrder.hilbert(-100, -200, 4));
+        assertEquals(SpatialOrder.hilbert(90, 180, 4), SpatialOrder.hilbert(100, 200, 4));
+    }
+
+    @Test
+    void hilbertVisitsAdjacentCells() {
+        int bits = 4;
+        int[] y = new int[1 << 2 * bits];
+        int[] x = new int[1 << 2 * bits];
+        for (int row = 0; row < 1 << bits; row++) {
+            for (int column = 0; column < 1 << bits; column++) {
+                float lat = (row + 0.5f) * 180 / (1 << bits) - 90;
+                float lon = (column + 0.5f) * 360 / (1 << bits) - 180;
+                int d = SpatialOrder.hilbert(lat, lon, bits);
+                y[d] = row;
+                x[d] = column;
+            }
+        }
+        for (int d = 1; d < y.length; d++) {
+            assertEquals(1, Math.abs(y[d] - y[d - 1]) + Math.abs(x[d] - x[d - 1]), "d=" + d);
+        }
+    }
+}
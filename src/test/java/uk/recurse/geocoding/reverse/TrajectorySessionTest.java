@@ -0,0 +1,46 @@
+package uk.recurse.geocoding.reverse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrajectorySessionTest {
+
+    private static ReverseGeocoder geocoder;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        geocoder = new ReverseGeocoder(ReverseGeocoder.loadShapes(ReverseGeocoder.loadCountries()));
+    }
+
+    @Test
+    void tracesMatchIndependentLookups() {
+        Random random = new Random(0);
+        for (int trace = 0; trace < 200; trace++) {
+            TrajectorySession session = geocoder.newSession();
+            float lat = random.nextFloat() * 140 - 60;
+            float lon = random.nextFloat() * 360 - 180;
+            for (int i = 0; i < 500; i++) {
+                lat = Math.max(-90, Math.min(90, lat + (random.nextFloat() - 0.5f) * 0.2f));
+                lon = Math.max(-180, Math.min(180, lon + (random.nextFloat() - 0.5f) * 0.2f));
+                assertEquals(geocoder.getCountryOrdinal(lat, lon), session.getCountryOrdinal(lat, lon),
+                        "lat=" + lat + " lon=" + lon);
+            }
+        }
+    }
+
+    @Test
+    void crossingBorders() {
+        TrajectorySession session = geocoder.newSession();
+
+        assertEquals("FR", session.getCountry(48.856613, 2.352222).get().iso());
+        assertEquals("DE", session.getCountry(52.520008, 13.404954).get().iso());
+        assertEquals("DE", session.getCountry(52.5, 13.4).get().iso());
+        assertEquals(-1, session.getCountryOrdinal(0, 0));
+        assertEquals("GB", session.getCountry(51.507222, -0.1275).get().iso());
+    }
+}